@@ -0,0 +1,48 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.hamsterhuey.defender.Attacker;
+import com.hamsterhuey.defender.AttackerStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of Attacker.update on one living attacker, including the walk back to its start once it passes the castle
+ * so the benchmark never drifts off into the distance
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttackerBenchmark {
+    private Attacker mAttacker;
+
+    @Setup
+    public void setUp() {
+        mAttacker = new Attacker(2f, 150f, -100f, 80f, 64f, 128f, "knight", Fixtures.KNIGHT_ANIMATIONS);
+        mAttacker.revive();
+        mAttacker.play(AttackerStore.ANIM_WALK, true);
+    }
+
+    @Benchmark
+    public Rectangle update() {
+        Rectangle box = mAttacker.update(Fixtures.FRAME_TIME);
+        if(mAttacker.getX() > Fixtures.MIN_STOP_X) {
+            mAttacker.revive();
+        }
+        return box;
+    }
+}
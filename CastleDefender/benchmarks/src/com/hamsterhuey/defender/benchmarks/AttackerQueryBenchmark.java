@@ -0,0 +1,66 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.hamsterhuey.defender.AttackerStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the attacker under a tap - what DefenderSimulation.getFirstAttackerAt does - at several horde sizes
+ * The taps cycle through a fixed set of points across the attackers' lanes, so some hit and some miss
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AttackerQueryBenchmark {
+    private static final int TAP_COUNT = 1024; // Power of two, so the cursor wraps with a mask
+
+    @Param({ "50", "1000", "10000" })
+    public int hordeSize;
+
+    private AttackerStore mStore;
+    private float[] mTapX;
+    private float[] mTapY;
+    private int mCursor;
+
+    @Setup
+    public void setUp() {
+        mStore = Fixtures.createStore(hordeSize, 1L);
+        Fixtures.reviveAll(mStore);
+        // Scatter the horde along the road, as it would be mid-round
+        for(int tick = 0; tick < 90; tick++) {
+            mStore.advance(Fixtures.FRAME_TIME, Fixtures.MIN_STOP_X);
+        }
+
+        Random random = new Random(2L);
+        mTapX = new float[TAP_COUNT];
+        mTapY = new float[TAP_COUNT];
+        for(int i = 0; i < TAP_COUNT; i++) {
+            mTapX[i] = random.nextFloat() * 800f;
+            mTapY[i] = 40f + random.nextFloat() * 200f;
+        }
+        mCursor = 0;
+    }
+
+    @Benchmark
+    public int findFirstAt() {
+        int i = mCursor;
+        mCursor = (i + 1) & (TAP_COUNT - 1);
+        return mStore.findFirstAt(mTapX[i], mTapY[i]);
+    }
+}
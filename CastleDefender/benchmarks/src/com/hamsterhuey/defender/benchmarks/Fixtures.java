@@ -0,0 +1,142 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.math.Rectangle;
+import com.hamsterhuey.defender.AnimationSet;
+import com.hamsterhuey.defender.ArchetypeRegistry;
+import com.hamsterhuey.defender.AttackerStore;
+import com.hamsterhuey.defender.DefenderButtons;
+import com.hamsterhuey.defender.DefenderSimulation;
+import com.hamsterhuey.defender.SaveStore;
+
+import java.util.Random;
+
+/**
+ * Shared setup for the benchmarks - mock animations, populated attacker stores and simulations mid-round
+ *
+ * Nothing here touches OpenGL: animation frames are TextureRegions without a texture, which is all the
+ * game code ever asks of them outside of drawing, so every benchmark runs on a plain JVM
+ */
+public class Fixtures {
+    public static final float FRAME_TIME = DefenderSimulation.TICK_SECONDS;
+    public static final float MIN_STOP_X = 585f; // Same as DefenderSimulation
+
+    // The game's own archetypes, looked up by name once
+    public static final ArchetypeRegistry ARCHETYPES = ArchetypeRegistry.getDefault();
+    public static final int NORMAL = ARCHETYPES.find("normal");
+    public static final int KNIGHT = ARCHETYPES.find("knight");
+
+    // The normal attacker's walk and the knight's walk and attack, with the frame counts and durations of the real sheets
+    public static final AnimationSet NORMAL_ANIMATIONS = new AnimationSet(new String[] { "walk" },
+            new Animation[] { blankAnimation(0.055f, 16) });
+    public static final AnimationSet KNIGHT_ANIMATIONS = new AnimationSet(new String[] { "walk", "attack" },
+            new Animation[] { blankAnimation(0.125f, 8), blankAnimation(0.25f, 4) });
+
+    /**
+     * Method to build an animation whose frames are empty regions
+     *
+     * @param frameDuration: The time each frame is shown for
+     * @param frameCount: The number of frames
+     * @return animation: The animation
+     */
+    public static Animation blankAnimation(float frameDuration, int frameCount) {
+        TextureRegion[] frames = new TextureRegion[frameCount];
+        for(int i = 0; i < frameCount; i++) {
+            frames[i] = new TextureRegion();
+        }
+        return new Animation(frameDuration, frames);
+    }
+
+    /**
+     * Method to build a store of dead attackers with the game's speeds and lanes, half of them knights
+     *
+     * @param size: The number of attackers
+     * @param seed: The seed for speeds and positions, so runs are repeatable
+     * @return store: The store, with every attacker dead
+     */
+    public static AttackerStore createStore(int size, long seed) {
+        Random random = new Random(seed);
+        AttackerStore store = new AttackerStore(ARCHETYPES, size);
+        for(int i = 0; i < size; i++) {
+            float walkSpeed = 150f + random.nextFloat() * 120f;
+            float startX = -100f + random.nextFloat() * (MIN_STOP_X + 100f);
+            float y = 65f + random.nextFloat() * 30f;
+            if(i % 2 == 0) {
+                store.add(NORMAL, 1f, walkSpeed, startX, y);
+            } else {
+                store.add(KNIGHT, 2f, walkSpeed * 0.75f, startX, y);
+            }
+        }
+        return store;
+    }
+
+    /**
+     * Method to revive every attacker in a store
+     *
+     * @param store: The store to fill
+     */
+    public static void reviveAll(AttackerStore store) {
+        for(int archetype = 0; archetype < store.getArchetypeCount(); archetype++) {
+            while(store.obtain(archetype) >= 0) {
+                // Keep popping the free list until it is empty
+            }
+        }
+    }
+
+    /**
+     * Method to build a simulation in the middle of a round with a full horde standing at the castle gates
+     * The round is loaded through a save store, since the simulation caps the living attackers at 5 + round * 2
+     * The saved game is made by another simulation, left before its first game with the wanted round restored
+     * The castle is given more health than any benchmark can take away, and the round lasts for minutes
+     *
+     * @param hordeSize: The number of living attackers wanted, must be odd to match the cap
+     * @return simulation: A simulation in STATE_ROUND_PLAY with hordeSize attackers alive
+     */
+    public static DefenderSimulation createRoundInProgress(int hordeSize) {
+        if(hordeSize < 7 || hordeSize % 2 == 0)
+            throw new IllegalArgumentException("The living attacker cap is always 5 + round * 2, got " + hordeSize);
+        final int round = (hordeSize - 5) / 2;
+
+        DefenderSimulation saved = new DefenderSimulation(null);
+        saved.restoreProgress(round, Float.MAX_VALUE, 0f);
+        final byte[] snapshot = saved.createSnapshot();
+        DefenderSimulation simulation = new DefenderSimulation(new SaveStore() {
+            @Override
+            public void save(byte[] snapshot) {
+            }
+
+            @Override
+            public byte[] load() {
+                return snapshot;
+            }
+
+            @Override
+            public boolean checkpoint(int event, int roundNumber, float castleHealth, float totalScore) {
+                return false;
+            }
+        });
+
+        // Resume the "saved" round, then step until the horde is full and has walked up to the wall
+        simulation.step(FRAME_TIME);
+        tapButton(simulation, DefenderButtons.TYPE_RESUME_SAVED_GAME);
+        while(simulation.getGameState() != DefenderSimulation.STATE_ROUND_PLAY
+                || simulation.getLivingAttackerCount() < hordeSize) {
+            simulation.step(FRAME_TIME);
+        }
+        // The slowest knight needs (100 + 585) / (150 * 0.75) seconds to reach the castle
+        for(int frame = 0; frame < 400; frame++) {
+            simulation.step(FRAME_TIME);
+        }
+        return simulation;
+    }
+
+    /**
+     * Method to tap the middle of a button, handled on the next step
+     */
+    public static void tapButton(DefenderSimulation simulation, int type) {
+        Rectangle rect = simulation.getButtons()[type].getRect();
+        simulation.tap(rect.x + rect.width / 2f, rect.y + rect.height / 2f);
+        simulation.step(FRAME_TIME);
+    }
+}
@@ -0,0 +1,57 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.hamsterhuey.defender.DefenderSimulation;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one full gameplay tick (DefenderSimulation.step in STATE_ROUND_PLAY) with a whole horde at the castle gates
+ *
+ * A round ends after a fixed time, so the benchmark can't just step one simulation forever. Instead each iteration
+ * gets a fresh simulation mid-round and times a fixed number of ticks on it, well within the round.
+ * Single shot scores are per call, so one call is TICKS = 1000 ticks: milliseconds per call read as microseconds per tick
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 20)
+@Measurement(iterations = 40)
+@Fork(1)
+public class GameplayTickBenchmark {
+    private static final int TICKS = 1000;
+
+    // The living attacker cap is 5 + round * 2, so only odd hordes can be reached exactly
+    @Param({ "51", "1001", "10001" })
+    public int hordeSize;
+
+    private DefenderSimulation mSimulation;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mSimulation = Fixtures.createRoundInProgress(hordeSize);
+    }
+
+    @Benchmark
+    public float thousandTicks() {
+        DefenderSimulation simulation = mSimulation;
+        for(int i = 0; i < TICKS; i++) {
+            simulation.step(Fixtures.FRAME_TIME);
+        }
+        if(simulation.getGameState() != DefenderSimulation.STATE_ROUND_PLAY)
+            throw new IllegalStateException("The round ended while being measured");
+        return simulation.getCastleHealth();
+    }
+}
@@ -0,0 +1,62 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.hamsterhuey.defender.AdvancePool;
+import com.hamsterhuey.defender.AttackerStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One AttackerStore.advance over a large horde, alone (helperThreads = 0) or shared with an AdvancePool
+ * The speed-up depends entirely on the cores the machine has to spare - compare runs on the same machine only
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelAdvanceBenchmark {
+    @Param({ "10000", "100000" })
+    public int hordeSize;
+
+    @Param({ "0", "3" })
+    public int helperThreads;
+
+    private AttackerStore mStore;
+    private AdvancePool mPool;
+
+    @Setup
+    public void setUp() {
+        mStore = Fixtures.createStore(hordeSize, 1L);
+        Fixtures.reviveAll(mStore);
+        if(helperThreads > 0) {
+            mPool = new AdvancePool(helperThreads);
+            mStore.setAdvancePool(mPool, 0);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if(mPool != null)
+            mPool.shutdown();
+    }
+
+    // Attackers pile up at the wall after a few hundred ticks, which is the busiest case - every one deals damage
+    @Benchmark
+    public float advance() {
+        return mStore.advance(Fixtures.FRAME_TIME, Fixtures.MIN_STOP_X);
+    }
+}
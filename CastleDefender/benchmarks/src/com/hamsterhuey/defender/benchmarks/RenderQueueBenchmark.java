@@ -0,0 +1,68 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.hamsterhuey.defender.AnimationSet;
+import com.hamsterhuey.defender.AttackerStore;
+import com.hamsterhuey.defender.RenderQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of queueing a frame's attackers and sorting them into draw order, everything DefenderGame does
+ * with the render queue short of handing it to the batch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderQueueBenchmark {
+    @Param({ "50", "1000", "10000" })
+    public int hordeSize;
+
+    private AttackerStore mStore;
+    private AnimationSet[] mAnimations;
+    private RenderQueue mQueue;
+
+    @Setup
+    public void setUp() {
+        mStore = Fixtures.createStore(hordeSize, 1L);
+        Fixtures.reviveAll(mStore);
+        for(int tick = 0; tick < 90; tick++) {
+            mStore.advance(Fixtures.FRAME_TIME, Fixtures.MIN_STOP_X);
+        }
+        mAnimations = new AnimationSet[Fixtures.ARCHETYPES.getCount()];
+        mAnimations[Fixtures.NORMAL] = Fixtures.NORMAL_ANIMATIONS;
+        mAnimations[Fixtures.KNIGHT] = Fixtures.KNIGHT_ANIMATIONS;
+        mQueue = new RenderQueue(hordeSize + 16);
+    }
+
+    @Benchmark
+    public int queueAndSort() {
+        AttackerStore store = mStore;
+        for(int k = 0; k < store.getLiveCount(); k++) {
+            int i = store.getLive(k);
+            TextureRegion frame = mAnimations[store.getArchetype(i)].getKeyFrame(store.getAnimation(i),
+                    store.getStateTime(i), true);
+            float y = store.getY(i);
+            mQueue.add(RenderQueue.LAYER_ATTACKERS, (int) (480f - y), frame, store.getX(i), y);
+        }
+        mQueue.sort();
+        int count = mQueue.getCount();
+        mQueue.clear();
+        return count;
+    }
+}
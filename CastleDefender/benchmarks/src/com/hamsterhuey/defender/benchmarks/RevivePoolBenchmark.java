@@ -0,0 +1,57 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.hamsterhuey.defender.AttackerStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reviving an attacker when the pool is full - the case the old linear scan for a dead attacker
+ * paid the most for, since it had to look at every attacker before giving up
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RevivePoolBenchmark {
+    @Param({ "50", "1000", "10000" })
+    public int poolSize;
+
+    private AttackerStore mStore;
+    private int mVictim;
+
+    @Setup
+    public void setUp() {
+        mStore = Fixtures.createStore(poolSize, 1L);
+        Fixtures.reviveAll(mStore);
+        mVictim = 0;
+    }
+
+    // Every attacker of the archetype is alive, so the revive has to be refused
+    @Benchmark
+    public int obtainFromFullPool() {
+        return mStore.obtain(Fixtures.KNIGHT);
+    }
+
+    // One slot frees up and is immediately revived again, as when a tapped attacker is replaced by the next spawn
+    @Benchmark
+    public int killAndRevive() {
+        int victim = mVictim;
+        mVictim = victim + 1 == poolSize ? 0 : victim + 1;
+        mStore.kill(victim);
+        return mStore.obtain(mStore.getArchetype(victim));
+    }
+}
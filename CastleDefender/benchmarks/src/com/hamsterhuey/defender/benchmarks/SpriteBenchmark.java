@@ -0,0 +1,57 @@
+package com.hamsterhuey.defender.benchmarks;
+
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.hamsterhuey.defender.AttackerStore;
+import com.hamsterhuey.defender.Sprite;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single Sprite's per-frame work: advancing it, switching animations and looking up the frame to draw
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpriteBenchmark {
+    private Sprite mSprite;
+    private boolean mAttacking;
+
+    @Setup
+    public void setUp() {
+        mSprite = new Sprite(-100, 80, 64f, 128f, Fixtures.KNIGHT_ANIMATIONS);
+        mSprite.play(AttackerStore.ANIM_WALK, true);
+        mAttacking = false;
+    }
+
+    @Benchmark
+    public void update() {
+        mSprite.update(Fixtures.FRAME_TIME, 150f, 0f);
+    }
+
+    // Alternates between walk and attack, so every call is a real switch rather than the early-out for the same handle
+    @Benchmark
+    public void play() {
+        mAttacking = !mAttacking;
+        mSprite.play(mAttacking ? AttackerStore.ANIM_ATTACK : AttackerStore.ANIM_WALK, true);
+    }
+
+    @Benchmark
+    public TextureRegion updateAndGetFrame() {
+        mSprite.update(Fixtures.FRAME_TIME);
+        return mSprite.getCurrentFrame();
+    }
+}
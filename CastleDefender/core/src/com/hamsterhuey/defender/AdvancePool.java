@@ -0,0 +1,127 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.GdxRuntimeException;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small pool of threads that help AttackerStore.advance through large hordes
+ *
+ * The calling thread and every helper pull block numbers off one shared counter until none are left, so a
+ * slow thread just ends up advancing fewer blocks. The helpers are plain Runnables made once up front and the
+ * caller waits on a counter, so a parallel advance allocates nothing.
+ * A fixed thread pool stands in for a fork-join pool, which older Android versions don't have
+ */
+public class AdvancePool {
+    private final ExecutorService mExecutor;
+    private final Runnable[] mHelpers;
+    private final AtomicInteger mNextBlock = new AtomicInteger();
+    private final AtomicInteger mHelpersRunning = new AtomicInteger();
+    private final Object mDoneLock = new Object();
+
+    // The advance in progress, written before the helpers are started
+    private AttackerStore mStore;
+    private int mBlocks;
+    private volatile Throwable mFailure;
+
+    /**
+     * Constructor for a pool with its own helper threads
+     *
+     * @param helperThreads: The number of threads that help the caller, at least 1
+     */
+    public AdvancePool(int helperThreads) {
+        mExecutor = Executors.newFixedThreadPool(helperThreads, new ThreadFactory() {
+            private int mCount = 0;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Advance-" + mCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mHelpers = new Runnable[helperThreads];
+        for(int i = 0; i < helperThreads; i++) {
+            mHelpers[i] = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        work();
+                    } catch (Throwable t) {
+                        mFailure = t;
+                    } finally {
+                        if(mHelpersRunning.decrementAndGet() == 0) {
+                            synchronized(mDoneLock) {
+                                mDoneLock.notifyAll();
+                            }
+                        }
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * Method that advances every block of a store, using the calling thread and the helpers, and returns once all are done
+     *
+     * @param store: The store whose advance is in progress
+     * @param blocks: The number of blocks to advance
+     */
+    void run(AttackerStore store, int blocks) {
+        mStore = store;
+        mBlocks = blocks;
+        mFailure = null;
+        mNextBlock.set(0);
+
+        // Executing a task publishes everything written above to the helper that runs it
+        int helpers = Math.min(mHelpers.length, blocks - 1);
+        mHelpersRunning.set(helpers);
+        for(int i = 0; i < helpers; i++) {
+            mExecutor.execute(mHelpers[i]);
+        }
+        try {
+            work();
+        } finally {
+            awaitHelpers();
+        }
+        if(mFailure != null)
+            throw new GdxRuntimeException("Advancing attackers failed on a helper thread", mFailure);
+    }
+
+    // The helpers' counter decrements make their writes visible once it reads zero
+    private void awaitHelpers() {
+        boolean interrupted = false;
+        synchronized(mDoneLock) {
+            while(mHelpersRunning.get() > 0) {
+                try {
+                    mDoneLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true; // The blocks still have to finish, the store isn't usable half advanced
+                }
+            }
+        }
+        if(interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private void work() {
+        int block;
+        while((block = mNextBlock.getAndIncrement()) < mBlocks) {
+            mStore.advanceBlock(block);
+        }
+    }
+
+    public int getHelperThreads() {
+        return mHelpers.length;
+    }
+
+    /**
+     * Method to stop the helper threads, the pool can't be used afterwards
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+}
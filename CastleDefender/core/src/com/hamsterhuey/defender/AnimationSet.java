@@ -0,0 +1,76 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+/**
+ * Immutable, shared table of named animations for one kind of sprite
+ *
+ * Every sprite of the same kind points at the same set instead of carrying its own copy.
+ * Names are only looked at once, through handleOf, and from then on an animation is just its int handle -
+ * the index it was given in the constructor - so playing and drawing is plain array indexing
+ */
+public class AnimationSet {
+    public static final int NO_ANIMATION = -1;
+
+    private final String[] mNames;
+    private final Animation[] mAnimations;
+
+    /**
+     * Constructor for a set of animations, where each animation's handle is its index in the arrays
+     *
+     * @param names: The name of each animation, used to resolve handles
+     * @param animations: The animations themselves, in the same order as names
+     */
+    public AnimationSet(String[] names, Animation[] animations) {
+        if(names.length != animations.length)
+            throw new IllegalArgumentException("Each animation needs exactly one name");
+        mNames = names.clone();
+        mAnimations = animations.clone();
+    }
+
+    /**
+     * Method to resolve an animation's name to its handle - meant to be called once, not every frame
+     *
+     * @param name: The name the animation was given
+     * @return handle: The animation's handle, or NO_ANIMATION if the set doesn't have it
+     */
+    public int handleOf(String name) {
+        for(int i = 0; i < mNames.length; i++) {
+            if(mNames[i].equals(name))
+                return i;
+        }
+        return NO_ANIMATION;
+    }
+
+    /**
+     * Method to check a handle refers to an animation in this set
+     */
+    public boolean contains(int handle) {
+        return handle >= 0 && handle < mAnimations.length;
+    }
+
+    /**
+     * Method to grab the frame of an animation at a point in time
+     *
+     * @param handle: The animation's handle
+     * @param stateTime: The time the animation has been playing for
+     * @param looping: Whether the animation wraps around once it reaches its last frame
+     * @return frame: The frame to draw
+     */
+    public TextureRegion getKeyFrame(int handle, float stateTime, boolean looping) {
+        return mAnimations[handle].getKeyFrame(stateTime, looping);
+    }
+
+    public Animation get(int handle) {
+        return mAnimations[handle];
+    }
+
+    public String getName(int handle) {
+        return mNames[handle];
+    }
+
+    public int size() {
+        return mAnimations.length;
+    }
+}
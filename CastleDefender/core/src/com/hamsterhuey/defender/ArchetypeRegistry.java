@@ -0,0 +1,323 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+import com.badlogic.gdx.utils.StreamUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Every kind of attacker in the game, read once from a data file (archetypes.json in the assets) at startup
+ *
+ * An archetype's id is its index in the file, and from then on it is only ever that int: the store, the spawn
+ * schedule and the renderer index these arrays with it, and names are only looked at while files are being read.
+ * Adding an enemy is adding an entry to the file - its stats, size, score and frames all come from here, and
+ * nothing in the game checks for a particular archetype. Like WaveScript the registry only holds plain numbers
+ * once parsed and is never changed, so one registry can be shared by any number of simulations on any threads
+ *
+ * Random spawns pick an elite archetype with the round's knight chance and a common one otherwise, evenly among
+ * the archetypes of that kind. With one of each that is a single random number, as it always was
+ *
+ * The asset is the only copy of the game's archetypes. The JVM tools have it on their classpath (see the headless
+ * and benchmarks build.gradle) and get it from getDefault, so they always play the enemies the game plays
+ *
+ * File layout:
+ *   { "archetypes": [ { "name": "knight", "hitDamage": 2, "minSpeed": 112.5, "maxSpeed": 202.5, "width": 64,
+ *       "height": 128, "score": 250, "elite": true, "animations": { "walk": { "region": "knight_sheet_walk",
+ *       "rows": 2, "columns": 4, "frameDuration": 0.125 }, "attack": { ... } } } ] }
+ *   Every animation is cut from its atlas region in frames of frameWidth by frameHeight (the archetype's size unless
+ *   given), taking frames (rows times columns unless given) row by row. "walk" is required, archetypes with
+ *   an "attack" animation switch to it at the castle wall
+ */
+public class ArchetypeRegistry {
+    public static final int NONE = -1;
+    public static final int MAX_ARCHETYPES = 127; // Ids are a byte in snapshots and the spawn schedule
+    public static final String RANDOM = "random"; // Not an archetype, data files use it to ask for a random spawn
+
+    // Animation names, indexed by AttackerStore's ANIM_ constants
+    public static final String[] ANIMATION_NAMES = { "walk", "attack" };
+
+    public static final String ASSET = "archetypes.json"; // The game's asset, also read off the classpath by getDefault
+
+    // Just enough to play with when the asset can't be read at all - one plain attacker, not the game's balance
+    public static final String FALLBACK_SOURCE = "{ \"archetypes\": [\n"
+            + "  { \"name\": \"normal\", \"minSpeed\": 150, \"maxSpeed\": 270, \"width\": 64, \"height\": 64, \"score\": 100,\n"
+            + "    \"animations\": { \"walk\": { \"region\": \"attackerSheet\", \"rows\": 2, \"columns\": 8, \"frameDuration\": 0.055 } } }\n"
+            + "] }\n";
+
+    private static ArchetypeRegistry sDefault;
+
+    private final String mSource;
+    private final int mCount;
+    private final String[] mNames;
+    private final float[] mHitDamage;
+    private final float[] mMinSpeed;
+    private final float[] mSpeedVariance; // Can be UP TO this much faster than mMinSpeed, based on rng
+    private final float[] mWidth;
+    private final float[] mHeight;
+    private final float[] mScore;
+    private final boolean[] mElite;
+    private final int[] mCommonIds;
+    private final int[] mEliteIds;
+    private final float mMaxWidth;
+    private final float mMaxHeight;
+
+    // Per-animation data, indexed by [archetype][ANIM_ constant], a null region if the archetype doesn't have it
+    private final String[][] mRegion;
+    private final int[][] mFrameWidth;
+    private final int[][] mFrameHeight;
+    private final int[][] mColumns;
+    private final int[][] mFrameCount;
+    private final float[][] mFrameDuration;
+
+    /**
+     * Method to read a registry
+     *
+     * @param json: The registry's text
+     * @return registry: The parsed registry
+     * @throws IllegalArgumentException: If an archetype has a value the game can't use
+     */
+    public static ArchetypeRegistry parse(String json) {
+        return new ArchetypeRegistry(json, new JsonReader().parse(json));
+    }
+
+    /**
+     * Method to get the game's archetypes without going through libGDX's files, for code that runs without them
+     * The asset is read off the classpath the first time it is asked for, FALLBACK_SOURCE is used if it isn't there
+     *
+     * @return registry: The archetypes in ASSET, or the fallback
+     */
+    public static synchronized ArchetypeRegistry getDefault() {
+        if(sDefault == null) {
+            String source = readClasspath(ASSET);
+            sDefault = parse(source != null ? source : FALLBACK_SOURCE);
+        }
+        return sDefault;
+    }
+
+    // A classpath resource's text, or null if there is no such resource or it can't be read
+    private static String readClasspath(String name) {
+        InputStream in = ArchetypeRegistry.class.getResourceAsStream("/" + name);
+        if(in == null)
+            return null;
+        try {
+            return StreamUtils.copyStreamToString(in, 4096, "UTF-8");
+        } catch (IOException e) {
+            return null;
+        } finally {
+            StreamUtils.closeQuietly(in);
+        }
+    }
+
+    private ArchetypeRegistry(String source, JsonValue root) {
+        mSource = source;
+        JsonValue archetypes = root.get("archetypes");
+        mCount = archetypes == null ? 0 : archetypes.size;
+        if(mCount < 1 || mCount > MAX_ARCHETYPES)
+            throw new IllegalArgumentException("There must be 1 to " + MAX_ARCHETYPES + " archetypes, not " + mCount);
+        mNames = new String[mCount];
+        mHitDamage = new float[mCount];
+        mMinSpeed = new float[mCount];
+        mSpeedVariance = new float[mCount];
+        mWidth = new float[mCount];
+        mHeight = new float[mCount];
+        mScore = new float[mCount];
+        mElite = new boolean[mCount];
+        mRegion = new String[mCount][ANIMATION_NAMES.length];
+        mFrameWidth = new int[mCount][ANIMATION_NAMES.length];
+        mFrameHeight = new int[mCount][ANIMATION_NAMES.length];
+        mColumns = new int[mCount][ANIMATION_NAMES.length];
+        mFrameCount = new int[mCount][ANIMATION_NAMES.length];
+        mFrameDuration = new float[mCount][ANIMATION_NAMES.length];
+
+        IntArray common = new IntArray();
+        IntArray elite = new IntArray();
+        float maxWidth = 0f;
+        float maxHeight = 0f;
+        int a = 0;
+        for(JsonValue archetype = archetypes.child; archetype != null; archetype = archetype.next, a++) {
+            String name = archetype.getString("name", "");
+            if(name.length() == 0 || name.equals(RANDOM) || find(name, a) != NONE)
+                throw new IllegalArgumentException("Archetype " + a + " needs a name of its own, not \"" + name + "\"");
+            mNames[a] = name;
+            mHitDamage[a] = archetype.getFloat("hitDamage", 1f);
+            mMinSpeed[a] = archetype.getFloat("minSpeed");
+            mSpeedVariance[a] = archetype.getFloat("maxSpeed", mMinSpeed[a]) - mMinSpeed[a];
+            mWidth[a] = archetype.getFloat("width");
+            mHeight[a] = archetype.getFloat("height");
+            mScore[a] = archetype.getFloat("score", 0f);
+            mElite[a] = archetype.getBoolean("elite", false);
+            if(!(mHitDamage[a] >= 0f) || !(mMinSpeed[a] >= 0f) || !(mSpeedVariance[a] >= 0f) || !(mScore[a] >= 0f))
+                throw new IllegalArgumentException("Archetype " + name + " has a negative damage, speed range or score");
+            if(!(mWidth[a] > 0f) || !(mHeight[a] > 0f))
+                throw new IllegalArgumentException("Archetype " + name + " needs a width and height above 0");
+            readAnimations(a, archetype.get("animations"));
+
+            (mElite[a] ? elite : common).add(a);
+            maxWidth = Math.max(maxWidth, mWidth[a]);
+            maxHeight = Math.max(maxHeight, mHeight[a]);
+        }
+        mCommonIds = common.toArray();
+        mEliteIds = elite.toArray();
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+    }
+
+    private void readAnimations(int a, JsonValue animations) {
+        for(JsonValue animation = animations == null ? null : animations.child; animation != null; animation = animation.next) {
+            int handle = findAnimation(animation.name);
+            if(handle == NONE)
+                throw new IllegalArgumentException("Archetype " + mNames[a] + " has an unknown animation " + animation.name);
+            int rows = animation.getInt("rows", 1);
+            int columns = animation.getInt("columns", 1);
+            mRegion[a][handle] = animation.getString("region");
+            mFrameWidth[a][handle] = animation.getInt("frameWidth", (int) mWidth[a]);
+            mFrameHeight[a][handle] = animation.getInt("frameHeight", (int) mHeight[a]);
+            mColumns[a][handle] = columns;
+            mFrameCount[a][handle] = animation.getInt("frames", rows * columns);
+            mFrameDuration[a][handle] = animation.getFloat("frameDuration");
+            if(rows < 1 || columns < 1 || mFrameCount[a][handle] < 1 || mFrameCount[a][handle] > rows * columns
+                    || mFrameWidth[a][handle] < 1 || mFrameHeight[a][handle] < 1 || !(mFrameDuration[a][handle] > 0f))
+                throw new IllegalArgumentException("Archetype " + mNames[a] + "'s " + animation.name + " animation has no frames to play");
+        }
+        if(mRegion[a][AttackerStore.ANIM_WALK] == null)
+            throw new IllegalArgumentException("Archetype " + mNames[a] + " needs a walk animation");
+    }
+
+    private static int findAnimation(String name) {
+        for(int handle = 0; handle < ANIMATION_NAMES.length; handle++) {
+            if(ANIMATION_NAMES[handle].equals(name))
+                return handle;
+        }
+        return NONE;
+    }
+
+    // Looks through the archetypes read so far
+    private int find(String name, int count) {
+        for(int a = 0; a < count; a++) {
+            if(mNames[a].equals(name))
+                return a;
+        }
+        return NONE;
+    }
+
+    /**
+     * Method to resolve an archetype's name to its id - meant for reading data files, not for every tick
+     *
+     * @param name: The name the archetype was given
+     * @return id: The archetype's id, or NONE if there is no archetype of that name
+     */
+    public int find(String name) {
+        return find(name, mCount);
+    }
+
+    /**
+     * Method to pick the archetype of a random spawn
+     *
+     * @param random: The generator to draw from, one number is drawn plus one more if the kind has several archetypes
+     * @param eliteChance: The chance of an elite archetype, the round's knight chance
+     * @return id: The archetype to spawn
+     */
+    public int pickRandom(SeededRandom random, float eliteChance) {
+        boolean elite = random.nextFloat() <= eliteChance;
+        int[] ids = (elite && mEliteIds.length > 0) || mCommonIds.length == 0 ? mEliteIds : mCommonIds;
+        return ids.length == 1 ? ids[0] : ids[random.nextInt(ids.length)];
+    }
+
+    /**
+     * @return source: The text the registry was parsed from, which is what a replay records
+     */
+    public String getSource() {
+        return mSource;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    // Getters for a single archetype below, by id
+    public String getName(int archetype) {
+        return mNames[archetype];
+    }
+
+    public float getHitDamage(int archetype) {
+        return mHitDamage[archetype];
+    }
+
+    public float getMinSpeed(int archetype) {
+        return mMinSpeed[archetype];
+    }
+
+    public float getSpeedVariance(int archetype) {
+        return mSpeedVariance[archetype];
+    }
+
+    public float getWidth(int archetype) {
+        return mWidth[archetype];
+    }
+
+    public float getHeight(int archetype) {
+        return mHeight[archetype];
+    }
+
+    public float getScore(int archetype) {
+        return mScore[archetype];
+    }
+
+    public boolean isElite(int archetype) {
+        return mElite[archetype];
+    }
+
+    /**
+     * @return maxWidth: The widest archetype's width, what AttackerGrid needs to size its search
+     */
+    public float getMaxWidth() {
+        return mMaxWidth;
+    }
+
+    public float getMaxHeight() {
+        return mMaxHeight;
+    }
+
+    // Getters for an archetype's animations below, by id and ANIM_ constant
+    public boolean hasAnimation(int archetype, int animation) {
+        return mRegion[archetype][animation] != null;
+    }
+
+    /**
+     * @return count: The number of animation handles the archetype's AnimationSet needs, up to its last animation
+     */
+    public int getAnimationCount(int archetype) {
+        int count = ANIMATION_NAMES.length;
+        while(mRegion[archetype][count - 1] == null) {
+            count--;
+        }
+        return count;
+    }
+
+    public String getRegion(int archetype, int animation) {
+        return mRegion[archetype][animation];
+    }
+
+    public int getFrameWidth(int archetype, int animation) {
+        return mFrameWidth[archetype][animation];
+    }
+
+    public int getFrameHeight(int archetype, int animation) {
+        return mFrameHeight[archetype][animation];
+    }
+
+    public int getColumns(int archetype, int animation) {
+        return mColumns[archetype][animation];
+    }
+
+    public int getFrameCount(int archetype, int animation) {
+        return mFrameCount[archetype][animation];
+    }
+
+    public float getFrameDuration(int archetype, int animation) {
+        return mFrameDuration[archetype][animation];
+    }
+}
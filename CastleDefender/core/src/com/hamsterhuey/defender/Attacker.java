@@ -1,6 +1,5 @@
 package com.hamsterhuey.defender;
 
-import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Rectangle;
 
@@ -36,8 +35,10 @@ public class Attacker {
      * @param width: The width of the attacker's sprite
      * @param height: The height of the attacker's sprite
      * @param type: The string that describes the attacker (knight or regular)
+     * @param animations: The animations shared by every attacker of this type
      */
-    public Attacker(float hitDamage, float walkSpeed, float x, float y, float width, float height, String type) {
+    public Attacker(float hitDamage, float walkSpeed, float x, float y, float width, float height, String type,
+                    AnimationSet animations) {
         mHitDamage = hitDamage;
         mWalkSpeed = walkSpeed;
         mX = x;
@@ -48,7 +49,7 @@ public class Attacker {
         mAlive = false;
         mGrabbed = false;
         mType = type;
-        mCharacterSprite = new Sprite((int)x, (int)y, width, height);
+        mCharacterSprite = new Sprite(x, y, width, height, animations);
     }
 
     /**
@@ -106,24 +107,19 @@ public class Attacker {
         return mCharacterSprite.getCurrentFrame();
     }
 
-    /**
-     * Method to give the Attacker's sprite object a named animation
-     * @param animation: The actual Animation object created for the sprite
-     * @param name: The string name to save when referencing the specific animation
-     */
-    public void addAnimation(Animation animation, String name) {
-        mCharacterSprite.addAnimation(animation, name);
-    }
-
     /**
      * Method to play a specific animation on the attacker's sprite object
-     * @param animation: The string by which the sprite refers to the desired animation itself
+     * @param animation: The handle of the animation, resolved once through AnimationSet.handleOf
      * @param looping: A boolean to specify whether to loop the animation or not
      */
-    public void play(String animation, boolean looping) {
+    public void play(int animation, boolean looping) {
         mCharacterSprite.play(animation, looping);
     }
 
+    public AnimationSet getAnimations() {
+        return mCharacterSprite.getAnimations();
+    }
+
     /**
      * Method to set the position of an attacker, alive or dead is irrelevant
      *
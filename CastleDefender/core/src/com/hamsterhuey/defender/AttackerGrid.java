@@ -0,0 +1,252 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid over the game world used to find attackers near a point without testing every one of them
+ *
+ * Each attacker is filed under the cell holding the bottom-left corner of its bounding box, in an intrusive
+ * doubly linked list (next / prev index arrays), so inserting, removing and moving between cells are O(1).
+ * Queries only visit the cells that could hold a box reaching the query area, and never allocate.
+ * Attackers only ever walk sideways, so each one also remembers the x range of its cell - moving within it
+ * costs two float compares.
+ * The per-attacker links are chunked the same way as AttackerStore's arrays, so growing never copies them
+ */
+public class AttackerGrid {
+    // The world is 800 x 480 but attackers spawn off-screen to the left, so the grid starts a little early
+    private static final float ORIGIN_X = -128f;
+    private static final float ORIGIN_Y = 0f;
+    private static final float CELL_SIZE = 64f;
+    private static final float INV_CELL_SIZE = 1f / CELL_SIZE;
+    private static final int COLUMNS = 16;
+    private static final int ROWS = 8;
+    private static final int NONE = -1;
+
+    // The largest bounding box any attacker can have, used to widen queries
+    private final float mMaxWidth;
+    private final float mMaxHeight;
+
+    // Head of each cell's list, indexed by row * COLUMNS + column
+    private int[] mHead;
+    // Per-attacker links, indexed by [chunk][offset] of the attacker id, same as AttackerStore
+    private int[][] mCell;
+    private int[][] mNext;
+    private int[][] mPrev;
+    private float[][] mCellLeft;
+    private float[][] mCellRight;
+    private int mChunkCount;
+
+    /**
+     * Constructor for an empty grid, with no room for any attacker until addChunk is called
+     *
+     * @param maxWidth: The widest bounding box of any attacker
+     * @param maxHeight: The tallest bounding box of any attacker
+     */
+    public AttackerGrid(float maxWidth, float maxHeight) {
+        mMaxWidth = maxWidth;
+        mMaxHeight = maxHeight;
+        mHead = new int[COLUMNS * ROWS];
+        Arrays.fill(mHead, NONE);
+        mCell = new int[1][];
+        mNext = new int[1][];
+        mPrev = new int[1][];
+        mCellLeft = new float[1][];
+        mCellRight = new float[1][];
+        mChunkCount = 0;
+    }
+
+    /**
+     * Method to file an attacker under the cell holding (x, y)
+     *
+     * @param i: The attacker's id, which must not already be in the grid
+     * @param x: The x coordinate of the attacker's bounding box
+     * @param y: The y coordinate of the attacker's bounding box
+     */
+    public void insert(int i, float x, float y) {
+        link(i, row(y) * COLUMNS + column(x));
+    }
+
+    /**
+     * Method to take an attacker out of the grid, does nothing if it isn't in it
+     *
+     * @param i: The attacker's id
+     */
+    public void remove(int i) {
+        if(mCell[i >>> AttackerStore.CHUNK_BITS][i & AttackerStore.CHUNK_MASK] != NONE)
+            unlink(i);
+    }
+
+    /**
+     * Method to call after an attacker walks, only touching the lists if it crossed into another column
+     *
+     * @param i: The attacker's id, which must be in the grid
+     * @param x: The new x coordinate of the attacker's bounding box, its y coordinate stays the same
+     */
+    public void moveTo(int i, float x) {
+        int c = i >>> AttackerStore.CHUNK_BITS;
+        int o = i & AttackerStore.CHUNK_MASK;
+        if(x < mCellLeft[c][o] || x >= mCellRight[c][o])
+            relink(i, x);
+    }
+
+    /**
+     * Method to file an attacker under the column holding its new x coordinate, for callers that have already
+     * checked it left its cell against getCellLeft / getCellRight
+     *
+     * @param i: The attacker's id, which must be in the grid
+     * @param x: The new x coordinate of the attacker's bounding box, its y coordinate stays the same
+     */
+    public void relink(int i, float x) {
+        int c = i >>> AttackerStore.CHUNK_BITS;
+        int o = i & AttackerStore.CHUNK_MASK;
+        int cell = mCell[c][o] - mCell[c][o] % COLUMNS + column(x);
+        unlink(i);
+        link(i, cell);
+    }
+
+    /**
+     * Methods to get one chunk of the x range of each attacker's cell, so a loop moving many attackers can
+     * skip the ones that stay in their cell without a call per attacker. Entries for attackers outside the
+     * grid are stale
+     *
+     * @param chunk: The chunk of attacker ids, same as AttackerStore
+     * @return bounds: The left (inclusive) or right (exclusive) x bound of the cell of each attacker in the chunk
+     */
+    public float[] getCellLeft(int chunk) {
+        return mCellLeft[chunk];
+    }
+
+    public float[] getCellRight(int chunk) {
+        return mCellRight[chunk];
+    }
+
+    /**
+     * Method to make room for another AttackerStore.CHUNK_SIZE attacker ids, which start outside the grid
+     */
+    public void addChunk() {
+        int c = mChunkCount;
+        if(c == mCell.length) {
+            mCell = Arrays.copyOf(mCell, c * 2);
+            mNext = Arrays.copyOf(mNext, c * 2);
+            mPrev = Arrays.copyOf(mPrev, c * 2);
+            mCellLeft = Arrays.copyOf(mCellLeft, c * 2);
+            mCellRight = Arrays.copyOf(mCellRight, c * 2);
+        }
+        mCell[c] = new int[AttackerStore.CHUNK_SIZE];
+        mNext[c] = new int[AttackerStore.CHUNK_SIZE];
+        mPrev[c] = new int[AttackerStore.CHUNK_SIZE];
+        mCellLeft[c] = new float[AttackerStore.CHUNK_SIZE];
+        mCellRight[c] = new float[AttackerStore.CHUNK_SIZE];
+        Arrays.fill(mCell[c], NONE);
+        mChunkCount++;
+    }
+
+    /**
+     * Find the lowest id among attackers whose bounding box contains point (x, y)
+     *
+     * @param store: The store holding the attackers' positions and sizes
+     * @param x: The x coordinate to check
+     * @param y: The y coordinate to check
+     * @return index: The lowest id of an attacker containing (x, y), or -1 if none do
+     */
+    public int findFirstAt(AttackerStore store, float x, float y) {
+        // Only boxes starting up to one max-size box below and left of the point can reach it
+        int minCol = column(x - mMaxWidth);
+        int maxCol = column(x);
+        int minRow = row(y - mMaxHeight);
+        int maxRow = row(y);
+
+        int found = NONE;
+        for(int r = minRow; r <= maxRow; r++) {
+            for(int c = minCol; c <= maxCol; c++) {
+                for(int i = mHead[r * COLUMNS + c]; i != NONE; i = next(i)) {
+                    if((found == NONE || i < found) && store.contains(i, x, y))
+                        found = i;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Collects the ids of every attacker whose bounding box touches the circle at (x, y)
+     *
+     * @param store: The store holding the attackers' positions and sizes
+     * @param x: The x coordinate of the circle's center
+     * @param y: The y coordinate of the circle's center
+     * @param radius: The radius of the circle
+     * @param out: Array the ids are added to, cleared first so it may be reused between calls
+     * @return count: The number of ids added
+     */
+    public int findInRadius(AttackerStore store, float x, float y, float radius, IntArray out) {
+        out.clear();
+        int minCol = column(x - radius - mMaxWidth);
+        int maxCol = column(x + radius);
+        int minRow = row(y - radius - mMaxHeight);
+        int maxRow = row(y + radius);
+        float radiusSquared = radius * radius;
+
+        for(int r = minRow; r <= maxRow; r++) {
+            for(int c = minCol; c <= maxCol; c++) {
+                for(int i = mHead[r * COLUMNS + c]; i != NONE; i = next(i)) {
+                    // Distance from the circle's center to the closest point of the box
+                    float left = store.getX(i);
+                    float bottom = store.getY(i);
+                    float dx = Math.max(Math.max(left - x, 0f), x - (left + store.getWidth(i)));
+                    float dy = Math.max(Math.max(bottom - y, 0f), y - (bottom + store.getHeight(i)));
+                    if(dx * dx + dy * dy <= radiusSquared)
+                        out.add(i);
+                }
+            }
+        }
+        return out.size;
+    }
+
+    private int next(int i) {
+        return mNext[i >>> AttackerStore.CHUNK_BITS][i & AttackerStore.CHUNK_MASK];
+    }
+
+    private void link(int i, int cell) {
+        int c = i >>> AttackerStore.CHUNK_BITS;
+        int o = i & AttackerStore.CHUNK_MASK;
+        int head = mHead[cell];
+        mNext[c][o] = head;
+        mPrev[c][o] = NONE;
+        if(head != NONE)
+            mPrev[head >>> AttackerStore.CHUNK_BITS][head & AttackerStore.CHUNK_MASK] = i;
+        mHead[cell] = i;
+        mCell[c][o] = cell;
+
+        // The outermost columns also hold everything past the edge of the grid
+        int column = cell % COLUMNS;
+        mCellLeft[c][o] = column == 0 ? Float.NEGATIVE_INFINITY : ORIGIN_X + column * CELL_SIZE;
+        mCellRight[c][o] = column == COLUMNS - 1 ? Float.POSITIVE_INFINITY : ORIGIN_X + (column + 1) * CELL_SIZE;
+    }
+
+    private void unlink(int i) {
+        int c = i >>> AttackerStore.CHUNK_BITS;
+        int o = i & AttackerStore.CHUNK_MASK;
+        int next = mNext[c][o];
+        int prev = mPrev[c][o];
+        if(prev != NONE)
+            mNext[prev >>> AttackerStore.CHUNK_BITS][prev & AttackerStore.CHUNK_MASK] = next;
+        else
+            mHead[mCell[c][o]] = next;
+        if(next != NONE)
+            mPrev[next >>> AttackerStore.CHUNK_BITS][next & AttackerStore.CHUNK_MASK] = prev;
+        mCell[c][o] = NONE;
+    }
+
+    // Anything outside the grid is filed under the nearest edge cell, queries clamp the same way
+    private int column(float x) {
+        int c = (int) ((x - ORIGIN_X) * INV_CELL_SIZE);
+        return c < 0 ? 0 : (c >= COLUMNS ? COLUMNS - 1 : c);
+    }
+
+    private int row(float y) {
+        int r = (int) ((y - ORIGIN_Y) * INV_CELL_SIZE);
+        return r < 0 ? 0 : (r >= ROWS ? ROWS - 1 : r);
+    }
+}
@@ -0,0 +1,621 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.IntArray;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Structure-of-arrays storage for every attacker in the game
+ *
+ * Each attacker is an index into a set of parallel primitive arrays instead of an object with its own sprite,
+ * so the per-frame loops (movement, clamping to the castle wall, damage) walk contiguous floats.
+ * The arrays are split into chunks of CHUNK_SIZE attackers: attacker i lives at offset (i & CHUNK_MASK) of chunk
+ * (i >>> CHUNK_BITS). Growing the store only allocates one more chunk per array, so existing attackers are never
+ * copied and the horde can grow to tens of thousands without a frame that has to move everything at once.
+ *
+ * The ids of living attackers are also kept packed at the front of a dense list (dead ones are swapped out),
+ * so every loop over the living is as long as the horde is, however many dead attackers the pool holds.
+ * Living attackers are also kept in an AttackerGrid, updated as they move, so taps only test nearby attackers.
+ *
+ * The store doubles as the attacker pool: dead slots sit on a free list per archetype, an intrusive stack threaded
+ * through mNextFree, so obtaining and killing an attacker are O(1). Sizes and which archetypes have an attack
+ * animation are copied out of the ArchetypeRegistry into arrays indexed by archetype id when the store is made
+ */
+public class AttackerStore {
+    // Public constants for the animation an attacker is playing, the handles in each archetype's AnimationSet
+    public static final int ANIM_WALK = 0;
+    public static final int ANIM_ATTACK = 1;
+
+    // Public constants for the chunked layout, shared with AttackerGrid
+    public static final int CHUNK_BITS = 10;
+    public static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    public static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Number of live list entries advanced as one unit of work, the grain of the parallel advance
+    public static final int ADVANCE_BLOCK_SIZE = 1024;
+
+    private static final int NONE = -1;
+    private static final int SNAPSHOT_RECORD_SIZE = 2 + 7 * 4 + 4; // Archetype and animation bytes, seven floats, the free list link
+
+    // Per-archetype data, indexed by archetype id
+    private final float[] mArchetypeWidth;
+    private final float[] mArchetypeHeight;
+    private final boolean[] mArchetypeHasAttack;
+
+    // Per-attacker data, indexed by [chunk][offset]
+    private float[][] mX;
+    private float[][] mPreviousX; // Where the attacker was before the last advance, for drawing between ticks
+    private float[][] mY;
+    private float[][] mStartX;
+    private float[][] mWalkSpeed;
+    private float[][] mHitDamage;
+    private int[][] mArchetype;
+    private int[][] mAnimation;
+    private float[][] mStateTime;
+    private int[][] mNextFree;
+    private int[][] mLivePosition; // Where the attacker sits in mLive, or NONE while it is dead
+    private AttackerGrid mGrid;
+
+    // Ids of the living attackers, packed into the first mLiveCount entries in no particular order
+    private int[] mLive;
+
+    // Top of each archetype's free list, indexed by archetype id
+    private int[] mFreeHead;
+
+    private int mSize;
+    private int mChunkCount;
+    private int mLiveCount;
+
+    // Per-block results of the advance in progress, indexed by block
+    private float[] mBlockDamage;
+    private boolean[] mBlockAtWall;
+    private int[][] mBlockMoved;       // Attackers that left their grid cell, relinked once every block is done
+    private int[] mBlockMovedCount;
+    private float mAdvanceDeltaTime;
+    private float mAdvanceStopX;
+    private AdvancePool mAdvancePool;  // Null to always advance on the calling thread
+    private int mParallelThreshold;
+
+    /**
+     * Constructor for an empty store
+     *
+     * @param archetypes: The archetypes attackers in the store can be, ids handed to the store index it
+     * @param capacity: The number of attackers to make room for up front, rounded up to whole chunks
+     */
+    public AttackerStore(ArchetypeRegistry archetypes, int capacity) {
+        int archetypeCount = archetypes.getCount();
+        mArchetypeWidth = new float[archetypeCount];
+        mArchetypeHeight = new float[archetypeCount];
+        mArchetypeHasAttack = new boolean[archetypeCount];
+        for(int a = 0; a < archetypeCount; a++) {
+            mArchetypeWidth[a] = archetypes.getWidth(a);
+            mArchetypeHeight[a] = archetypes.getHeight(a);
+            mArchetypeHasAttack[a] = archetypes.hasAnimation(a, ANIM_ATTACK);
+        }
+
+        int chunks = Math.max(1, (capacity + CHUNK_MASK) >>> CHUNK_BITS);
+        mSize = 0;
+        mChunkCount = 0;
+        mLiveCount = 0;
+        mX = new float[chunks][];
+        mPreviousX = new float[chunks][];
+        mY = new float[chunks][];
+        mStartX = new float[chunks][];
+        mWalkSpeed = new float[chunks][];
+        mHitDamage = new float[chunks][];
+        mArchetype = new int[chunks][];
+        mAnimation = new int[chunks][];
+        mStateTime = new float[chunks][];
+        mNextFree = new int[chunks][];
+        mLivePosition = new int[chunks][];
+        mLive = new int[chunks * CHUNK_SIZE];
+        mGrid = new AttackerGrid(archetypes.getMaxWidth(), archetypes.getMaxHeight());
+        mFreeHead = new int[archetypeCount];
+        Arrays.fill(mFreeHead, NONE);
+        mBlockDamage = new float[0];
+        mBlockAtWall = new boolean[0];
+        mBlockMoved = new int[0][];
+        mBlockMovedCount = new int[0];
+        mAdvancePool = null;
+        mParallelThreshold = Integer.MAX_VALUE;
+        for(int c = 0; c < chunks; c++) {
+            addChunk();
+        }
+    }
+
+    /**
+     * Method to add a new attacker to the store, which starts "dead" like the Attacker class did
+     * The new attacker goes on top of its archetype's free list, so the next obtain returns it
+     *
+     * @param archetype: The archetype id of the attacker, from the store's ArchetypeRegistry
+     * @param hitDamage: The damage per tick to deal to the castle should the attacker reach the gates
+     * @param walkSpeed: The normal movement speed of the attacker as it moves left-to-right
+     * @param x: The x coordinate to begin at, and return to whenever revived
+     * @param y: The y coordinate to walk along
+     * @return index: The id of the new attacker
+     */
+    public int add(int archetype, float hitDamage, float walkSpeed, float x, float y) {
+        if(mSize >= mChunkCount << CHUNK_BITS)
+            addChunk();
+
+        int i = mSize++;
+        int c = i >>> CHUNK_BITS;
+        int o = i & CHUNK_MASK;
+        mArchetype[c][o] = archetype;
+        mHitDamage[c][o] = hitDamage;
+        mWalkSpeed[c][o] = walkSpeed;
+        mX[c][o] = x;
+        mPreviousX[c][o] = x;
+        mStartX[c][o] = x;
+        mY[c][o] = y;
+        mAnimation[c][o] = ANIM_WALK;
+        mStateTime[c][o] = 0f;
+        mLivePosition[c][o] = NONE;
+        pushFree(i);
+        return i;
+    }
+
+    /**
+     * Method to revive a dead attacker of an archetype for reuse - moves it back to its start and restarts its walk
+     *
+     * @param archetype: The archetype id of the attacker wanted
+     * @return index: The id of the revived attacker, or -1 if every attacker of that archetype is alive
+     */
+    public int obtain(int archetype) {
+        int i = mFreeHead[archetype];
+        if(i == NONE)
+            return NONE;
+        return obtain(archetype, mY[i >>> CHUNK_BITS][i & CHUNK_MASK]);
+    }
+
+    /**
+     * Method to revive a dead attacker of an archetype in another lane than the one it was created in
+     *
+     * @param archetype: The archetype id of the attacker wanted
+     * @param y: The y coordinate to walk along from now on
+     * @return index: The id of the revived attacker, or -1 if every attacker of that archetype is alive
+     */
+    public int obtain(int archetype, float y) {
+        int i = mFreeHead[archetype];
+        if(i == NONE)
+            return NONE;
+        int c = i >>> CHUNK_BITS;
+        int o = i & CHUNK_MASK;
+        mFreeHead[archetype] = mNextFree[c][o];
+        mNextFree[c][o] = NONE;
+
+        mX[c][o] = mStartX[c][o];
+        mPreviousX[c][o] = mStartX[c][o];
+        mY[c][o] = y;
+        mAnimation[c][o] = ANIM_WALK;
+        mStateTime[c][o] = 0f;
+        mLivePosition[c][o] = mLiveCount;
+        mLive[mLiveCount++] = i;
+        mGrid.insert(i, mX[c][o], mY[c][o]);
+        return i;
+    }
+
+    /**
+     * Kills an attacker and hands its slot back to the pool, does nothing if it is already dead
+     * The last living attacker takes its place in the live list
+     *
+     * @param i: The id of the attacker to kill
+     */
+    public void kill(int i) {
+        int c = i >>> CHUNK_BITS;
+        int o = i & CHUNK_MASK;
+        int position = mLivePosition[c][o];
+        if(position == NONE)
+            return;
+
+        int last = mLive[--mLiveCount];
+        mLive[position] = last;
+        mLivePosition[last >>> CHUNK_BITS][last & CHUNK_MASK] = position;
+        mLivePosition[c][o] = NONE;
+        mStateTime[c][o] = 0f;
+        mGrid.remove(i);
+        pushFree(i);
+    }
+
+    /**
+     * Kills every attacker in the store, only visiting the living ones
+     */
+    public void killAll() {
+        for(int k = 0; k < mLiveCount; k++) {
+            int i = mLive[k];
+            int c = i >>> CHUNK_BITS;
+            int o = i & CHUNK_MASK;
+            mLivePosition[c][o] = NONE;
+            mStateTime[c][o] = 0f;
+            mGrid.remove(i);
+            pushFree(i);
+        }
+        mLiveCount = 0;
+    }
+
+    /**
+     * @return size: The number of bytes writeSnapshot needs for the store as it is now
+     */
+    public int getSnapshotSize() {
+        return 4 + mSize * SNAPSHOT_RECORD_SIZE + 4 + mLiveCount * 4 + mFreeHead.length * 4;
+    }
+
+    /**
+     * Method to write every attacker, living or dead, into a saved game
+     * The live list and free lists are written as they are, so a store read back hands out the same ids in the
+     * same order - a loaded game plays on exactly like the one that was saved
+     *
+     * @param out: The buffer to write to, with at least getSnapshotSize bytes left
+     */
+    public void writeSnapshot(ByteBuffer out) {
+        out.putInt(mSize);
+        for(int i = 0; i < mSize; i++) {
+            int c = i >>> CHUNK_BITS;
+            int o = i & CHUNK_MASK;
+            out.put((byte) mArchetype[c][o]);
+            out.put((byte) mAnimation[c][o]);
+            out.putFloat(mHitDamage[c][o]);
+            out.putFloat(mWalkSpeed[c][o]);
+            out.putFloat(mStartX[c][o]);
+            out.putFloat(mX[c][o]);
+            out.putFloat(mPreviousX[c][o]);
+            out.putFloat(mY[c][o]);
+            out.putFloat(mStateTime[c][o]);
+            out.putInt(mNextFree[c][o]);
+        }
+        out.putInt(mLiveCount);
+        for(int k = 0; k < mLiveCount; k++) {
+            out.putInt(mLive[k]);
+        }
+        for(int a = 0; a < mFreeHead.length; a++) {
+            out.putInt(mFreeHead[a]);
+        }
+    }
+
+    /**
+     * Method to replace every attacker in the store with the ones in a saved game
+     * Chunks already allocated are reused, so loading a game no larger than the current one allocates nothing
+     * The game must have been saved with the same archetypes, DefenderSimulation checks that before calling this
+     *
+     * @param in: The buffer to read from, positioned where writeSnapshot started writing
+     */
+    public void readSnapshot(ByteBuffer in) {
+        killAll();
+        int size = in.getInt();
+        while(size > mChunkCount << CHUNK_BITS) {
+            addChunk();
+        }
+        mSize = size;
+        for(int i = 0; i < size; i++) {
+            int c = i >>> CHUNK_BITS;
+            int o = i & CHUNK_MASK;
+            mArchetype[c][o] = in.get();
+            mAnimation[c][o] = in.get();
+            mHitDamage[c][o] = in.getFloat();
+            mWalkSpeed[c][o] = in.getFloat();
+            mStartX[c][o] = in.getFloat();
+            mX[c][o] = in.getFloat();
+            mPreviousX[c][o] = in.getFloat();
+            mY[c][o] = in.getFloat();
+            mStateTime[c][o] = in.getFloat();
+            mNextFree[c][o] = in.getInt();
+        }
+        mLiveCount = in.getInt();
+        for(int k = 0; k < mLiveCount; k++) {
+            int i = in.getInt();
+            mLive[k] = i;
+            mLivePosition[i >>> CHUNK_BITS][i & CHUNK_MASK] = k;
+            mGrid.insert(i, getX(i), getY(i));
+        }
+        for(int a = 0; a < mFreeHead.length; a++) {
+            mFreeHead[a] = in.getInt();
+        }
+    }
+
+    public boolean isAlive(int i) {
+        return mLivePosition[i >>> CHUNK_BITS][i & CHUNK_MASK] != NONE;
+    }
+
+    /**
+     * Method that walks every living attacker right and advances its animation, then stops the ones
+     * past the castle wall, switches them to attacking and adds up the damage they deal this tick
+     * Positions are kept as floats, so an attacker moving less than a pixel per tick still gets somewhere
+     *
+     * The live list is cut into blocks of ADVANCE_BLOCK_SIZE. Each block only writes its own attackers and adds
+     * up its own damage, and moves in the grid are deferred until every block is done. With an AdvancePool set
+     * and at least the parallel threshold alive, the blocks are shared out between threads; either way the
+     * partial sums are added and the grid is updated in block order afterwards, so both modes give bit-identical results
+     *
+     * @param deltaTime: The length of the simulation tick
+     * @param stopX: The closest x coordinate an attacker can reach
+     * @return damage: The total damage dealt by attackers at the wall, or a negative value if none are there
+     */
+    public float advance(float deltaTime, float stopX) {
+        int blocks = (mLiveCount + ADVANCE_BLOCK_SIZE - 1) / ADVANCE_BLOCK_SIZE;
+        if(blocks > mBlockDamage.length)
+            growBlocks(blocks);
+        mAdvanceDeltaTime = deltaTime;
+        mAdvanceStopX = stopX;
+
+        if(mAdvancePool != null && blocks > 1 && mLiveCount >= mParallelThreshold) {
+            mAdvancePool.run(this, blocks);
+        } else {
+            for(int b = 0; b < blocks; b++) {
+                advanceBlock(b);
+            }
+        }
+
+        // Reduce once per tick, always in the same order
+        float damage = 0f;
+        boolean anyAtWall = false;
+        AttackerGrid grid = mGrid;
+        for(int b = 0; b < blocks; b++) {
+            if(mBlockAtWall[b]) {
+                damage += mBlockDamage[b];
+                anyAtWall = true;
+            }
+            int[] moved = mBlockMoved[b];
+            for(int m = 0; m < mBlockMovedCount[b]; m++) {
+                int i = moved[m];
+                grid.relink(i, mX[i >>> CHUNK_BITS][i & CHUNK_MASK]);
+            }
+        }
+        return anyAtWall ? damage : -1f;
+    }
+
+    /**
+     * Method that advances one block of the live list, called by advance or by the threads of an AdvancePool
+     * Only reads the grid, and only writes this block's attackers and block results
+     *
+     * @param block: The block to advance, counted in ADVANCE_BLOCK_SIZE entries of the live list
+     */
+    void advanceBlock(int block) {
+        int[] live = mLive;
+        int from = block * ADVANCE_BLOCK_SIZE;
+        int to = Math.min(from + ADVANCE_BLOCK_SIZE, mLiveCount);
+        float deltaTime = mAdvanceDeltaTime;
+        float stopX = mAdvanceStopX;
+        AttackerGrid grid = mGrid;
+        boolean[] hasAttack = mArchetypeHasAttack;
+        int[] moved = mBlockMoved[block];
+        int movedCount = 0;
+        float damage = 0f;
+        boolean anyAtWall = false;
+
+        // Living attackers mostly come in runs from the same chunk, so its arrays are only looked up when the chunk changes
+        int chunk = NONE;
+        float[] x = null;
+        float[] previousX = null;
+        float[] speed = null;
+        float[] stateTime = null;
+        float[] hitDamage = null;
+        int[] animation = null;
+        int[] archetype = null;
+        float[] cellLeft = null;
+        float[] cellRight = null;
+        for(int k = from; k < to; k++) {
+            int i = live[k];
+            int c = i >>> CHUNK_BITS;
+            int o = i & CHUNK_MASK;
+            if(c != chunk) {
+                chunk = c;
+                x = mX[c];
+                previousX = mPreviousX[c];
+                speed = mWalkSpeed[c];
+                stateTime = mStateTime[c];
+                hitDamage = mHitDamage[c];
+                animation = mAnimation[c];
+                archetype = mArchetype[c];
+                cellLeft = grid.getCellLeft(c);
+                cellRight = grid.getCellRight(c);
+            }
+
+            float oldX = x[o];
+            previousX[o] = oldX;
+            float newX = oldX + speed[o] * deltaTime;
+            stateTime[o] += deltaTime;
+            if(newX > stopX) {
+                // The attacker stops at the castle and starts dealing damage
+                newX = stopX;
+                damage += hitDamage[o];
+                anyAtWall = true;
+                if(animation[o] != ANIM_ATTACK && hasAttack[archetype[o]]) {
+                    animation[o] = ANIM_ATTACK;
+                    stateTime[o] = 0f;
+                }
+            }
+            x[o] = newX;
+            // Same check as AttackerGrid.moveTo, the move itself waits until every block is done
+            if(newX < cellLeft[o] || newX >= cellRight[o])
+                moved[movedCount++] = i;
+        }
+        mBlockDamage[block] = damage;
+        mBlockAtWall[block] = anyAtWall;
+        mBlockMovedCount[block] = movedCount;
+    }
+
+    /**
+     * Method to let advance share large hordes out between the threads of a pool
+     *
+     * @param pool: The pool to advance with, or null to always advance on the calling thread
+     * @param threshold: The number of living attackers from which the pool is used
+     */
+    public void setAdvancePool(AdvancePool pool, int threshold) {
+        mAdvancePool = pool;
+        mParallelThreshold = threshold;
+    }
+
+    /**
+     * Find the id of the first living attacker that point (x, y) intersects
+     * Only attackers in grid cells near the point are tested
+     *
+     * @param x: The x coordinate to check
+     * @param y: The y coordinate to check
+     * @return index: The lowest id of an attacker containing (x, y), or -1 if none do
+     */
+    public int findFirstAt(float x, float y) {
+        return mGrid.findFirstAt(this, x, y);
+    }
+
+    /**
+     * Collects the ids of every living attacker whose bounding box touches a circle
+     *
+     * @param x: The x coordinate of the circle's center
+     * @param y: The y coordinate of the circle's center
+     * @param radius: The radius of the circle
+     * @param out: Array the ids are added to, cleared first so it may be reused between calls
+     * @return count: The number of ids added
+     */
+    public int findInRadius(float x, float y, float radius, IntArray out) {
+        return mGrid.findInRadius(this, x, y, radius, out);
+    }
+
+    /**
+     * Method that checks whether a point lies within an attacker's bounding box, same as Rectangle.contains
+     */
+    public boolean contains(int i, float x, float y) {
+        int c = i >>> CHUNK_BITS;
+        int o = i & CHUNK_MASK;
+        float left = mX[c][o];
+        float bottom = mY[c][o];
+        int archetype = mArchetype[c][o];
+        return left <= x && left + mArchetypeWidth[archetype] >= x
+                && bottom <= y && bottom + mArchetypeHeight[archetype] >= y;
+    }
+
+    /**
+     * Method to walk the living attackers: for(k = 0; k < getLiveCount(); k++) visits getLive(k)
+     * The order is arbitrary and changes whenever an attacker dies
+     *
+     * @param k: The position in the live list, below getLiveCount()
+     * @return index: The id of the living attacker at that position
+     */
+    public int getLive(int k) {
+        return mLive[k];
+    }
+
+    // Getters for a single attacker below
+    public float getX(int i) {
+        return mX[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    /**
+     * Method to find where to draw an attacker between two ticks, so movement looks smooth at any frame rate
+     *
+     * @param i: The id of the attacker
+     * @param alpha: How far the frame is from the last advance towards the next, between 0 and 1
+     * @return x: The x coordinate blended between before and after the last advance
+     */
+    public float getRenderX(int i, float alpha) {
+        int c = i >>> CHUNK_BITS;
+        int o = i & CHUNK_MASK;
+        float previous = mPreviousX[c][o];
+        return previous + (mX[c][o] - previous) * alpha;
+    }
+
+    public float getPreviousX(int i) {
+        return mPreviousX[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public float getY(int i) {
+        return mY[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public float getWidth(int i) {
+        return mArchetypeWidth[getArchetype(i)];
+    }
+
+    public float getHeight(int i) {
+        return mArchetypeHeight[getArchetype(i)];
+    }
+
+    public float getHitDamage(int i) {
+        return mHitDamage[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public int getArchetype(int i) {
+        return mArchetype[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public int getAnimation(int i) {
+        return mAnimation[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public float getStateTime(int i) {
+        return mStateTime[i >>> CHUNK_BITS][i & CHUNK_MASK];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getArchetypeCount() {
+        return mFreeHead.length;
+    }
+
+    public int getLiveCount() {
+        return mLiveCount;
+    }
+
+    public int getCapacity() {
+        return mChunkCount << CHUNK_BITS;
+    }
+
+    private void growBlocks(int blocks) {
+        int old = mBlockDamage.length;
+        blocks = Math.max(blocks, old * 2);
+        mBlockDamage = Arrays.copyOf(mBlockDamage, blocks);
+        mBlockAtWall = Arrays.copyOf(mBlockAtWall, blocks);
+        mBlockMovedCount = Arrays.copyOf(mBlockMovedCount, blocks);
+        mBlockMoved = Arrays.copyOf(mBlockMoved, blocks);
+        for(int b = old; b < blocks; b++) {
+            mBlockMoved[b] = new int[ADVANCE_BLOCK_SIZE];
+        }
+    }
+
+    private void pushFree(int i) {
+        int c = i >>> CHUNK_BITS;
+        int o = i & CHUNK_MASK;
+        int archetype = mArchetype[c][o];
+        mNextFree[c][o] = mFreeHead[archetype];
+        mFreeHead[archetype] = i;
+    }
+
+    /**
+     * Method that makes room for CHUNK_SIZE more attackers by allocating one more chunk per array
+     * Only the small tables of chunk references and the live list of ints are ever copied
+     */
+    private void addChunk() {
+        int c = mChunkCount;
+        if(c == mX.length) {
+            int chunks = c * 2;
+            mX = Arrays.copyOf(mX, chunks);
+            mPreviousX = Arrays.copyOf(mPreviousX, chunks);
+            mY = Arrays.copyOf(mY, chunks);
+            mStartX = Arrays.copyOf(mStartX, chunks);
+            mWalkSpeed = Arrays.copyOf(mWalkSpeed, chunks);
+            mHitDamage = Arrays.copyOf(mHitDamage, chunks);
+            mArchetype = Arrays.copyOf(mArchetype, chunks);
+            mAnimation = Arrays.copyOf(mAnimation, chunks);
+            mStateTime = Arrays.copyOf(mStateTime, chunks);
+            mNextFree = Arrays.copyOf(mNextFree, chunks);
+            mLivePosition = Arrays.copyOf(mLivePosition, chunks);
+            mLive = Arrays.copyOf(mLive, chunks * CHUNK_SIZE);
+        }
+        mX[c] = new float[CHUNK_SIZE];
+        mPreviousX[c] = new float[CHUNK_SIZE];
+        mY[c] = new float[CHUNK_SIZE];
+        mStartX[c] = new float[CHUNK_SIZE];
+        mWalkSpeed[c] = new float[CHUNK_SIZE];
+        mHitDamage[c] = new float[CHUNK_SIZE];
+        mArchetype[c] = new int[CHUNK_SIZE];
+        mAnimation[c] = new int[CHUNK_SIZE];
+        mStateTime[c] = new float[CHUNK_SIZE];
+        mNextFree[c] = new int[CHUNK_SIZE];
+        mLivePosition[c] = new int[CHUNK_SIZE];
+        Arrays.fill(mLivePosition[c], NONE);
+        mGrid.addChunk();
+        mChunkCount++;
+    }
+}
@@ -0,0 +1,96 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+
+/**
+ * The buttons on screen, kept laid out between frames instead of drawn one by one
+ *
+ * Which buttons are showing only changes with the game state, and their images and labels never do. So the
+ * visible set's quads and label glyphs are laid out once, into a QuadCache and a BitmapFontCache, and a frame
+ * queues those two caches however many buttons there are. The layout is only redone when the set of visible
+ * buttons changes, or when a button is moved or given a new image and the layer is told with invalidate
+ */
+public class ButtonLayer {
+    private static final float TEXT_OFFSET_X = 10f;
+    private static final float TEXT_OFFSET_Y = 25f;
+
+    private final DefenderButtons[] mButtons;
+    private final QuadCache mQuads;
+    private final BitmapFontCache mLabels;
+    private int mVisibleButtons; // Bit i is set if button i is visible, same as SimulationSnapshot
+    private boolean mDirty;
+    private int mRebuilds;
+
+    /**
+     * Constructor for a layer over a set of buttons, which all need their textures set before the first draw
+     *
+     * @param buttons: The buttons, indexed the same as the simulation's
+     * @param font: The font to lay the labels out with
+     */
+    public ButtonLayer(DefenderButtons[] buttons, BitmapFont font) {
+        mButtons = buttons;
+        mQuads = new QuadCache(buttons.length);
+        mLabels = new BitmapFontCache(font, font.usesIntegerPositions());
+        mVisibleButtons = 0;
+        mDirty = true;
+        mRebuilds = 0;
+    }
+
+    /**
+     * Method to show exactly the buttons in a mask, which costs nothing if it is the mask already shown
+     *
+     * @param visibleButtons: Bit i is set if button i should be visible
+     */
+    public void setVisibleButtons(int visibleButtons) {
+        if(visibleButtons == mVisibleButtons)
+            return;
+        mVisibleButtons = visibleButtons;
+        mDirty = true;
+    }
+
+    /**
+     * Method to have the layout redone before the next draw, for after a button's position, size or texture changed
+     */
+    public void invalidate() {
+        mDirty = true;
+    }
+
+    /**
+     * Method to queue the visible buttons, images on the button layer and labels on the text layer above them
+     *
+     * @param queue: The frame's render queue
+     */
+    public void draw(RenderQueue queue) {
+        if(mDirty)
+            rebuild();
+        if(mVisibleButtons == 0)
+            return;
+        queue.add(RenderQueue.LAYER_BUTTONS, mQuads);
+        queue.add(RenderQueue.LAYER_TEXT, mLabels);
+    }
+
+    // Lays out the images and labels of every visible button, in index order
+    private void rebuild() {
+        mQuads.clear();
+        mLabels.clear();
+        for(int i = 0; i < mButtons.length; i++) {
+            DefenderButtons button = mButtons[i];
+            boolean visible = (mVisibleButtons & (1 << i)) != 0;
+            button.setVisible(visible);
+            if(!visible)
+                continue;
+            mQuads.add(button.getTexture(), button.getX(), button.getY(), button.getWidth(), button.getHeight());
+            mLabels.addText(button.getText(), button.getX() + TEXT_OFFSET_X, button.getY() + TEXT_OFFSET_Y);
+        }
+        mDirty = false;
+        mRebuilds++;
+    }
+
+    /**
+     * @return rebuilds: The number of times the layout has been redone, which should only move with the game state
+     */
+    public int getRebuilds() {
+        return mRebuilds;
+    }
+}
@@ -0,0 +1,123 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * The castle's health and damage stage, and the listeners told when either changes in a way that matters
+ *
+ * The simulation hands over the total damage of a tick once. The stage only has to be checked against the
+ * thresholds either side of the current one, so a tick costs a division and two compares however hard the castle
+ * is being hit. Listeners only hear about a stage boundary being crossed or the castle falling, never every tick
+ */
+public class Castle {
+    public static final int STAGE_COUNT = 6;
+
+    // The fraction of health that has to be lost to go past each stage, stage k lasts up to STAGE_THRESHOLDS[k]
+    private static final float[] STAGE_THRESHOLDS = { 0.15f, 0.35f, 0.5f, 0.65f, 0.85f };
+
+    private float mMaxHealth;
+    private float mHealth;
+    private int mStage;
+    private final Array<CastleListener> mListeners;
+
+    /**
+     * Constructor for an undamaged castle
+     *
+     * @param maxHealth: The castle's health when undamaged
+     */
+    public Castle(float maxHealth) {
+        mMaxHealth = maxHealth;
+        mHealth = maxHealth;
+        mStage = 0;
+        mListeners = new Array<CastleListener>(false, 4);
+    }
+
+    /**
+     * Method to subscribe to the castle's events, listeners are told in the order they were added
+     *
+     * @param listener: The listener to add
+     */
+    public void addListener(CastleListener listener) {
+        mListeners.add(listener);
+    }
+
+    public void removeListener(CastleListener listener) {
+        mListeners.removeValue(listener, true);
+    }
+
+    /**
+     * Method to take a tick's damage, from every attacker at the wall at once
+     *
+     * @param damage: The total damage dealt this tick
+     */
+    public void applyDamage(float damage) {
+        if(mHealth <= 0f)
+            return;
+        mHealth -= damage;
+        updateStage();
+        if(mHealth <= 0f) {
+            mHealth = 0f;
+            for(int i = 0; i < mListeners.size; i++) {
+                mListeners.get(i).onDestroyed(this);
+            }
+        }
+    }
+
+    /**
+     * Method to add health back, which can take the castle past its maximum
+     *
+     * @param amount: The health to add
+     */
+    public void repair(float amount) {
+        mHealth += amount;
+        updateStage();
+    }
+
+    /**
+     * Method to set the castle's health outright, for a new or loaded game
+     * A stage change is reported as usual, but a castle set to zero health isn't reported as destroyed
+     *
+     * @param maxHealth: The castle's health when undamaged
+     * @param health: The castle's health now
+     */
+    public void restore(float maxHealth, float health) {
+        mMaxHealth = maxHealth;
+        mHealth = health;
+        updateStage();
+    }
+
+    /**
+     * Method that moves the stage one threshold at a time towards the health, and tells the listeners if it moved
+     * The health rarely moves more than one stage in a tick, so this is almost always the two compares
+     */
+    private void updateStage() {
+        float percentDamage = (mMaxHealth - mHealth) / mMaxHealth;
+        int stage = mStage;
+        while(stage < STAGE_COUNT - 1 && percentDamage > STAGE_THRESHOLDS[stage]) {
+            stage++;
+        }
+        while(stage > 0 && percentDamage <= STAGE_THRESHOLDS[stage - 1]) {
+            stage--;
+        }
+        if(stage == mStage)
+            return;
+
+        int previousStage = mStage;
+        mStage = stage;
+        for(int i = 0; i < mListeners.size; i++) {
+            mListeners.get(i).onDamageStageChanged(this, previousStage);
+        }
+    }
+
+    public float getHealth() {
+        return mHealth;
+    }
+
+    public float getMaxHealth() {
+        return mMaxHealth;
+    }
+
+    public int getStage() {
+        return mStage;
+    }
+}
@@ -0,0 +1,22 @@
+package com.hamsterhuey.defender;
+
+/**
+ * Interface for anything that reacts to the castle changing, instead of checking it every tick
+ * Called on the simulation's thread - a listener on the render side should only hand a flag or value across
+ */
+public interface CastleListener {
+    /**
+     * Method called when the castle's health crosses into another damage stage, up or down
+     *
+     * @param castle: The castle, already in its new stage
+     * @param previousStage: The stage it was in before
+     */
+    void onDamageStageChanged(Castle castle, int previousStage);
+
+    /**
+     * Method called once when the castle's health hits zero
+     *
+     * @param castle: The castle that fell
+     */
+    void onDestroyed(Castle castle);
+}
@@ -1,9 +1,7 @@
 package com.hamsterhuey.defender;
 
 import com.badlogic.gdx.graphics.Color;
-import com.badlogic.gdx.graphics.Texture;
-import com.badlogic.gdx.graphics.g2d.BitmapFont;
-import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Rectangle;
 
 /**
@@ -24,7 +22,7 @@ public class DefenderButtons {
 
     // Member variables for the class
     private Rectangle mRect;
-    private Texture mTexture;
+    private TextureRegion mTexture;
     private boolean mVisible;
     private String mText;
     private float mX;
@@ -90,15 +88,6 @@ public class DefenderButtons {
         mHeight = mRect.getHeight();
     }
 
-    public void draw(BitmapFont font, SpriteBatch batch) {
-        // Only draw if visible
-        if(mVisible) {
-            // Draw the texture (all are set), then draw the text over top
-            batch.draw(mTexture, mX, mY, mWidth, mHeight);
-            font.draw(batch, mText, mX + 10, mY + 25);
-        }
-    }
-
     public boolean isVisible() {
         return mVisible;
     }
@@ -115,11 +104,11 @@ public class DefenderButtons {
         return mText;
     }
 
-    public Texture getTexture() {
+    public TextureRegion getTexture() {
         return mTexture;
     }
 
-    public void setTexture(Texture texture) {
+    public void setTexture(TextureRegion texture) {
         mTexture = texture;
     }
 
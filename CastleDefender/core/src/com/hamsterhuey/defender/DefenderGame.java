@@ -2,734 +2,545 @@ package com.hamsterhuey.defender;
 
 import com.badlogic.gdx.ApplicationAdapter;
 import com.badlogic.gdx.Gdx;
-import com.badlogic.gdx.Preferences;
+import com.badlogic.gdx.Input;
+import com.badlogic.gdx.assets.AssetManager;
+import com.badlogic.gdx.assets.loaders.BitmapFontLoader;
+import com.badlogic.gdx.assets.loaders.resolvers.ClasspathFileHandleResolver;
 import com.badlogic.gdx.graphics.GL20;
 import com.badlogic.gdx.graphics.OrthographicCamera;
-import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureAtlas;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
-import com.badlogic.gdx.math.Rectangle;
-import com.badlogic.gdx.math.Vector3;
-
-import java.util.Random;
-
+import com.badlogic.gdx.graphics.glutils.ShapeRenderer;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.SerializationException;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Renderer for the castle defender game
+ *
+ * All game rules live in DefenderSimulation, which runs on its own SimulationThread - this class only turns
+ * screen touches into world taps for it and draws the newest snapshot of its state, so a slow tick never drops a frame
+ *
+ * Assets are loaded through an AssetManager: files are read and decoded on its background thread while
+ * each frame uploads what is ready and draws a progress bar. The damaged castle backgrounds aren't needed
+ * on the menu, so they are only queued once the first round starts
+ */
 public class DefenderGame extends ApplicationAdapter {
+	// Asset paths, relative to the android assets folder (the font comes from the libgdx jar)
+	private static final String GAME_ATLAS = "atlas/game.atlas";
+	private static final String DAMAGE_ATLAS = "atlas/castle_damage.atlas";
+	private static final String FONT = "com/badlogic/gdx/utils/arial-15.fnt";
+	private static final String REPLAY = "replays/last.replay"; // Every session is recorded here, replacing the one before
+	private static final String SAVE = "save/game.sav";
+	private static final String WAVES = "waves.json";
+	private static final String ARCHETYPES = ArchetypeRegistry.ASSET;
+
+	// Player settings, kept in the game's preferences
+	private static final String PREFERENCES = "CastleDefender";
+	private static final String PREF_ENDLESS_HORDE = "endlessHorde"; // Lifts the per-round cap on living attackers
+	private static final int LOAD_BUDGET_MILLIS = 12; // Time each frame may spend uploading assets, leaving room to draw
+	private static final float WORLD_HEIGHT = 480f; // Height of the orthographic view, used to turn y into draw depth
+
 	// Classes used in rendering game objects to the screen
 	private SpriteBatch mBatch;
+	private RenderQueue mRenderQueue; // Every draw goes through here, sorted to keep texture switches to a minimum
     private BitmapFont mFont;
 	private OrthographicCamera mCamera;
-	private Texture[] mGameBackgrounds;
+	private ShapeRenderer mProgressBar; // Draws the loading screen, which can't use any texture yet
+	private TextureAtlas mGameAtlas; // Every sprite, button and the font share this one page
+	private TextureRegion[] mGameBackgrounds;
 	private DefenderButtons[] mButtons;
+	private ButtonLayer mButtonLayer;
 
 	// Animations used by sprites in game
-	private Animation mStandardAttackerWalk;
-	private Animation mKnightAttackerWalk;
-	private Animation mKnightAttackerAttack;
-
-	// Member variables used in game calculations
-    private int mRoundNumber;
-    private int mRoundMaxAttackers;
-	private int mLivingAttackerCount;
-	private int mCastleDamageStage;
-	private int mGameState;
-	private int mAttackerDelay;
-	private float mRoundTimeElapsed;
-	private float mCastleMaxHealth;
-	private float mCastleHealth;
-    private float mRoundScore;
-    private float mTotalScore;
-	private float mKnightSpawnChance;
-	private float mRoundMaxTime;
-	private float mRepairCost;
-    private String mHealthText;
-	private String mTotalScoreText;
-    private String mRoundScoreText;
-	private String mGameTitle;
-	private String mGameSavedText;
-	private String mRoundText;
-	private boolean mPaused;
-	private boolean mRoundSaved;
-
-	// Monster House Variables
-	private int mMonsterHouseSpawn;
-
-	// Spawn variables
-	int mSpawnTime;
-	private Random mRandom;
-	private int mSpawnTimeMin = 85;
-	private int mSpawnTimeMax = 120;
-
-	// Constant variables used in game
-	private final float MIN_SPEED = 150f;
-	private final float MAX_SPEED_VARIANCE = 120f; // Can be UP TO an additional 120 "units" of speed, based on rng
-    private final float MIN_SPAWN_Y = 65f; // The lowest point an attacker spawns at
-    private final float MAX_SPAWN_Y_VARIANCE = 30f; // The greatest that a spawning y-coordinate varies (adds to MIN_SPAWN_Y at creation)
-    private final float MIN_STOP_X = 585f; // The closest point that an attacker can damage the castle
-	private final int ATTACKER_ARRAY_SIZE = 50; // The number of attackers to make on creating the scene
-	private final int ATTACKER_HALF_SIZE = ATTACKER_ARRAY_SIZE / 2; // Used so half of the array are knights, half are normal
-	private final int STATE_PRE_GAME = 0;
-	private final int STATE_ROUND_START = 1;
-	private final int STATE_ROUND_PLAY = 2;
-	private final int STATE_ROUND_OVER = 3;
-	private final int STATE_GAME_OVER = 4;
-
-	// Constants used for saving a game
-	private final String PREFS_NAME = "Defender_Data";
-	private final String KEY_HEALTH = "castleHealth";
-	private final String KEY_ROUND = "roundNumber";
-	private final String KEY_SCORE = "totalScore";
-
-	// Data structures for keeping track of specific objects in game
-	private Attacker[] mAttackers;
-	private Vector3 mLastTouch;
+	private ArchetypeRegistry mArchetypes;
+	private AnimationSet[] mArchetypeAnimations; // One shared set per attacker archetype, indexed by archetype id
+
+	// Text drawn over the game, only laid out again when the value it shows changes
+    private HudLabel mHealthText;
+	private HudLabel mTotalScoreText;
+    private HudLabel mRoundScoreText;
+	private HudLabel mGameTitle;
+	private HudLabel mGameSavedText;
+	private HudLabel mRoundStartText;
+	private HudLabel mRoundText;
+	private HudLabel mPausedText;
+
+	// The thread running the simulation, and the newest state it handed over
+	private SimulationThread mSimulationThread;
+	private AdvancePool mAdvancePool; // Helps the simulation thread with large hordes, null on devices without spare cores
+	private ReplayRecorder mRecorder; // Null if there is no local storage to record to
+	private FileSaveStore mSaveStore; // Null if there is no local storage to save to
+	private SimulationSnapshot mSnapshot;
+
+	// Turns touches into taps for the simulation as libGDX delivers them
+	private TouchInput mTouchInput;
+
+	// Asset loading and startup timing - the log starts timing as the launcher constructs the game
+	private final StartupLog mStartupLog = new StartupLog();
+	private AssetManager mAssets;
+	private boolean mGameAssetsLoaded;
+	private boolean mDamageQueued;
+	private boolean mDamageLoaded;
+	private volatile boolean mCastleDamaged; // Set from the simulation thread the first time the castle shows damage
+	private boolean mFirstFrameDrawn;
+
+	// Per-phase frame timings, shown on the overlay when toggled on and written to a CSV file at the end of every round
+	private FrameMetrics mMetrics;
+	private MetricsOverlay mMetricsOverlay;
+	private boolean mShowMetrics;
+	private int mLastGameState;
 
 	
 	@Override
 	public void create () {
 		// Begin by setting up screen rendering classes
 		mBatch = new SpriteBatch();
-        mFont = new BitmapFont();
+		mRenderQueue = new RenderQueue(128);
 		mCamera = new OrthographicCamera();
 		mCamera.setToOrtho(false, 800, 480); // Regardless of resolution, project screen onto 800 x 480 orthographic matrix
 
-		mGameBackgrounds = new Texture[6]; // Six frames describing six states of damage to the castle, from pristine to broken
-		mGameBackgrounds[0] = new Texture("castle_v1.png");
-		mGameBackgrounds[1] = new Texture("castle_v1_dam1.png");
-		mGameBackgrounds[2] = new Texture("castle_v1_dam2.png");
-		mGameBackgrounds[3] = new Texture("castle_v1_dam3.png");
-		mGameBackgrounds[4] = new Texture("castle_v1_dam4.png");
-		mGameBackgrounds[5] = new Texture("castle_v1_dam5.png");
+		mProgressBar = new ShapeRenderer();
 
-		// Assign value to list so it may be given objects to store
-		mAttackers = new Attacker[ATTACKER_ARRAY_SIZE];
+		// The simulation hit tests its own buttons, these copies are only drawn, shown as the snapshot says
 		mButtons = new DefenderButtons[7];
-		mButtons[0] = new DefenderButtons(DefenderButtons.TYPE_NEW_GAME);
-		mButtons[1] = new DefenderButtons(DefenderButtons.TYPE_RESUME_SAVED_GAME);
-		mButtons[2] = new DefenderButtons(DefenderButtons.TYPE_PAUSE_GAME);
-		mButtons[3] = new DefenderButtons(DefenderButtons.TYPE_RESUME_PAUSED_GAME);
-		mButtons[4] = new DefenderButtons(DefenderButtons.TYPE_REPAIR_CASTLE);
-		mButtons[5] = new DefenderButtons(DefenderButtons.TYPE_CONTINUE_NEXT_ROUND);
-		mButtons[6] = new DefenderButtons(DefenderButtons.TYPE_SAVE_GAME);
-
-		mButtons[0].setTexture(new Texture("button1.png"));
-		mButtons[1].setTexture(new Texture("button1.png"));
-		mButtons[2].setTexture(new Texture("button2.png"));
-		mButtons[3].setTexture(new Texture("button2.png"));
-		mButtons[4].setTexture(new Texture("button3.png"));
-		mButtons[5].setTexture(new Texture("button3.png"));
-		mButtons[6].setTexture(new Texture("button3.png"));
-
-		// Create the object that tracks the touch coordinates
-		mLastTouch = new Vector3();
-
-        // Assign value to miscellaneous game variables
-        mRoundTimeElapsed = 0;
-        mRoundMaxTime = 25f; // Counted in SECONDS
-		mCastleMaxHealth = 1000f;
-        mCastleHealth = mCastleMaxHealth; // Will last 1,000 frames if attacked by one single standard attacker constantly
-		mCastleDamageStage = 0;
-        mRoundScore = 0f;
-        mTotalScore = 0f;
-        mRoundNumber = 1;
-		mGameState = STATE_PRE_GAME;
-		mAttackerDelay = 0;
-        mRoundMaxAttackers = 5;
-		mRepairCost = 1000f;
-		mLivingAttackerCount = 0;
-		mKnightSpawnChance = 0.35f; // 35% chance to spawn a knight instead of normal under regular circumstances
-        mPaused = false;
-		mRoundSaved = false;
-        mHealthText = "Castle Strength: " + mCastleHealth;
-        mRoundScoreText = "This Round Score: " + mRoundScore;
-		mTotalScoreText = "Total Game Score: " + mTotalScore;
-		mGameTitle = "Castle Defender";
-		mGameSavedText = "Game Saved!";
-		mRoundText = "Round :" + mRoundNumber;
-		mRandom = new Random();
-		//TEMPORARY! Will change the logic later
-        mSpawnTime = 100;
-		mMonsterHouseSpawn = 10;
-
-		// Pull out the normal attacker's frames through temporary objects
-		Texture walkTexture = new Texture("attackerSheet.png");
-		TextureRegion[][] walkTempArray = TextureRegion.split(walkTexture, 64, 64);
-		TextureRegion[] walkFrames = new TextureRegion[16];
-
-		int index = 0; // Cut the animation's frames up using this temporary jagged array (8 by 2 matches the image file rows / cols)
-		for (int i = 0; i < 2; i++) {
-			for (int j = 0; j < 8; j++) {
-				walkFrames[index++] = walkTempArray[i][j];
-			}
+		for(int i = 0; i < mButtons.length; i++) {
+			mButtons[i] = new DefenderButtons(i);
 		}
 
-		mStandardAttackerWalk = new Animation(0.055f, walkFrames);
-
-		// Do the same process for the knight animations
-		Texture knightWalk = new Texture("knight_sheet_walk.png");
-		Texture knightAttack = new Texture("knight_sheet_attack.png");
-
-		TextureRegion[][] knightWalkTemp = TextureRegion.split(knightWalk, 64, 128);
-		TextureRegion[][] knightAtkTemp = TextureRegion.split(knightAttack, 64, 128);
-
-		TextureRegion[] knightWalkFrames = new TextureRegion[8];
-		TextureRegion[] knightAtkFrames = new TextureRegion[4];
+		// The simulation is only touched by its thread from here on
+		mMetrics = new FrameMetrics();
+		long seed = TimeUtils.nanoTime();
+		mArchetypes = loadArchetypes();
+		if(Gdx.files.isLocalStorageAvailable()) {
+			// Opening the store reads back the autosave journal, whatever a killed session last checkpointed
+			mSaveStore = new FileSaveStore(Gdx.files.local(SAVE).file(), mArchetypes);
+			mStartupLog.mark("save journal recovered");
+		}
+		DefenderSimulation simulation = new DefenderSimulation(mSaveStore, seed, mArchetypes);
+		simulation.setMetrics(mMetrics);
+		// Castle events come on the simulation thread, only a flag crosses over to the renderer
+		simulation.getCastle().addListener(new CastleListener() {
+			@Override
+			public void onDamageStageChanged(Castle castle, int previousStage) {
+				if(castle.getStage() > 0)
+					mCastleDamaged = true;
+			}
 
-		index = 0;
-		for(int i = 0; i < 2; i++) {
-			for(int j = 0; j < 4; j++) {
-				knightWalkFrames[index++] = knightWalkTemp[i][j];
+			@Override
+			public void onDestroyed(Castle castle) {
+			}
+		});
+		// Recording the seed and every tap lets a reported bug be played back with the headless ReplayRunner
+		if(Gdx.files.isLocalStorageAvailable()) {
+			try {
+				mRecorder = new ReplayRecorder(Gdx.files.local(REPLAY).write(false), seed, mArchetypes.getSource());
+				simulation.setRecorder(mRecorder);
+			} catch (GdxRuntimeException e) {
+				Gdx.app.error("Replay", "Couldn't record to " + REPLAY, e);
 			}
 		}
-
-		index = 0;
-		for(int i = 0; i < 4; i++) {
-			knightAtkFrames[index++] = knightAtkTemp[0][i];
+		// Set after the recorder, so the script goes into the recording - a bad script only costs the scripted waves
+		try {
+			simulation.setWaveScript(WaveScript.parse(Gdx.files.internal(WAVES).readString("UTF-8"), mArchetypes));
+		} catch (GdxRuntimeException e) {
+			Gdx.app.error("Waves", "Couldn't read " + WAVES, e);
+		} catch (SerializationException e) {
+			Gdx.app.error("Waves", "Couldn't read " + WAVES, e);
+		} catch (IllegalArgumentException e) {
+			Gdx.app.error("Waves", "Couldn't use " + WAVES, e);
 		}
-
-		mKnightAttackerAttack = new Animation(0.25f, knightAtkFrames);
-		mKnightAttackerWalk = new Animation(0.125f, knightWalkFrames);
-
-		// Populate the mAttackers array with 50 total attackers, 25 of each
-		for(int i = 0; i < ATTACKER_ARRAY_SIZE; i++){
-			// Grab a walk speed between constant minimum and maximum
-			float walkSpeed = mRandom.nextFloat() * MAX_SPEED_VARIANCE;
-			walkSpeed += MIN_SPEED; // Ensures the speed is AT LEAST 60 "units"
-			// Spawn at a random y coordinate starting at MIN_SPAWN_Y, varying by MAX_SPAWN_Y_VARIANCE
-			float spawnY = mRandom.nextFloat() * MAX_SPAWN_Y_VARIANCE;
-			spawnY += MIN_SPAWN_Y;
-
-			if(i < ATTACKER_HALF_SIZE) {
-				// The first half of the array are normal attackers
-				mAttackers[i] = new Attacker(1f, walkSpeed, -100f, spawnY, 64f, 64f, "normal");
-				mAttackers[i].addAnimation(mStandardAttackerWalk, "walk");
-			} else {
-				// The second half of the array are "knight" attackers
-				mAttackers[i] = new Attacker(2f, walkSpeed * 0.75f, -100f, spawnY, 64f, 128f, "knight");
-				mAttackers[i].addAnimation(mKnightAttackerWalk, "walk");
-				mAttackers[i].addAnimation(mKnightAttackerAttack, "attack");
-			}
+		// Also after the recorder, a replay of an endless game has to play it endless too
+		if(Gdx.app.getPreferences(PREFERENCES).getBoolean(PREF_ENDLESS_HORDE, false))
+			simulation.setEndlessHorde(true);
+		// The render and simulation threads have a core each, any left over help advance large hordes
+		int spareCores = Runtime.getRuntime().availableProcessors() - 2;
+		if(spareCores > 0) {
+			mAdvancePool = new AdvancePool(spareCores);
+			simulation.setAdvancePool(mAdvancePool, DefenderSimulation.PARALLEL_HORDE_SIZE);
 		}
+		mSimulationThread = new SimulationThread(simulation, mMetrics);
+		mSnapshot = mSimulationThread.acquireSnapshot();
+		mLastGameState = mSnapshot.getGameState();
+		mSimulationThread.start();
+		mTouchInput = new TouchInput(mCamera, mSimulationThread); // Set once the menu can be drawn, see onGameAssetsLoaded
+		mShowMetrics = false;
+		Gdx.input.setCatchMenuKey(true); // The menu key toggles the metrics overlay
+
+		// Every image is packed into atlases at build time (see packTextures in build.gradle), so the batch only
+		// has to switch textures when a damaged castle background is drawn under everything else.
+		// The default libgdx font is read off the classpath, with its glyph image taken from the game atlas
+		mAssets = new AssetManager();
+		mAssets.setLoader(BitmapFont.class, new BitmapFontLoader(new ClasspathFileHandleResolver()));
+		mAssets.load(GAME_ATLAS, TextureAtlas.class);
+		BitmapFontLoader.BitmapFontParameter fontParameter = new BitmapFontLoader.BitmapFontParameter();
+		fontParameter.atlasName = GAME_ATLAS;
+		mAssets.load(FONT, BitmapFont.class, fontParameter);
+
+		mGameAssetsLoaded = false;
+		mDamageQueued = false;
+		mDamageLoaded = false;
+		mFirstFrameDrawn = false;
+		mStartupLog.mark("create");
 	}
 
 	/**
-	 * Updating all game variables and drawing is handled once every frame
-	 * Since render is called once per frame, update will be called at the start of the method
-	 * This allows a separation of concerns for the game code's readability.
+	 * Called once the game atlas and font are resident, builds everything drawn from them
 	 */
-	@Override
-	public void render() {
-		// Call update before anything gets drawn
-		update();
-
-		// Begin drawing operations - set projection matrix, grab frames, etc
-		mBatch.setProjectionMatrix(mCamera.combined);
-
-		Gdx.gl.glClearColor(0, 0, 0.2f, 1);
-		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
-		mBatch.begin();
-        // Draw the background first, regardless of state
-        mBatch.draw(mGameBackgrounds[mCastleDamageStage], 0f, 0f);
-
-		switch (mGameState) {
-			case STATE_PRE_GAME:
-				mFont.draw(mBatch, mGameTitle, 125, 375);
-				mButtons[0].draw(mFont, mBatch);
-				mButtons[1].draw(mFont, mBatch);
-				break;
-			case STATE_ROUND_START:
-				mFont.draw(mBatch, mRoundText, 360, 440);
-				mButtons[2].draw(mFont, mBatch);
-				mButtons[3].draw(mFont, mBatch);
-				break;
-			case STATE_ROUND_PLAY:
-				// Draw text on top of the background in the sky
-				mFont.draw(mBatch, mHealthText, 600, 440);
-				mFont.draw(mBatch, mRoundScoreText, 50, 440);
-				mFont.draw(mBatch, mRoundText, 360, 440);
-				// Draw attackers if the game isn't paused
-				for (int i = 0; i < ATTACKER_ARRAY_SIZE; i++) {
-					Attacker a = mAttackers[i];
-					if (a.isAlive()) {
-						mBatch.draw(a.getCurrentFrame(), a.getX(), a.getY());
-					}
-				}
-				mButtons[2].draw(mFont, mBatch);
-				mButtons[3].draw(mFont, mBatch);
-				break;
-			case STATE_ROUND_OVER:
-				mFont.draw(mBatch, mHealthText, 600, 440);
-				mFont.draw(mBatch, mRoundScoreText, 50, 440);
-				mFont.draw(mBatch, mTotalScoreText, 50, 400);
-				mButtons[4].draw(mFont, mBatch);
-				mButtons[5].draw(mFont, mBatch);
-				mButtons[6].draw(mFont, mBatch);
-				if(mRoundSaved) {
-					mFont.draw(mBatch, mGameSavedText, 350, 125);
-				}
-				break;
-			case STATE_GAME_OVER:
-				mButtons[0].draw(mFont, mBatch);
-
-				break;
+	private void onGameAssetsLoaded() {
+		mGameAtlas = mAssets.get(GAME_ATLAS, TextureAtlas.class);
+        mFont = mAssets.get(FONT, BitmapFont.class);
+
+		// Six frames describing six states of damage to the castle, from pristine to broken
+		// Until the damage atlas is loaded, every stage shows the pristine castle
+		mGameBackgrounds = new TextureRegion[6];
+		for(int i = 0; i < mGameBackgrounds.length; i++) {
+			mGameBackgrounds[i] = mGameAtlas.findRegion("castle_v1");
 		}
 
-        if(mPaused)
-            mFont.draw(mBatch, "Paused", 380, 400);
+		mHealthText = new HudLabel(mFont, "Castle Strength: ", "", 600, 440);
+		mRoundScoreText = new HudLabel(mFont, "This Round Score: ", "", 50, 440);
+		mTotalScoreText = new HudLabel(mFont, "Total Game Score: ", "", 50, 400);
+		mRoundStartText = new HudLabel(mFont, "Starting Round ", "...", 360, 440);
+		mRoundText = new HudLabel(mFont, "Round: ", "", 360, 440);
+		mGameTitle = new HudLabel(mFont, "Castle Defender", 125, 375);
+		mGameSavedText = new HudLabel(mFont, "Game Saved!", 350, 125);
+		mPausedText = new HudLabel(mFont, "Paused", 380, 400);
+
+		// One shared set per archetype, cut from the frame data in the registry
+		// Handles follow AttackerStore's ANIM_ constants - archetypes without an attack animation only have a walk
+		mArchetypeAnimations = new AnimationSet[mArchetypes.getCount()];
+		for(int archetype = 0; archetype < mArchetypes.getCount(); archetype++) {
+			int count = mArchetypes.getAnimationCount(archetype);
+			String[] names = new String[count];
+			Animation[] animations = new Animation[count];
+			for(int handle = 0; handle < count; handle++) {
+				names[handle] = ArchetypeRegistry.ANIMATION_NAMES[handle];
+				animations[handle] = createAnimation(archetype, handle);
+			}
+			mArchetypeAnimations[archetype] = new AnimationSet(names, animations);
+		}
 
-		mBatch.end();
+		TextureRegion button1 = mGameAtlas.findRegion("button1");
+		TextureRegion button2 = mGameAtlas.findRegion("button2");
+		TextureRegion button3 = mGameAtlas.findRegion("button3");
+		mButtons[0].setTexture(button1);
+		mButtons[1].setTexture(button1);
+		mButtons[2].setTexture(button2);
+		mButtons[3].setTexture(button2);
+		mButtons[4].setTexture(button3);
+		mButtons[5].setTexture(button3);
+		mButtons[6].setTexture(button3);
+		mButtonLayer = new ButtonLayer(mButtons, mFont);
+
+		mMetricsOverlay = new MetricsOverlay(mMetrics, mRenderQueue, mFont, 10, 360);
+
+		// Touches only reach the simulation from here on, a tap on the progress screen would hit its unseen buttons
+		Gdx.input.setInputProcessor(mTouchInput);
+		mGameAssetsLoaded = true;
 	}
 
 	/**
-	 * The update method of the game handles all of the game-specific mechanics and calculations
+	 * Method that cuts one of an archetype's animations out of the game atlas
+	 *
+	 * @param archetype: The archetype id
+	 * @param handle: The animation, one of AttackerStore's ANIM_ constants
+	 * @return animation: The animation, its frames taken row by row from the registry's region, or null if the
+	 * archetype doesn't have it
 	 */
-	private void update() {
-		// Every frame will update these variables, independent of game state
-		mCamera.update();
-		float deltaTime = Gdx.graphics.getDeltaTime();
-        mHealthText = "Castle Strength: " + mCastleHealth;
-        mRoundScoreText = "This Round Score: " + mRoundScore;
-		mTotalScoreText = "Total Game Score: " + mTotalScore;
-
-		// Switch statement to handle game state
-		switch (mGameState) {
-			case STATE_PRE_GAME:
-				// Before the game starts, the first two buttons (new game and resume) are visible
-				mButtons[0].setVisible(true);
-				mButtons[1].setVisible(true);
-				checkStartNewGameButton();
-				checkLoadGameButton();
-				break;
-			case STATE_ROUND_START:
-				mButtons[2].setVisible(true);
-				handleRoundStart();
-				checkPauseGameButton();
-				break;
-			case STATE_ROUND_PLAY:
-				mButtons[2].setVisible(true);
-				if(!mPaused) {
-					handleStandardGameplay(deltaTime);
-					checkPauseGameButton();
-				}
-				else {
-					mButtons[3].setVisible(true);
-					checkResumeGameButton();
-				}
-				break;
-			case STATE_ROUND_OVER:
-				mButtons[4].setVisible(true);
-				mButtons[5].setVisible(true);
-				mButtons[6].setVisible(true);
-				checkRepairCastleButton();
-				checkSaveGameButton();
-				checkNextRoundButton();
-				break;
-			case STATE_GAME_OVER:
-				mButtons[0].setVisible(true);
-				checkStartNewGameButton();
-				break;
+	private Animation createAnimation(int archetype, int handle) {
+		if(!mArchetypes.hasAnimation(archetype, handle))
+			return null;
+		String regionName = mArchetypes.getRegion(archetype, handle);
+		TextureRegion region = mGameAtlas.findRegion(regionName);
+		if(region == null)
+			throw new GdxRuntimeException("No region " + regionName + " in " + GAME_ATLAS + " for " + mArchetypes.getName(archetype));
+
+		// Cut the animation's frames up using this temporary jagged array, which matches the image file's rows / cols
+		TextureRegion[][] sheet = region.split(mArchetypes.getFrameWidth(archetype, handle), mArchetypes.getFrameHeight(archetype, handle));
+		int columns = mArchetypes.getColumns(archetype, handle);
+		TextureRegion[] frames = new TextureRegion[mArchetypes.getFrameCount(archetype, handle)];
+		for(int index = 0; index < frames.length; index++) {
+			frames[index] = sheet[index / columns][index % columns];
 		}
-
-
+		return new Animation(mArchetypes.getFrameDuration(archetype, handle), frames);
 	}
 
 	/**
-	 * Method that calculates the standard logic for gameplay - STATE_ROUND_PLAY matches game state
-	 * @param deltaTime: The time delta passed by the caller
+	 * Method to read the archetypes asset, falling back on ArchetypeRegistry's if it can't be used
+	 * Read once at startup, before anything is made with them - the save, the simulation and the recording all share it
+	 *
+	 * @return archetypes: The registry to play with
 	 */
-	private void handleStandardGameplay(float deltaTime) {
-		// Decrease time to next revived enemy
-		mSpawnTime--;
-
-		// Accumulate time elapsed while playing
-		mRoundTimeElapsed += deltaTime;
-
-		/**
-		 * Input Handling
-		 * When the screen is touched, kill touched attackers
-		 */
-		if(Gdx.input.justTouched()) {
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-
-			// Find the first attacker located at the touch position, if any
-			int indexOfAttacker = getFirstAttackerAt(mLastTouch.x, mLastTouch.y);
-			// If the index is greater than negative one, kill the attacker and add points
-			if(indexOfAttacker > -1){
-				mAttackers[indexOfAttacker].kill();
-				mLivingAttackerCount--;
-				mMonsterHouseSpawn--;
-				mRoundScore += 100f;
-				if(indexOfAttacker > ATTACKER_HALF_SIZE - 1)
-					mRoundScore += 150f; // 150 Bonus points for killing a knight
-			}
-		}
-
-		// Spawns a new enemy once the respawn timer hits less than 0
-		if(mSpawnTime <0) {
-			// Revive an attacker
-			reviveAttacker();
-
-			// Randomly select a new respawn timer within min and max bounds
-			mSpawnTime = mRandom.nextInt(mSpawnTimeMax - mSpawnTimeMin + 1) + mSpawnTimeMin;
-		}
-
-		//spawns a row of enemy units if player is doing well
-		if(mMonsterHouseSpawn <0) {
-			int monsterHouseRush = 3;
-			while(monsterHouseRush > 0) {
-				for (float i = 0; i < 5f; i++) {
-					reviveAttacker();
-				}
-				monsterHouseRush--;
-			}
-			mMonsterHouseSpawn = 10;
-		}
-
-		// Loop through the array of attackers and update each (dead attackers' update does nothing)
-		for (int i = 0; i < ATTACKER_ARRAY_SIZE; i++) {
-			Attacker a = mAttackers[i];
-			a.update(deltaTime);
-
-			if(a.getX() > MIN_STOP_X) {
-				// Play the attacker's "attack" animation
-				a.play("attack", true);
-				// The attacker stops at the castle and the castle begins losing health
-				a.setPosition(MIN_STOP_X, a.getY());
-				mCastleHealth -= a.getHitDamage();
-				// Only bother checking castle damage stage here - only when damage is being dealt
-				float percentDamage = (mCastleMaxHealth - mCastleHealth) / mCastleMaxHealth;
-				if(percentDamage < 0.5f) {
-					mCastleDamageStage = 0;
-				}
-				else {
-					mCastleDamageStage = 1;
-				}
-				if(percentDamage > 0.15f) {
-					mCastleDamageStage = 2;
-				}
-				if(percentDamage > 0.35f) {
-					mCastleDamageStage = 3;
-				}
-				if(percentDamage > 0.65f) {
-					mCastleDamageStage = 4;
-				}
-				if(percentDamage > 0.85f) {
-					mCastleDamageStage = 5;
-				}
-			}
-		}
-
-		// Check if the game is over, where mCastleHealth <= 0
-		if(mCastleHealth <= 0) {
-			// The castle has fallen to the attackers
-			// Currently, the game will pause and add text that states the game is over
-			mCastleHealth = 0f;
-			mHealthText = "Castle Strength: " + mCastleHealth;
-			mGameState = STATE_GAME_OVER;
-			hideAllButtons();
-		}
-
-		// If the round time is up, end the round and go to a new state
-		if(mRoundTimeElapsed > mRoundMaxTime) {
-			mGameState = STATE_ROUND_OVER;
-			mTotalScore += mRoundScore;
-			mRoundNumber++;
-			hideAllButtons();
+	private ArchetypeRegistry loadArchetypes() {
+		try {
+			return ArchetypeRegistry.parse(Gdx.files.internal(ARCHETYPES).readString("UTF-8"));
+		} catch (GdxRuntimeException e) {
+			Gdx.app.error("Archetypes", "Couldn't read " + ARCHETYPES, e);
+		} catch (SerializationException e) {
+			Gdx.app.error("Archetypes", "Couldn't read " + ARCHETYPES, e);
+		} catch (IllegalArgumentException e) {
+			Gdx.app.error("Archetypes", "Couldn't use " + ARCHETYPES, e);
 		}
+		return ArchetypeRegistry.getDefault();
 	}
 
 	/**
-	 * Method that begins a new round - delays the attackers for 15 frames
+	 * Called once the damage atlas is resident, swaps the placeholder backgrounds for the damaged castles
 	 */
-	private void handleRoundStart() {
-		// Increment attackerDelay
-		mAttackerDelay++;
-		mRoundText = "Starting Round " + mRoundNumber + "...";
-
-		// If it is over the threshold of 15 frames, start the standard round
-		if(mAttackerDelay > 15) {
-			mGameState = STATE_ROUND_PLAY;
-			mRoundText = "Round: " + mRoundNumber;
-			hideAllButtons();
+	private void onDamageAssetsLoaded() {
+		TextureAtlas damageAtlas = mAssets.get(DAMAGE_ATLAS, TextureAtlas.class);
+		for(int i = 1; i < mGameBackgrounds.length; i++) {
+			mGameBackgrounds[i] = damageAtlas.findRegion("castle_v1_dam" + i);
 		}
+		mDamageLoaded = true;
 	}
 
 	/**
-	 * Method to revive a single enemy of a specified type
-	 * Two types exist, "normal" and "knight". Knights to double damage but move at 75% speed of "normal"
-	 * May or may not spawn desired enemy, depending on mRoundMaxAttackers
-	 *
-	 * @param type: A string to determine which enemy to spawn
+	 * Method that gives the asset manager this frame's loading time and reacts to whatever finished
+	 * The damage atlas is queued as soon as a round begins, and only waited on if the castle is hit before it is ready
 	 */
-	private void reviveAttacker(String type) {
-		// Check to see if the game will allow another enemy on screen
-		if(mLivingAttackerCount >= mRoundMaxAttackers)
+	private void updateLoading() {
+		boolean done = mAssets.update(LOAD_BUDGET_MILLIS);
+
+		if(!mGameAssetsLoaded) {
+			if(done) {
+				onGameAssetsLoaded();
+				mStartupLog.mark("menu interactive");
+			}
 			return;
+		}
 
-		// Put the string into lowercase just "in case"
-		type = type.toLowerCase();
-		// Check against the two types to revive
-		if(type.equals("normal")) {
-			for(int i = 0; i < ATTACKER_HALF_SIZE; i++) {
-				if(!mAttackers[i].isAlive()){
-					// Found an attacker indexed as a "normal" attacker
-					mAttackers[i].revive();
-					mLivingAttackerCount++;
-					return; // Just need one!
-				}
+		if(!mDamageQueued && mSnapshot.getGameState() != DefenderSimulation.STATE_PRE_GAME) {
+			mAssets.load(DAMAGE_ATLAS, TextureAtlas.class);
+			mDamageQueued = true;
+			done = false;
+		}
+		if(mDamageQueued && !mDamageLoaded) {
+			if(!done && mCastleDamaged) {
+				// Needed right now - finish it rather than draw the wrong castle
+				mAssets.finishLoadingAsset(DAMAGE_ATLAS);
+				done = true;
 			}
-		} else if(type.equals("knight")) {
-			for(int i = ATTACKER_HALF_SIZE; i < ATTACKER_ARRAY_SIZE; i++) {
-				if(!mAttackers[i].isAlive()) {
-					// Found an attacker indexed as a "knight" attacker
-					mAttackers[i].revive();
-					mAttackers[i].play("walk", true);
-					mLivingAttackerCount++;
-					return; // Just need one!
-				}
+			if(done) {
+				onDamageAssetsLoaded();
+				mStartupLog.mark("castle damage loaded");
 			}
 		}
 	}
 
 	/**
-	 * Find the index of the first attacker that point (x, y) intersects
-	 * @param x: The x coordinate to check against the array of living attackers
-	 * @param y: The y coordinate to check against the array of living attackers
-	 * @return index: The index of the first attacker found to be intersected by (x, y)
+	 * Draws the loading screen - a plain bar showing how much of the queued assets is loaded
 	 */
-	private int getFirstAttackerAt(float x, float y) {
-		int index = -1; // Start assuming no attacker intersects the point
-		Rectangle temp = new Rectangle();
-		for(int i = 0; i < ATTACKER_ARRAY_SIZE; i++) {
-			if(mAttackers[i].isAlive()){
-				Attacker a = mAttackers[i];
-				// Populate the temporary rectangle with the attacker's parameters
-				temp.set(a.getX(), a.getY(), a.getWidth(), a.getHeight());
-
-				// See if (x, y) lies within the rectangle described by a.x, a.y, a.width, a.height
-				if(temp.contains(x, y)) {
-					// Within this block, the point should lie within the rectangle -- Attacker has been tapped
-					index = i;
-					return index; // Loop exits here with index value OR never arrives here at all (-1)
-				}
-			}
-		}
-		return index; // This return value is -1, since execution should only arrive here when testing fails all attackers
+	private void renderProgress() {
+		Gdx.gl.glClearColor(0, 0, 0.2f, 1);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+
+		mProgressBar.setProjectionMatrix(mCamera.combined);
+		mProgressBar.begin(ShapeRenderer.ShapeType.Filled);
+		mProgressBar.setColor(0.2f, 0.2f, 0.4f, 1f);
+		mProgressBar.rect(200f, 225f, 400f, 30f);
+		mProgressBar.setColor(0.8f, 0.8f, 1f, 1f);
+		mProgressBar.rect(200f, 225f, 400f * mAssets.getProgress(), 30f);
+		mProgressBar.end();
 	}
+
 	/**
-	 * The following methods check if the hard-coded buttons have been pressed
-	 * Each button has a specific behavior so each method has custom code
+	 * Updating all game variables and drawing is handled once every frame
+	 * Since render is called once per frame, update will be called at the start of the method
+	 * This allows a separation of concerns for the game code's readability.
 	 */
-	private void checkStartNewGameButton() {
-		if(mButtons[0].isVisible() && Gdx.input.justTouched()){
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-			// The button is visible and the screen was just touched
-			// See if the touch was in the button's outer rectangle
-			if(mButtons[0].getRect().contains(mLastTouch.x, mLastTouch.y)){
-				// The "New Game" button was pressed, start a new game!
-				mRoundNumber = 1;
-				resetRoundVars();
-				mGameState = STATE_ROUND_START;
-				hideAllButtons();
-			}
+	@Override
+	public void render() {
+		if(!mFirstFrameDrawn) {
+			mFirstFrameDrawn = true;
+			mStartupLog.mark("first frame");
 		}
-	}
+		mCamera.update();
+		updateLoading();
 
-	private void checkLoadGameButton() {
-		if(mButtons[1].isVisible() && Gdx.input.justTouched()){
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-			// The button is visible and the screen was just touched
-			// See if the touch was in the button's outer rectangle
-			if(mButtons[1].getRect().contains(mLastTouch.x, mLastTouch.y)){
-				// The "Continue Game" button was pressed, load the saved game, or default to new anyway
-				Preferences prefs = Gdx.app.getPreferences(PREFS_NAME);
-				mRoundNumber = prefs.getInteger(KEY_ROUND, 1);
-				mCastleHealth = prefs.getFloat(KEY_HEALTH, 1000f);
-				mTotalScore = prefs.getFloat(KEY_SCORE, 0f);
-				resetRoundVars();
-				mGameState = STATE_ROUND_START;
-				hideAllButtons();
-			}
+		// Nothing can be drawn or tapped until the game atlas is in
+		if(!mGameAssetsLoaded) {
+			renderProgress();
+			return;
 		}
-	}
 
-	private void checkPauseGameButton() {
-		if(mButtons[2].isVisible() && Gdx.input.justTouched()) {
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-			// The button is visible and the screen was just touched
-			// See if the touch was in the button's outer rectangle
-			if (mButtons[2].getRect().contains(mLastTouch.x, mLastTouch.y)) {
-				// The pause button was tapped, set paused to true
-				pause();
-				hideAllButtons();
-			}
-		}
-	}
+		mMetrics.startFrame();
 
-	private void checkResumeGameButton() {
-		if(mButtons[3].isVisible() && Gdx.input.justTouched()) {
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-			// The button is visible and the screen was just touched
-			// See if the touch was in the button's outer rectangle
-			if (mButtons[3].getRect().contains(mLastTouch.x, mLastTouch.y)) {
-				// The resume button was tapped, set paused to false
-				resume();
-				hideAllButtons();
-			}
-		}
-	}
+		// Call update before anything gets drawn
+		long phaseStart = mMetrics.begin();
+		update();
+		mMetrics.end(FrameMetrics.PHASE_UPDATE, phaseStart);
+
+		// Queue up this frame's draws, then submit them in one sorted pass - set projection matrix, grab frames, etc
+		phaseStart = mMetrics.begin();
+		mBatch.setProjectionMatrix(mCamera.combined);
+
+		Gdx.gl.glClearColor(0, 0, 0.2f, 1);
+		Gdx.gl.glClear(GL20.GL_COLOR_BUFFER_BIT);
+        // The background sits on its own layer under everything, regardless of state
+        mRenderQueue.add(RenderQueue.LAYER_BACKGROUND, 0, mGameBackgrounds[mSnapshot.getCastleDamageStage()], 0f, 0f);
 
-	private void checkRepairCastleButton() {
-		if(mButtons[4].isVisible() && Gdx.input.justTouched()) {
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-			// The button is visible and the screen was just touched
-			// See if the touch was in the button's outer rectangle
-			if (mButtons[4].getRect().contains(mLastTouch.x, mLastTouch.y)) {
-				// The repair button was tapped, see if the player has enough total points to repair once
-				if(mTotalScore > mRepairCost) {
-					// Deduct the repair cost from total score and add 100 to castle health
-					mTotalScore -= mRepairCost;
-					mCastleHealth += 100f;
-
-					// Update the visual of the castle if it is repaired
-					float percentDamage = (mCastleMaxHealth - mCastleHealth) / mCastleMaxHealth;
-					if(percentDamage < 0.5f) {
-						mCastleDamageStage = 0;
-					}
-					else {
-						mCastleDamageStage = 1;
-					}
-					if(percentDamage > 0.15f) {
-						mCastleDamageStage = 2;
-					}
-					if(percentDamage > 0.35f) {
-						mCastleDamageStage = 3;
-					}
-					if(percentDamage > 0.65f) {
-						mCastleDamageStage = 4;
-					}
-					if(percentDamage > 0.85f) {
-						mCastleDamageStage = 5;
-					}
+		switch (mSnapshot.getGameState()) {
+			case DefenderSimulation.STATE_PRE_GAME:
+				mGameTitle.draw(mRenderQueue);
+				break;
+			case DefenderSimulation.STATE_ROUND_START:
+				mRoundStartText.draw(mRenderQueue);
+				break;
+			case DefenderSimulation.STATE_ROUND_PLAY:
+				// Draw text on top of the background in the sky
+				mHealthText.draw(mRenderQueue);
+				mRoundScoreText.draw(mRenderQueue);
+				mRoundText.draw(mRenderQueue);
+				// Draw attackers if the game isn't paused
+				// The ones further up the screen are further back, so they get the smaller depth and are drawn first
+				// Positions are blended from the snapshot's tick towards the next one, by how long ago it was published
+				SimulationSnapshot snapshot = mSnapshot;
+				float alpha = (TimeUtils.nanoTime() - snapshot.getPublishNanos()) / (DefenderSimulation.TICK_SECONDS * 1e9f);
+				alpha = Math.min(Math.max(alpha, 0f), 1f);
+				for (int k = 0; k < snapshot.getAttackerCount(); k++) {
+					AnimationSet animations = mArchetypeAnimations[snapshot.getArchetype(k)];
+					float y = snapshot.getY(k);
+					mRenderQueue.add(RenderQueue.LAYER_ATTACKERS, (int) (WORLD_HEIGHT - y),
+							animations.getKeyFrame(snapshot.getAnimation(k), snapshot.getStateTime(k), true),
+							snapshot.getRenderX(k, alpha), y);
 				}
-			}
+				break;
+			case DefenderSimulation.STATE_ROUND_OVER:
+				mHealthText.draw(mRenderQueue);
+				mRoundScoreText.draw(mRenderQueue);
+				mTotalScoreText.draw(mRenderQueue);
+				if(mSnapshot.isRoundSaved()) {
+					mGameSavedText.draw(mRenderQueue);
+				}
+				break;
+			case DefenderSimulation.STATE_GAME_OVER:
+				break;
 		}
-	}
 
-	private void checkNextRoundButton() {
-		if(mButtons[5].isVisible() && Gdx.input.justTouched()) {
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-			// The button is visible and the screen was just touched
-			// See if the touch was in the button's outer rectangle
-			if (mButtons[5].getRect().contains(mLastTouch.x, mLastTouch.y)) {
-				// The "advance round" button was pressed, round is already incremented, start new
-				resetRoundVars();
-				hideAllButtons();
-				mGameState = STATE_ROUND_START;
-			}
-		}
-	}
+		// Whichever buttons the state shows, as one cached image draw and one cached text draw
+		mButtonLayer.draw(mRenderQueue);
 
-	private void checkSaveGameButton() {
-		if(mButtons[6].isVisible() && Gdx.input.justTouched()) {
-			// Grab the touch position, saved as a Vector3
-			mLastTouch.set(Gdx.input.getX(), Gdx.input.getY(), 0);
-			mCamera.unproject(mLastTouch); // Translates to game world coordinates
-			// The button is visible and the screen was just touched
-			// See if the touch was in the button's outer rectangle
-			if (mButtons[6].getRect().contains(mLastTouch.x, mLastTouch.y)) {
-				// The "save game" button has been pressed, save game varables
-				Preferences prefs = Gdx.app.getPreferences(PREFS_NAME);
-				// Three variables saved - Total score, castle health, round number
-				prefs.putInteger(KEY_ROUND, mRoundNumber);
-				prefs.putFloat(KEY_SCORE, mTotalScore);
-				prefs.putFloat(KEY_HEALTH, mCastleHealth);
-				// "Flush" the changes
-				prefs.flush();
-				// Show the user the save went through
-				mRoundSaved = true;
-			}
+        if(mSnapshot.isPaused())
+            mPausedText.draw(mRenderQueue);
+
+		if(mShowMetrics)
+			mMetricsOverlay.draw(mRenderQueue);
+
+		mRenderQueue.submit(mBatch);
+		mMetrics.recordDraws(mRenderQueue.getRenderCalls(), mRenderQueue.getTextureSwitches());
+		mMetrics.end(FrameMetrics.PHASE_RENDER, phaseStart);
+
+		// The round's timings are written out and cleared once it ends, so each file covers exactly one round
+		int gameState = mSnapshot.getGameState();
+		if(gameState != mLastGameState) {
+			if(gameState == DefenderSimulation.STATE_ROUND_OVER)
+				dumpMetrics(mSnapshot.getRoundNumber() - 1); // The round number has already moved on
+			else if(gameState == DefenderSimulation.STATE_GAME_OVER)
+				dumpMetrics(mSnapshot.getRoundNumber());
+			mLastGameState = gameState;
 		}
 	}
 
 	/**
-	 * Method to reset common round-dependent game variables used between rounds
-	 * Variables reset:
-	 * mAttackerDelay
-	 * mRoundTimeElapsed
-	 * mRoundScore
-	 * mKnightChance
-	 * mRoundMaxAttackers
-	 * mRoundMaxTime
-	 * mRoundSaved
-	 * mSpawnTimeMin
-	 * mSpawnTimeMax
-	 * Kills all living attackers
+	 * Method that writes the metrics gathered during a round to metrics/round_N.csv in local storage, then clears them
+	 *
+	 * @param roundNumber: The round that just ended
 	 */
-	private void resetRoundVars() {
-		mAttackerDelay = 0;
-		mRoundTimeElapsed = 0;
-		mRoundScore = 0f;
-		mKnightSpawnChance = 0.35f + (0.1f * (mRoundNumber - 1)); // +10% chance per round, starting at 35%
-		if(mKnightSpawnChance > 0.65f) mKnightSpawnChance = 0.65f; // Hard cap at 65%
-		mRoundMaxAttackers = 5 + mRoundNumber * 2;
-		mRoundMaxTime = 50 + (mRoundNumber * 1.5f);
-		mRoundSaved = false;
-		mRoundText = "Round: " + mRoundNumber;
-		mSpawnTimeMin = mSpawnTimeMin - (mRoundNumber * 5);
-		mSpawnTimeMax = mSpawnTimeMax - (mRoundNumber * 5);
-
-		// Kill all living attackers
-		for(int i = 0; i < ATTACKER_ARRAY_SIZE; i++) {
-			mAttackers[i].kill();
+	private void dumpMetrics(int roundNumber) {
+		if(Gdx.files.isLocalStorageAvailable()) {
+			StringBuilder csv = new StringBuilder(1024);
+			mMetrics.appendCsv(csv);
+			String path = "metrics/round_" + roundNumber + ".csv";
+			try {
+				Gdx.files.local(path).writeString(csv.toString(), false);
+				Gdx.app.log("Metrics", "Round " + roundNumber + " timings written to " + path);
+			} catch (GdxRuntimeException e) {
+				Gdx.app.error("Metrics", "Couldn't write " + path, e);
+			}
 		}
+		// Draw counts don't fit the timing table, they go to the log instead
+		TimingHistogram renderCalls = mMetrics.getRenderCalls();
+		TimingHistogram textureSwitches = mMetrics.getTextureSwitches();
+		Gdx.app.log("Metrics", "Round " + roundNumber + " render calls p50 " + renderCalls.getPercentile(50.0)
+				+ " max " + renderCalls.getMax() + ", texture switches p50 " + textureSwitches.getPercentile(50.0)
+				+ " max " + textureSwitches.getMax() + (mRenderQueue.isSorting() ? " (sorted)" : " (unsorted)"));
+		mMetrics.reset();
 	}
 
 	/**
-	 * Method that chooses to revive a knight or normal enemy, depending on probability of mKnightSpawnChance
+	 * The update method takes the simulation thread's newest snapshot and refreshes the HUD labels
+	 * This frame's taps were already handed over by mTouchInput, as libGDX delivered them before render
 	 */
-	private void reviveAttacker() {
-		String type = (mRandom.nextFloat() > mKnightSpawnChance) ? "normal" : "knight";
-		reviveAttacker(type);
-	}
+	private void update() {
+		// Every frame will update these variables, independent of game state
+		float deltaTime = Gdx.graphics.getDeltaTime();
 
-	/**
-	 * Small method that hides all buttons so update only shows state-dependent ones
-	 */
-	private void hideAllButtons() {
-		for(int i = 0; i < 7; i++) {
-			mButtons[i].setVisible(false);
+		// The menu key, F3 on a keyboard, or a tap with three fingers toggles the metrics overlay
+		if(Gdx.input.isKeyJustPressed(Input.Keys.MENU) || Gdx.input.isKeyJustPressed(Input.Keys.F3)
+				|| (Gdx.input.justTouched() && Gdx.input.isTouched(2))) {
+			mShowMetrics = !mShowMetrics;
 		}
+		// F4 draws in code order instead, to compare render calls against the sorted queue
+		if(Gdx.input.isKeyJustPressed(Input.Keys.F4))
+			mRenderQueue.setSorting(!mRenderQueue.isSorting());
+		if(mShowMetrics)
+			mMetricsOverlay.update(deltaTime);
+
+		// Pick up the newest tick, timing how long it waited if this is the first frame to see it
+		// Several frames may draw one tick on a high refresh rate display, or ticks may be skipped on a slow one
+		long previousTick = mSnapshot.getTick();
+		mSnapshot = mSimulationThread.acquireSnapshot();
+		if(mSnapshot.getTick() != previousTick)
+			mMetrics.getPhase(FrameMetrics.PHASE_SNAPSHOT_HANDOFF).record(TimeUtils.nanoTime() - mSnapshot.getPublishNanos());
+
+		// Labels only reformat when their value changed since the last frame
+        mHealthText.setValue(mSnapshot.getCastleHealth());
+        mRoundScoreText.setValue(mSnapshot.getRoundScore());
+		mTotalScoreText.setValue(mSnapshot.getTotalScore());
+		mRoundStartText.setValue(mSnapshot.getRoundNumber());
+		mRoundText.setValue(mSnapshot.getRoundNumber());
+		// The button layout is only redone on the ticks the visible set changed
+		mButtonLayer.setVisibleButtons(mSnapshot.getVisibleButtons());
 	}
 
     @Override
     public void pause() {
-        mPaused = true;
+        mSimulationThread.pause();
+        // The journal survives the app being killed in the background, this is in case the device goes down with it
+        if(mSaveStore != null)
+            mSaveStore.flush();
     }
 
     @Override
     public void resume() {
-        mPaused = false;
+        mSimulationThread.resume();
     }
 
     @Override
     public void dispose() {
+        mSimulationThread.stop();
+        if(mRecorder != null) {
+            // The thread has stopped, so the simulation can be read from here to seal the recording
+            DefenderSimulation simulation = mSimulationThread.getSimulation();
+            mRecorder.finish(simulation.getTickCount(), simulation.getStateHash());
+            if(mRecorder.getFailure() != null)
+                Gdx.app.error("Replay", "Recording to " + REPLAY + " failed", mRecorder.getFailure());
+        }
+        if(mSaveStore != null) {
+            // Let a save made as the app closed reach the disk
+            mSaveStore.shutdown();
+            if(mSaveStore.getFailure() != null)
+                Gdx.app.error("Save", "Saving to " + SAVE + " failed", mSaveStore.getFailure());
+        }
+        if(mAdvancePool != null)
+            mAdvancePool.shutdown();
         mBatch.dispose();
-        mFont.dispose();
+        mProgressBar.dispose();
+        mAssets.dispose(); // The atlases and the font belong to the asset manager
     }
 }
@@ -0,0 +1,1106 @@
+package com.hamsterhuey.defender;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Class that holds every rule of the castle defender game, separated from rendering
+ *
+ * Nothing in here reads Gdx.input, Gdx.graphics or a camera, so the simulation runs without a GL context.
+ * Input is handed over as taps already translated to world coordinates, and time only advances when step is called.
+ * DefenderGame draws whatever state this class is in, and headless runners can step it as fast as the CPU allows
+ *
+ * The game runs on a fixed tick of TICK_SECONDS: spawn timers and round delays count ticks and attackers deal
+ * their damage once per tick, so the game plays the same at any frame rate. update turns a frame's real time into
+ * however many ticks are due, and the renderer blends positions between the last two ticks with getInterpolationAlpha
+ *
+ * Every random number comes from one seeded Random, so a seed plus the taps, pauses and loaded games handed in
+ * from outside decide a whole session. A ReplayRecorder set on the simulation writes those down as they happen
+ *
+ * A saved game is a snapshot of everything above, the random number generator and every attacker included, so a
+ * game saved mid-round carries on exactly where it was left. Snapshot layout, all numbers big-endian:
+ *   "CDSV", version, payload length, CRC32 of the payload (4 byte ints)
+ *   payload: the number of archetypes, the game's counters and timers, its floats, the generator's state, then AttackerStore.writeSnapshot
+ *   and SpawnScheduler.writeSnapshot
+ * Between snapshots, round changes, repairs and the castle's health are handed to the save store as checkpoints
+ */
+public class DefenderSimulation {
+    // Public constants for the game state, read by whatever is drawing the simulation
+    public static final int STATE_PRE_GAME = 0;
+    public static final int STATE_ROUND_START = 1;
+    public static final int STATE_ROUND_PLAY = 2;
+    public static final int STATE_ROUND_OVER = 3;
+    public static final int STATE_GAME_OVER = 4;
+
+    // Public constants for the fixed tick
+    public static final float TICK_SECONDS = 1f / 60f;
+    public static final float MAX_FRAME_SECONDS = 0.25f; // Longer frames lose the extra time, the game slows down rather than freezing to catch up
+    public static final int LANE_COUNT = 3; // Lanes a scripted wave can be sent down, spread over the attackers' walkway
+    public static final int PARALLEL_HORDE_SIZE = 4096; // Default horde size from which an AdvancePool is used, below it the hand-off costs more than it saves
+
+    // Public constants for the rules checkInvariants watches, each one a bit of its result
+    public static final int INVARIANT_LIVING_NEGATIVE = 0;  // The living attacker count went below zero
+    public static final int INVARIANT_LIVING_DRIFT = 1;     // The living attacker count doesn't match the attackers alive
+    public static final int INVARIANT_LIVING_CAP = 2;       // More attackers alive than the round allows, without the endless horde
+    public static final int INVARIANT_SPAWN_BOUNDS = 3;     // The spawn time range is negative or backwards
+    public static final int INVARIANT_SPAWN_TIMER = 4;      // The next steady spawn is further off than the range it is drawn from, or overdue
+    public static final int INVARIANT_CASTLE = 5;           // The castle's health is negative or not a number, or its stage out of range
+    public static final int INVARIANT_SCORE = 6;            // A score is not a number, or the total went negative
+    public static final int INVARIANT_COUNT = 7;
+
+    public static final String[] INVARIANT_NAMES = { "living count negative", "living count drift", "living cap exceeded",
+            "spawn time bounds", "spawn timer out of range", "castle health", "score" };
+
+    // Constants for saved game snapshots
+    private static final int SNAPSHOT_MAGIC = 0x43445356; // "CDSV"
+    private static final int SNAPSHOT_VERSION = 3; // 3: archetypes come from an ArchetypeRegistry, their count is checked
+    private static final int SNAPSHOT_HEADER_SIZE = 4 * 4;
+    private static final int SNAPSHOT_FIELDS_SIZE = 11 * 4 + 1 + 8 * 4 + 8; // Ints, the flags byte, floats, the generator's state
+    private static final int CHECKPOINT_TICKS = 60; // The castle's health is checkpointed at most this often, if it changed
+
+    // Member variables used in game calculations
+    private int mRoundNumber;
+    private int mRoundMaxAttackers;
+    private int mLivingAttackerCount;
+    private int mGameState;
+    private int mAttackerDelay;
+    private float mRoundTimeElapsed;
+    private float mRoundScore;
+    private float mTotalScore;
+    private float mKnightSpawnChance;
+    private float mRoundMaxTime;
+    private float mRepairCost;
+    private boolean mPaused;
+    private boolean mRoundSaved;
+    private boolean mEndlessHorde; // When set, the per-round cap on living attackers is lifted
+
+    // Fixed tick bookkeeping
+    private long mTickCount; // Number of steps run since construction
+    private float mTickAccumulator; // Real time handed to update that hasn't been simulated yet
+    private boolean mAttackersMoved; // Whether the last tick walked the attackers, otherwise there is nothing to blend
+    private boolean mButtonsStale; // Set when the state or pause changes, the next step shows that state's buttons
+
+    // Monster House Variables
+    private int mMonsterHouseSpawn;
+
+    // Checkpoint variables, not part of a snapshot - a loaded game checkpoints its health on the next chance
+    private int mCheckpointTimer;
+    private float mCheckpointHealth;
+
+    // Spawn variables - every spawn of a round goes through the scheduler, the steady random one included
+    private SpawnScheduler mSpawner;
+    private WaveScript mWaveScript; // Null if the rounds have no scripted waves
+    private int mTrickleDue; // The scheduler tick the next steady random spawn comes due in
+    private SeededRandom mRandom;
+    private long mSeed;
+    private int mSpawnTimeMin;
+    private int mSpawnTimeMax;
+    private DifficultyCurve mDifficulty;
+
+    // Taps handed to the simulation since the last step, in the order they came
+    private float[] mTapX;
+    private float[] mTapY;
+    private int mTapCount;
+
+    // Constant variables used in game
+    private final float MIN_SPAWN_Y = 65f; // The lowest point an attacker spawns at
+    private final float MAX_SPAWN_Y_VARIANCE = 30f; // The greatest that a spawning y-coordinate varies (adds to MIN_SPAWN_Y at creation)
+    private final float MIN_STOP_X = 585f; // The closest point that an attacker can damage the castle
+    private final int ATTACKER_ARRAY_SIZE = 50; // The number of attackers to make room for up front, the pool grows past it
+    private final int MAX_SPAWNS_PER_TICK = 2; // Spawns past this in one tick are put off to the next, so a burst never lands in one frame
+    private final int MONSTER_HOUSE_SIZE = 15; // Attackers sent when the player is doing well
+    private final int MONSTER_HOUSE_STAGGER = 4; // Ticks between two of them
+    private final int TAP_CAPACITY = 16; // The number of taps per tick to make room for up front, grows if a tick gets more
+
+    // Data structures for keeping track of specific objects in game
+    private ArchetypeRegistry mArchetypes;
+    private AttackerStore mAttackers;
+    private Castle mCastle;
+    private DefenderButtons[] mButtons;
+    private SaveStore mSaveStore;
+    private FrameMetrics mMetrics; // Null unless someone wants the phases of a step timed
+    private ReplayRecorder mRecorder; // Null unless the session is being recorded
+
+    /**
+     * Constructor for a new simulation, starting in the pre-game state, with a seed that differs every run
+     *
+     * @param saveStore: Where saved games are written to and read from, may be null to disable saving
+     */
+    public DefenderSimulation(SaveStore saveStore) {
+        this(saveStore, System.nanoTime());
+    }
+
+    /**
+     * Constructor for a new simulation, starting in the pre-game state
+     *
+     * @param saveStore: Where saved games are written to and read from, may be null to disable saving
+     * @param seed: The seed for every random number in the game, the same seed and input always play out the same
+     */
+    public DefenderSimulation(SaveStore saveStore, long seed) {
+        this(saveStore, seed, ArchetypeRegistry.getDefault());
+    }
+
+    /**
+     * Constructor for a new simulation with archetypes of its own, starting in the pre-game state
+     *
+     * @param saveStore: Where saved games are written to and read from, may be null to disable saving
+     * @param seed: The seed for every random number in the game, the same seed and input always play out the same
+     * @param archetypes: The kinds of attacker the game spawns, a saved game only loads with the same ones
+     */
+    public DefenderSimulation(SaveStore saveStore, long seed, ArchetypeRegistry archetypes) {
+        mSaveStore = saveStore;
+        mArchetypes = archetypes;
+
+        // Buttons only carry their rectangle and visibility here, textures are set by the renderer
+        mButtons = new DefenderButtons[7];
+        mButtons[0] = new DefenderButtons(DefenderButtons.TYPE_NEW_GAME);
+        mButtons[1] = new DefenderButtons(DefenderButtons.TYPE_RESUME_SAVED_GAME);
+        mButtons[2] = new DefenderButtons(DefenderButtons.TYPE_PAUSE_GAME);
+        mButtons[3] = new DefenderButtons(DefenderButtons.TYPE_RESUME_PAUSED_GAME);
+        mButtons[4] = new DefenderButtons(DefenderButtons.TYPE_REPAIR_CASTLE);
+        mButtons[5] = new DefenderButtons(DefenderButtons.TYPE_CONTINUE_NEXT_ROUND);
+        mButtons[6] = new DefenderButtons(DefenderButtons.TYPE_SAVE_GAME);
+
+        // Assign value to miscellaneous game variables
+        mRoundTimeElapsed = 0;
+        mRoundMaxTime = 25f; // Counted in SECONDS
+        mCastle = new Castle(1000f); // Will last 1,000 ticks if attacked by one single standard attacker constantly
+        // The game ends when the castle falls, whatever took its last health
+        mCastle.addListener(new CastleListener() {
+            @Override
+            public void onDamageStageChanged(Castle castle, int previousStage) {
+            }
+
+            @Override
+            public void onDestroyed(Castle castle) {
+                endGame();
+            }
+        });
+        mRoundScore = 0f;
+        mTotalScore = 0f;
+        mRoundNumber = 1;
+        mGameState = STATE_PRE_GAME;
+        mButtonsStale = true;
+        mAttackerDelay = 0;
+        mRoundMaxAttackers = 5;
+        mRepairCost = 1000f;
+        mLivingAttackerCount = 0;
+        mKnightSpawnChance = 0.35f; // 35% chance to spawn a knight instead of normal under regular circumstances
+        mPaused = false;
+        mRoundSaved = false;
+        mEndlessHorde = false;
+        mTickCount = 0L;
+        mTickAccumulator = 0f;
+        mTapX = new float[TAP_CAPACITY];
+        mTapY = new float[TAP_CAPACITY];
+        mTapCount = 0;
+        mAttackersMoved = false;
+        mSeed = seed;
+        mRandom = new SeededRandom(seed);
+        mDifficulty = new DifficultyCurve();
+        mSpawnTimeMin = mDifficulty.getSpawnTimeMin(0); // Round 1's values are only set once a game starts
+        mSpawnTimeMax = mDifficulty.getSpawnTimeMax(0);
+        mSpawner = new SpawnScheduler(32);
+        mTrickleDue = 0;
+        mMonsterHouseSpawn = 10;
+
+        // The pool starts empty, attackers are created the first time a spawn finds no dead one to revive
+        mAttackers = new AttackerStore(archetypes, ATTACKER_ARRAY_SIZE);
+    }
+
+    /**
+     * Method that adds a new dead attacker of an archetype to the pool, with a random walk speed and lane
+     *
+     * @param archetype: The archetype id of the attacker to create
+     */
+    private void createAttacker(int archetype) {
+        // Grab a walk speed within the archetype's range
+        float walkSpeed = mRandom.nextFloat() * mArchetypes.getSpeedVariance(archetype);
+        walkSpeed += mArchetypes.getMinSpeed(archetype);
+        // Spawn at a random y coordinate starting at MIN_SPAWN_Y, varying by MAX_SPAWN_Y_VARIANCE
+        float spawnY = mRandom.nextFloat() * MAX_SPAWN_Y_VARIANCE;
+        spawnY += MIN_SPAWN_Y;
+
+        mAttackers.add(archetype, mArchetypes.getHitDamage(archetype), walkSpeed, -100f, spawnY);
+    }
+
+    /**
+     * Method to hand a tap to the simulation, used on the next call to step
+     * Every tap handed over before a step is handled by it, so several fingers landing in one tick all count
+     *
+     * @param x: The x coordinate of the tap, in world coordinates
+     * @param y: The y coordinate of the tap, in world coordinates
+     */
+    public void tap(float x, float y) {
+        if(mRecorder != null)
+            mRecorder.recordTap(mTickCount, x, y);
+        if(mTapCount == mTapX.length) {
+            mTapX = Arrays.copyOf(mTapX, mTapCount * 2);
+            mTapY = Arrays.copyOf(mTapY, mTapCount * 2);
+        }
+        mTapX[mTapCount] = x;
+        mTapY[mTapCount] = y;
+        mTapCount++;
+    }
+
+    /**
+     * Method that runs every tick due after a frame of real time, and keeps the remainder for the next frame
+     * A slow device runs several ticks before drawing once, a fast one may draw several times between ticks
+     *
+     * @param frameTime: The real time in seconds since the last call, clamped to MAX_FRAME_SECONDS
+     * @return ticks: The number of ticks run
+     */
+    public int update(float frameTime) {
+        if(frameTime > MAX_FRAME_SECONDS)
+            frameTime = MAX_FRAME_SECONDS;
+        mTickAccumulator += frameTime;
+
+        int ticks = 0;
+        while(mTickAccumulator >= TICK_SECONDS) {
+            step(TICK_SECONDS);
+            mTickAccumulator -= TICK_SECONDS;
+            ticks++;
+        }
+        return ticks;
+    }
+
+    /**
+     * Method that advances the whole game by one tick
+     * update calls this with TICK_SECONDS, headless runners may call it directly to run as fast as they like -
+     * the timers count ticks, so any other deltaTime only changes how far attackers walk per tick
+     *
+     * @param deltaTime: The time in seconds that this step covers
+     */
+    public void step(float deltaTime) {
+        mAttackersMoved = false;
+        if(mButtonsStale) {
+            showStateButtons();
+            mButtonsStale = false;
+        }
+
+        // Hand every tap since the last step to the current state, a tap that changes the state sends the
+        // rest of them to the new one
+        long phaseStart = mMetrics != null ? mMetrics.begin() : 0L;
+        for(int t = 0; t < mTapCount; t++) {
+            dispatchTap(mTapX[t], mTapY[t]);
+        }
+        mTapCount = 0;
+        if(mMetrics != null)
+            mMetrics.end(FrameMetrics.PHASE_INPUT, phaseStart);
+
+        // Then whatever the state does every tick by itself
+        if(mGameState == STATE_ROUND_START) {
+            handleRoundStart();
+        } else if(mGameState == STATE_ROUND_PLAY && !mPaused) {
+            mAttackersMoved = true;
+            handleStandardGameplay(deltaTime);
+        }
+        mTickCount++;
+    }
+
+    /**
+     * Method that shows the buttons the current game state offers
+     * Only runs on the step after a transition hid the buttons or the pause changed, as step checks mButtonsStale
+     */
+    private void showStateButtons() {
+        switch (mGameState) {
+            case STATE_PRE_GAME:
+                // Before the game starts, the first two buttons (new game and resume) are visible
+                mButtons[0].setVisible(true);
+                mButtons[1].setVisible(true);
+                break;
+            case STATE_ROUND_START:
+                mButtons[2].setVisible(true);
+                break;
+            case STATE_ROUND_PLAY:
+                mButtons[2].setVisible(true);
+                if(mPaused)
+                    mButtons[3].setVisible(true);
+                break;
+            case STATE_ROUND_OVER:
+                mButtons[4].setVisible(true);
+                mButtons[5].setVisible(true);
+                mButtons[6].setVisible(true);
+                break;
+            case STATE_GAME_OVER:
+                mButtons[0].setVisible(true);
+                break;
+        }
+    }
+
+    /**
+     * Method that hands one tap to whatever the current state lets the player touch - its buttons first, then
+     * the attackers. The first target hit uses the tap up, so a tap on a button never kills the attacker behind it
+     *
+     * @param x: The x coordinate of the tap, in world coordinates
+     * @param y: The y coordinate of the tap, in world coordinates
+     */
+    private void dispatchTap(float x, float y) {
+        switch (mGameState) {
+            case STATE_PRE_GAME:
+                if(!checkStartNewGameButton(x, y))
+                    checkLoadGameButton(x, y);
+                break;
+            case STATE_ROUND_START:
+                checkPauseGameButton(x, y);
+                break;
+            case STATE_ROUND_PLAY:
+                if(mPaused)
+                    checkResumeGameButton(x, y);
+                else if(!checkPauseGameButton(x, y))
+                    killAttackerAt(x, y);
+                break;
+            case STATE_ROUND_OVER:
+                if(!checkRepairCastleButton(x, y) && !checkSaveGameButton(x, y))
+                    checkNextRoundButton(x, y);
+                break;
+            case STATE_GAME_OVER:
+                checkStartNewGameButton(x, y);
+                break;
+        }
+    }
+
+    /**
+     * Method that kills the first attacker at a tap and adds its points, if there is one
+     *
+     * @param x: The x coordinate of the tap, in world coordinates
+     * @param y: The y coordinate of the tap, in world coordinates
+     */
+    private void killAttackerAt(float x, float y) {
+        // Find the first attacker located at the touch position, if any
+        int indexOfAttacker = getFirstAttackerAt(x, y);
+        // If the index is greater than negative one, kill the attacker and add points
+        if(indexOfAttacker > -1){
+            mAttackers.kill(indexOfAttacker);
+            mLivingAttackerCount--;
+            mMonsterHouseSpawn--;
+            mRoundScore += mArchetypes.getScore(mAttackers.getArchetype(indexOfAttacker));
+        }
+    }
+
+    /**
+     * Method that calculates the standard logic for gameplay - STATE_ROUND_PLAY matches game state
+     * Taps were already handed out by step, this is everything that happens without the player
+     * @param deltaTime: The time delta passed by the caller
+     */
+    private void handleStandardGameplay(float deltaTime) {
+        // Move the spawn schedule on a tick, whatever comes due is spawned below
+        mSpawner.advance();
+
+        // Accumulate time elapsed while playing
+        mRoundTimeElapsed += deltaTime;
+
+        // Note the castle's health for the save store now and then, a killed app then loses at most a second of it
+        if(++mCheckpointTimer >= CHECKPOINT_TICKS) {
+            mCheckpointTimer = 0;
+            if(mCastle.getHealth() != mCheckpointHealth)
+                checkpoint(SaveStore.CHECKPOINT_CASTLE_HEALTH);
+        }
+
+        long phaseStart = mMetrics != null ? mMetrics.begin() : 0L;
+
+        // Sends a monster house of enemy units if player is doing well, spread out instead of all in this tick
+        if(mMonsterHouseSpawn <0) {
+            for(int i = 0; i < MONSTER_HOUSE_SIZE; i++) {
+                mSpawner.schedule(i * MONSTER_HOUSE_STAGGER, -1, -1, SpawnScheduler.FLAG_NONE);
+            }
+            mMonsterHouseSpawn = 10;
+        }
+        spawnDue();
+        if(mMetrics != null) {
+            mMetrics.end(FrameMetrics.PHASE_SPAWN, phaseStart);
+            phaseStart = mMetrics.begin();
+        }
+
+        // Walk every living attacker, stopping the ones at the castle and adding up the damage they deal
+        float damage = mAttackers.advance(deltaTime, MIN_STOP_X);
+        if(mMetrics != null)
+            mMetrics.end(FrameMetrics.PHASE_ATTACKERS, phaseStart);
+        if(damage >= 0f) {
+            // The castle loses health to every attacker at its gates, all in one go - if it falls, endGame runs
+            phaseStart = mMetrics != null ? mMetrics.begin() : 0L;
+            mCastle.applyDamage(damage);
+            if(mMetrics != null)
+                mMetrics.end(FrameMetrics.PHASE_CASTLE, phaseStart);
+        }
+
+        // If the round time is up, end the round and go to a new state
+        if(mRoundTimeElapsed > mRoundMaxTime) {
+            mGameState = STATE_ROUND_OVER;
+            mTotalScore += mRoundScore;
+            mRoundNumber++;
+            hideAllButtons();
+            checkpoint(SaveStore.CHECKPOINT_ROUND_OVER);
+        }
+    }
+
+    /**
+     * Method that spawns whatever the scheduler has due this tick, up to MAX_SPAWNS_PER_TICK
+     * The rest stay in the scheduler's ready list, which keeps them ahead of the next tick's, so a burst comes out
+     * as a steady stream
+     */
+    private void spawnDue() {
+        int spawned = 0;
+        int entry;
+        while(spawned < MAX_SPAWNS_PER_TICK && (entry = mSpawner.poll()) >= 0) {
+            // Read the entry before anything is scheduled, which may reuse it
+            int archetype = mSpawner.getArchetype(entry);
+            int lane = mSpawner.getLane(entry);
+            int flags = mSpawner.getFlags(entry);
+            spawned++;
+
+            if(archetype < 0)
+                reviveAttacker(lane);
+            else
+                reviveAttacker(archetype, lane);
+            // The steady spawn puts the next one in as it goes
+            if((flags & SpawnScheduler.FLAG_TRICKLE) != 0)
+                scheduleTrickle();
+        }
+    }
+
+    /**
+     * Method that schedules the next steady random spawn, a random number of ticks within the round's bounds away
+     */
+    private void scheduleTrickle() {
+        int delay = mRandom.nextInt(mSpawnTimeMax - mSpawnTimeMin + 1) + mSpawnTimeMin;
+        mSpawner.schedule(delay, -1, -1, SpawnScheduler.FLAG_TRICKLE);
+        mTrickleDue = mSpawner.getTick() + delay;
+    }
+
+    /**
+     * Method that begins a new round - delays the attackers for 15 ticks
+     */
+    private void handleRoundStart() {
+        // Increment attackerDelay
+        mAttackerDelay++;
+
+        // If it is over the threshold of 15 ticks, start the standard round
+        if(mAttackerDelay > 15) {
+            mGameState = STATE_ROUND_PLAY;
+            hideAllButtons();
+        }
+    }
+
+    /**
+     * Method called when the castle has fallen to the attackers
+     * Currently, the game will pause and add text that states the game is over
+     */
+    private void endGame() {
+        mGameState = STATE_GAME_OVER;
+        hideAllButtons();
+        checkpoint(SaveStore.CHECKPOINT_GAME_OVER);
+    }
+
+    /**
+     * Method to revive a single enemy of a specified archetype, whose damage and speed come from the ArchetypeRegistry
+     * May or may not spawn desired enemy, depending on mRoundMaxAttackers - unless the endless horde is on
+     * If every attacker of the archetype is alive the pool grows by one instead of refusing the spawn
+     *
+     * @param archetype: The archetype id of the enemy to spawn
+     * @param lane: The lane to send it down, or -1 for the one it was created in
+     */
+    private void reviveAttacker(int archetype, int lane) {
+        // Check to see if the game will allow another enemy on screen
+        if(!mEndlessHorde && mLivingAttackerCount >= mRoundMaxAttackers)
+            return;
+
+        // Pop a dead attacker off the archetype's free list, creating one if there is none
+        if(lane < 0) {
+            if(mAttackers.obtain(archetype) < 0) {
+                createAttacker(archetype);
+                mAttackers.obtain(archetype);
+            }
+        } else {
+            float y = MIN_SPAWN_Y + lane * MAX_SPAWN_Y_VARIANCE / (LANE_COUNT - 1);
+            if(mAttackers.obtain(archetype, y) < 0) {
+                createAttacker(archetype);
+                mAttackers.obtain(archetype, y);
+            }
+        }
+        mLivingAttackerCount++;
+    }
+
+    /**
+     * Method that chooses to revive an elite or common enemy, depending on probability of mKnightSpawnChance
+     *
+     * @param lane: The lane to send it down, or -1 for the one it was created in
+     */
+    private void reviveAttacker(int lane) {
+        reviveAttacker(mArchetypes.pickRandom(mRandom, mKnightSpawnChance), lane);
+    }
+
+    /**
+     * Find the index of the first attacker that point (x, y) intersects
+     * @param x: The x coordinate to check against the array of living attackers
+     * @param y: The y coordinate to check against the array of living attackers
+     * @return index: The index of the first attacker found to be intersected by (x, y)
+     */
+    private int getFirstAttackerAt(float x, float y) {
+        // The grid returns the lowest index among the attackers at the point, same as the old linear scan
+        return mAttackers.findFirstAt(x, y);
+    }
+
+    /**
+     * The following methods check if the hard-coded buttons have been pressed by a tap
+     * Each button has a specific behavior so each method has custom code, and returns true if the tap hit it
+     */
+    private boolean checkStartNewGameButton(float x, float y) {
+        // See if the button is visible and the tap was in its outer rectangle
+        if(mButtons[0].isVisible() && mButtons[0].getRect().contains(x, y)){
+            // The "New Game" button was pressed, start a new game!
+            // Health, score and spawn rates go back to their starting values, otherwise a game after a loss ends instantly
+            mRoundNumber = 1;
+            mCastle.restore(mCastle.getMaxHealth(), mCastle.getMaxHealth());
+            mTotalScore = 0f;
+            resetRoundVars();
+            mGameState = STATE_ROUND_START;
+            hideAllButtons();
+            checkpoint(SaveStore.CHECKPOINT_ROUND_START);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean checkLoadGameButton(float x, float y) {
+        if(mButtons[1].isVisible() && mButtons[1].getRect().contains(x, y)){
+            // The "Continue Game" button was pressed, load the saved game, or default to new anyway
+            byte[] snapshot = mSaveStore != null ? mSaveStore.load() : null;
+            if(mRecorder != null)
+                mRecorder.recordRestore(mTickCount, snapshot);
+            hideAllButtons();
+            boolean restored = snapshot != null && restoreSnapshot(snapshot);
+            if(restored && (mGameState == STATE_ROUND_START || mGameState == STATE_ROUND_PLAY)) {
+                // A game saved mid-round carries on right where it was, paused - even if it was saved running
+                mPaused = true;
+            } else {
+                // Otherwise it was saved between rounds, the saved round starts afresh
+                if(!restored)
+                    restoreProgress(1, mCastle.getMaxHealth(), 0f);
+                resetRoundVars();
+                mGameState = STATE_ROUND_START;
+            }
+            checkpoint(SaveStore.CHECKPOINT_ROUND_START);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean checkPauseGameButton(float x, float y) {
+        if(mButtons[2].isVisible() && mButtons[2].getRect().contains(x, y)) {
+            // The pause button was tapped, set paused to true - the tap is what gets recorded, not the pause
+            // The round is saved as it stands, so it can be continued later even if the app is closed now
+            mPaused = true;
+            hideAllButtons();
+            saveGame();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean checkResumeGameButton(float x, float y) {
+        if(mButtons[3].isVisible() && mButtons[3].getRect().contains(x, y)) {
+            // The resume button was tapped, set paused to false
+            mPaused = false;
+            hideAllButtons();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean checkRepairCastleButton(float x, float y) {
+        if(mButtons[4].isVisible() && mButtons[4].getRect().contains(x, y)) {
+            // The repair button was tapped, see if the player has enough total points to repair once
+            if(mTotalScore > mRepairCost) {
+                // Deduct the repair cost from total score and add 100 to castle health
+                // The castle's stage follows, which updates the visual of the castle
+                mTotalScore -= mRepairCost;
+                mCastle.repair(100f);
+                checkpoint(SaveStore.CHECKPOINT_REPAIR);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean checkNextRoundButton(float x, float y) {
+        if(mButtons[5].isVisible() && mButtons[5].getRect().contains(x, y)) {
+            // The "advance round" button was pressed, round is already incremented, start new
+            resetRoundVars();
+            hideAllButtons();
+            mGameState = STATE_ROUND_START;
+            checkpoint(SaveStore.CHECKPOINT_ROUND_START);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean checkSaveGameButton(float x, float y) {
+        if(mButtons[6].isVisible() && mButtons[6].getRect().contains(x, y)) {
+            // The "save game" button has been pressed, save game varables
+            // Show the user the save went through - set first, so the saved game has it set too
+            mRoundSaved = true;
+            saveGame();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Method to reset common round-dependent game variables used between rounds
+     * The round's difficulty comes from the DifficultyCurve for the round number, whatever the previous round had
+     * Variables reset:
+     * mAttackerDelay
+     * mRoundTimeElapsed
+     * mRoundScore
+     * mKnightChance
+     * mRoundMaxAttackers
+     * mRoundMaxTime
+     * mRoundSaved
+     * mSpawnTimeMin
+     * mSpawnTimeMax
+     * mLivingAttackerCount
+     * The spawn schedule, which starts over with the steady spawn and the round's scripted waves
+     * Kills all living attackers
+     */
+    private void resetRoundVars() {
+        mAttackerDelay = 0;
+        mRoundTimeElapsed = 0;
+        mRoundScore = 0f;
+        mKnightSpawnChance = mDifficulty.getKnightSpawnChance(mRoundNumber);
+        mRoundMaxAttackers = mDifficulty.getMaxAttackers(mRoundNumber);
+        mRoundMaxTime = mDifficulty.getRoundTime(mRoundNumber);
+        mRoundSaved = false;
+        mSpawnTimeMin = mDifficulty.getSpawnTimeMin(mRoundNumber);
+        mSpawnTimeMax = mDifficulty.getSpawnTimeMax(mRoundNumber);
+
+        // Kill all living attackers, the count has to follow or the leftovers eat into every later round's cap
+        mAttackers.killAll();
+        mLivingAttackerCount = 0;
+
+        // Nothing scheduled for the last round carries over
+        mSpawner.clear();
+        scheduleTrickle();
+        if(mWaveScript != null)
+            mWaveScript.scheduleRound(mSpawner, mRoundNumber);
+    }
+
+    /**
+     * Small method that hides all buttons so update only shows state-dependent ones
+     */
+    private void hideAllButtons() {
+        for(int i = 0; i < 7; i++) {
+            mButtons[i].setVisible(false);
+        }
+        mButtonsStale = true;
+    }
+
+    /**
+     * Method to hand a snapshot of the game to the save store, if there is one
+     * Only the copy into a new array happens on this thread, the store writes it out in the background
+     */
+    private void saveGame() {
+        if(mSaveStore != null)
+            mSaveStore.save(createSnapshot());
+    }
+
+    /**
+     * Method to hand the progress to the save store as a checkpoint, and save a snapshot if the store asks for one
+     *
+     * @param event: What the checkpoint is for, one of SaveStore's CHECKPOINT constants
+     */
+    private void checkpoint(int event) {
+        if(mSaveStore == null)
+            return;
+        mCheckpointHealth = mCastle.getHealth();
+        if(mSaveStore.checkpoint(event, mRoundNumber, mCheckpointHealth, mTotalScore))
+            saveGame();
+    }
+
+    /**
+     * Method to write the whole game into a snapshot, which a save store keeps and continuing the game reads back
+     *
+     * @return snapshot: The snapshot, a new array every call
+     */
+    public byte[] createSnapshot() {
+        int payloadSize = SNAPSHOT_FIELDS_SIZE + mAttackers.getSnapshotSize() + mSpawner.getSnapshotSize();
+        byte[] snapshot = new byte[SNAPSHOT_HEADER_SIZE + payloadSize];
+        ByteBuffer out = ByteBuffer.wrap(snapshot);
+        out.putInt(SNAPSHOT_MAGIC);
+        out.putInt(SNAPSHOT_VERSION);
+        out.putInt(payloadSize);
+        out.putInt(0); // The checksum, filled in once the payload is written
+
+        out.putInt(mAttackers.getArchetypeCount());
+        out.putInt(mGameState);
+        out.putInt(mRoundNumber);
+        out.putInt(mRoundMaxAttackers);
+        out.putInt(mLivingAttackerCount);
+        out.putInt(mCastle.getStage());
+        out.putInt(mAttackerDelay);
+        out.putInt(mTrickleDue);
+        out.putInt(mSpawnTimeMin);
+        out.putInt(mSpawnTimeMax);
+        out.putInt(mMonsterHouseSpawn);
+        out.put((byte) ((mPaused ? 1 : 0) | (mRoundSaved ? 2 : 0)));
+        out.putFloat(mRoundTimeElapsed);
+        out.putFloat(mCastle.getMaxHealth());
+        out.putFloat(mCastle.getHealth());
+        out.putFloat(mRoundScore);
+        out.putFloat(mTotalScore);
+        out.putFloat(mKnightSpawnChance);
+        out.putFloat(mRoundMaxTime);
+        out.putFloat(mRepairCost);
+        out.putLong(mRandom.getState());
+        mAttackers.writeSnapshot(out);
+        mSpawner.writeSnapshot(out);
+
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, SNAPSHOT_HEADER_SIZE, payloadSize);
+        out.putInt(SNAPSHOT_HEADER_SIZE - 4, (int) crc.getValue());
+        return snapshot;
+    }
+
+    /**
+     * Method to put the game back to the state a snapshot was made in
+     * The tick count, seed and endless horde switch belong to the session, not the saved game, and are kept
+     *
+     * @param snapshot: The snapshot made by createSnapshot
+     * @return restored: False if the snapshot is damaged, from another version or saved with a different number of
+     * archetypes, the game is left untouched then
+     */
+    private boolean restoreSnapshot(byte[] snapshot) {
+        if(snapshot.length < SNAPSHOT_HEADER_SIZE)
+            return false;
+        ByteBuffer in = ByteBuffer.wrap(snapshot);
+        if(in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION)
+            return false;
+        int payloadSize = in.getInt();
+        int checksum = in.getInt();
+        if(payloadSize != snapshot.length - SNAPSHOT_HEADER_SIZE)
+            return false;
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, SNAPSHOT_HEADER_SIZE, payloadSize);
+        if((int) crc.getValue() != checksum)
+            return false;
+        if(in.getInt() != mAttackers.getArchetypeCount())
+            return false;
+
+        mGameState = in.getInt();
+        mRoundNumber = in.getInt();
+        mRoundMaxAttackers = in.getInt();
+        mLivingAttackerCount = in.getInt();
+        in.getInt(); // The castle's stage, worked out again from its health below
+        mAttackerDelay = in.getInt();
+        mTrickleDue = in.getInt();
+        mSpawnTimeMin = in.getInt();
+        mSpawnTimeMax = in.getInt();
+        mMonsterHouseSpawn = in.getInt();
+        int flags = in.get();
+        mPaused = (flags & 1) != 0;
+        mRoundSaved = (flags & 2) != 0;
+        mRoundTimeElapsed = in.getFloat();
+        mCastle.restore(in.getFloat(), in.getFloat());
+        mRoundScore = in.getFloat();
+        mTotalScore = in.getFloat();
+        mKnightSpawnChance = in.getFloat();
+        mRoundMaxTime = in.getFloat();
+        mRepairCost = in.getFloat();
+        mRandom.setState(in.getLong());
+        mAttackers.readSnapshot(in);
+        mSpawner.readSnapshot(in);
+        return true;
+    }
+
+    /**
+     * Method that brings a snapshot up to date with a checkpoint made after it, for a store that journals checkpoints
+     * The attackers are gone and the game waits between rounds, so continuing it starts the checkpoint's round afresh
+     *
+     * @param snapshot: The snapshot the checkpoint was made after, or null if there is none
+     * @param archetypes: The archetypes the game is played with
+     * @param roundNumber: The checkpoint's round
+     * @param castleHealth: The checkpoint's castle health
+     * @param totalScore: The checkpoint's total score
+     * @return snapshot: A new snapshot holding the checkpoint's progress
+     */
+    public static byte[] continueFrom(byte[] snapshot, ArchetypeRegistry archetypes, int roundNumber, float castleHealth,
+            float totalScore) {
+        DefenderSimulation simulation = new DefenderSimulation(null, 0L, archetypes);
+        if(snapshot != null)
+            simulation.restoreSnapshot(snapshot);
+        simulation.mAttackers.killAll();
+        simulation.mLivingAttackerCount = 0;
+        simulation.mSpawner.clear();
+        simulation.mPaused = false;
+        simulation.restoreProgress(roundNumber, castleHealth, totalScore);
+        simulation.mGameState = STATE_ROUND_OVER;
+        return simulation.createSnapshot();
+    }
+
+    /**
+     * Method to put progress back into the simulation without a snapshot
+     * Used when a game is continued with nothing saved, and by tools that want a game to start at a later round
+     *
+     * @param roundNumber: The round to continue from
+     * @param castleHealth: The castle health to continue with
+     * @param totalScore: The total score to continue with
+     */
+    public void restoreProgress(int roundNumber, float castleHealth, float totalScore) {
+        mRoundNumber = roundNumber;
+        mCastle.restore(mCastle.getMaxHealth(), castleHealth);
+        mTotalScore = totalScore;
+    }
+
+    /**
+     * Method to have the phases of every gameplay step timed into a metrics registry
+     *
+     * @param metrics: The registry to record into, or null to stop timing
+     */
+    public void setMetrics(FrameMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * Method to turn the endless horde on or off - with it on, every spawn goes through however many attackers
+     * are already alive, and the pool keeps growing with the horde
+     *
+     * @param endless: True to lift the per-round cap on living attackers
+     */
+    public void setEndlessHorde(boolean endless) {
+        if(mRecorder != null)
+            mRecorder.recordEndlessHorde(mTickCount, endless);
+        mEndlessHorde = endless;
+    }
+
+    /**
+     * Method to tune how hard the rounds get, taking effect from the next round started
+     * The curve isn't recorded or saved, replays and saved games assume the game's own tuning
+     *
+     * @param difficulty: The curve to read every round's values from
+     */
+    public void setDifficultyCurve(DifficultyCurve difficulty) {
+        mDifficulty = difficulty;
+    }
+
+    /**
+     * Method to add scripted waves to the rounds, from the next round started
+     *
+     * @param waveScript: The script, or null for the steady spawns and monster houses alone
+     */
+    public void setWaveScript(WaveScript waveScript) {
+        if(mRecorder != null)
+            mRecorder.recordWaveScript(mTickCount, waveScript != null ? waveScript.getSource() : null);
+        mWaveScript = waveScript;
+    }
+
+    public WaveScript getWaveScript() {
+        return mWaveScript;
+    }
+
+    public ArchetypeRegistry getArchetypeRegistry() {
+        return mArchetypes;
+    }
+
+    public DifficultyCurve getDifficultyCurve() {
+        return mDifficulty;
+    }
+
+    /**
+     * Method to have large hordes advanced on a pool of helper threads, with the same results as advancing them alone
+     *
+     * @param pool: The pool to share the attackers out on, or null to always advance on the simulation's thread
+     * @param minHordeSize: The number of living attackers from which the pool is used, PARALLEL_HORDE_SIZE unless tuned
+     */
+    public void setAdvancePool(AdvancePool pool, int minHordeSize) {
+        mAttackers.setAdvancePool(pool, minHordeSize);
+    }
+
+    /**
+     * Method to record the session from here on, handing every outside event to a recorder
+     *
+     * @param recorder: The recorder, or null to stop recording
+     */
+    public void setRecorder(ReplayRecorder recorder) {
+        mRecorder = recorder;
+    }
+
+    /**
+     * Method to pause the game from outside, when the app goes to the background
+     * A round in progress is saved too - the app may never come back from the background
+     */
+    public void pause() {
+        if(mRecorder != null)
+            mRecorder.recordPause(mTickCount);
+        mPaused = true;
+        mButtonsStale = true;
+        if(mGameState == STATE_ROUND_START || mGameState == STATE_ROUND_PLAY)
+            saveGame();
+    }
+
+    public void resume() {
+        if(mRecorder != null)
+            mRecorder.recordResume(mTickCount);
+        mPaused = false;
+        mButtonsStale = true;
+    }
+
+    /**
+     * Method that hashes every value a tick can change (64 bit FNV-1a), so two runs can be checked to have ended
+     * in exactly the same state. Floats are hashed by their bits, attackers by id, living or dead
+     *
+     * @return hash: The hash of the current state
+     */
+    public long getStateHash() {
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, mTickCount);
+        hash = mix(hash, mGameState);
+        hash = mix(hash, mRoundNumber);
+        hash = mix(hash, mRoundMaxAttackers);
+        hash = mix(hash, mLivingAttackerCount);
+        hash = mix(hash, mCastle.getStage());
+        hash = mix(hash, mAttackerDelay);
+        hash = mix(hash, mTrickleDue);
+        hash = mix(hash, mSpawner.getTick());
+        hash = mix(hash, mSpawner.getPendingCount());
+        hash = mix(hash, mSpawnTimeMin);
+        hash = mix(hash, mSpawnTimeMax);
+        hash = mix(hash, mMonsterHouseSpawn);
+        hash = mix(hash, (mPaused ? 1 : 0) | (mRoundSaved ? 2 : 0) | (mEndlessHorde ? 4 : 0));
+        hash = mix(hash, Float.floatToIntBits(mRoundTimeElapsed));
+        hash = mix(hash, Float.floatToIntBits(mCastle.getHealth()));
+        hash = mix(hash, Float.floatToIntBits(mRoundScore));
+        hash = mix(hash, Float.floatToIntBits(mTotalScore));
+        hash = mix(hash, Float.floatToIntBits(mKnightSpawnChance));
+        hash = mix(hash, Float.floatToIntBits(mRoundMaxTime));
+        hash = mix(hash, mRandom.getState());
+
+        AttackerStore attackers = mAttackers;
+        hash = mix(hash, attackers.size());
+        for(int i = 0; i < attackers.size(); i++) {
+            hash = mix(hash, attackers.isAlive(i) ? 1 : 0);
+            hash = mix(hash, Float.floatToIntBits(attackers.getX(i)));
+            hash = mix(hash, Float.floatToIntBits(attackers.getY(i)));
+            hash = mix(hash, Float.floatToIntBits(attackers.getStateTime(i)));
+            hash = mix(hash, attackers.getAnimation(i));
+        }
+        return hash;
+    }
+
+    /**
+     * Method that checks the rules the game's counters should always keep to, for soak tests to call between steps
+     * Costs a handful of compares, nothing is walked or allocated
+     *
+     * @return violations: Bit k is set if INVARIANT_ constant k is broken, 0 if the state is sound
+     */
+    public int checkInvariants() {
+        int violations = 0;
+        int living = mAttackers.getLiveCount();
+        if(mLivingAttackerCount < 0)
+            violations |= 1 << INVARIANT_LIVING_NEGATIVE;
+        if(mLivingAttackerCount != living)
+            violations |= 1 << INVARIANT_LIVING_DRIFT;
+        if(!mEndlessHorde && living > mRoundMaxAttackers)
+            violations |= 1 << INVARIANT_LIVING_CAP;
+        if(mSpawnTimeMin < 0 || mSpawnTimeMin > mSpawnTimeMax)
+            violations |= 1 << INVARIANT_SPAWN_BOUNDS;
+        // The schedule only moves while a round is played, and a step always leaves the next steady spawn in it -
+        // overdue only while it waits behind a burst in the ready list
+        if(mGameState == STATE_ROUND_PLAY && ((mTrickleDue < mSpawner.getTick() && !mSpawner.hasOverdue())
+                || mTrickleDue - mSpawner.getTick() > mSpawnTimeMax))
+            violations |= 1 << INVARIANT_SPAWN_TIMER;
+        float health = mCastle.getHealth();
+        if(!(health >= 0f) || mCastle.getStage() < 0 || mCastle.getStage() >= Castle.STAGE_COUNT)
+            violations |= 1 << INVARIANT_CASTLE;
+        if(Float.isNaN(mRoundScore) || Float.isInfinite(mRoundScore) || !(mTotalScore >= 0f)
+                || Float.isInfinite(mTotalScore))
+            violations |= 1 << INVARIANT_SCORE;
+        return violations;
+    }
+
+    // One FNV-1a round per byte of the value
+    private static long mix(long hash, long value) {
+        for(int shift = 0; shift < 64; shift += 8) {
+            hash ^= (value >>> shift) & 0xFFL;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // Getters used by the renderer and headless runners below
+    public int getGameState() {
+        return mGameState;
+    }
+
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    public boolean isRoundSaved() {
+        return mRoundSaved;
+    }
+
+    public int getRoundNumber() {
+        return mRoundNumber;
+    }
+
+    public int getCastleDamageStage() {
+        return mCastle.getStage();
+    }
+
+    public float getCastleHealth() {
+        return mCastle.getHealth();
+    }
+
+    public float getRoundScore() {
+        return mRoundScore;
+    }
+
+    public float getTotalScore() {
+        return mTotalScore;
+    }
+
+    public float getRepairCost() {
+        return mRepairCost;
+    }
+
+    public Castle getCastle() {
+        return mCastle;
+    }
+
+    public boolean isEndlessHorde() {
+        return mEndlessHorde;
+    }
+
+    public int getLivingAttackerCount() {
+        return mLivingAttackerCount;
+    }
+
+    /**
+     * @return alpha: How far the current frame is between the last tick and the next one, between 0 and 1
+     * Always 1 if the last tick didn't walk the attackers (paused or between rounds), so they are drawn where they stand
+     */
+    public float getInterpolationAlpha() {
+        return mAttackersMoved ? mTickAccumulator / TICK_SECONDS : 1f;
+    }
+
+    public long getTickCount() {
+        return mTickCount;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public boolean hasAttackersMoved() {
+        return mAttackersMoved;
+    }
+
+    public AttackerStore getAttackers() {
+        return mAttackers;
+    }
+
+    public DefenderButtons[] getButtons() {
+        return mButtons;
+    }
+}
@@ -0,0 +1,147 @@
+package com.hamsterhuey.defender;
+
+/**
+ * How hard each round is: the knight chance, the cap on living attackers, the round's length and the spawn times
+ *
+ * Every value is worked out from the round number alone, so a round plays the same whether it was reached by
+ * playing, by starting a new game or by loading a save. The defaults are the game's own tuning. The spawn times
+ * shrink by a growing step each round, as they always have, but stop at a floor instead of running negative -
+ * a parameter set that still gives a range the game can't use is caught by findInvalidRound
+ */
+public class DifficultyCurve {
+    private float mKnightChanceStart = 0.35f;  // 35% chance to spawn a knight instead of normal in round 1
+    private float mKnightChanceStep = 0.1f;    // +10% per round
+    private float mKnightChanceMax = 0.65f;    // Hard cap at 65%
+    private int mMaxAttackersStart = 5;
+    private int mMaxAttackersStep = 2;
+    private float mRoundTimeStart = 50f;       // Counted in SECONDS
+    private float mRoundTimeStep = 1.5f;
+    private int mSpawnTimeMinStart = 85;       // Counted in ticks, before round 1's step is taken off
+    private int mSpawnTimeMaxStart = 120;
+    private int mSpawnTimeStep = 5;            // Round n takes n times this off the previous round's spawn times
+    private int mSpawnTimeFloor = 10;          // The spawn times never go below this many ticks
+
+    public float getKnightSpawnChance(int round) {
+        return Math.min(mKnightChanceStart + mKnightChanceStep * (round - 1), mKnightChanceMax);
+    }
+
+    public int getMaxAttackers(int round) {
+        return mMaxAttackersStart + round * mMaxAttackersStep;
+    }
+
+    public float getRoundTime(int round) {
+        return mRoundTimeStart + round * mRoundTimeStep;
+    }
+
+    /**
+     * @return spawnTimeMin: The fewest ticks between two spawns in the round
+     */
+    public int getSpawnTimeMin(int round) {
+        return Math.max(mSpawnTimeMinStart - totalSpawnStep(round), mSpawnTimeFloor);
+    }
+
+    /**
+     * @return spawnTimeMax: The most ticks between two spawns in the round, never below getSpawnTimeMin
+     */
+    public int getSpawnTimeMax(int round) {
+        return Math.max(mSpawnTimeMaxStart - totalSpawnStep(round), getSpawnTimeMin(round));
+    }
+
+    // Everything taken off the starting spawn times by the end of a round: step * (1 + 2 + ... + round)
+    private int totalSpawnStep(int round) {
+        long total = (long) mSpawnTimeStep * round * (round + 1) / 2;
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Method to find the first round whose values the game can't run with, for sweeps over untried parameters
+     *
+     * @param lastRound: The last round to check
+     * @return round: The first round with a chance outside [0, 1], no attackers allowed, no round time or a spawn
+     * range that is negative or backwards, or -1 if every round up to lastRound is fine
+     */
+    public int findInvalidRound(int lastRound) {
+        for(int round = 1; round <= lastRound; round++) {
+            float knightChance = getKnightSpawnChance(round);
+            int spawnTimeMin = getSpawnTimeMin(round);
+            if(!(knightChance >= 0f && knightChance <= 1f) || getMaxAttackers(round) < 1
+                    || !(getRoundTime(round) > 0f) || spawnTimeMin < 0 || spawnTimeMin > getSpawnTimeMax(round))
+                return round;
+        }
+        return -1;
+    }
+
+    // Setters for the tuning below, the simulation reads the curve at the start of every round
+    public void setKnightChance(float start, float step, float max) {
+        mKnightChanceStart = start;
+        mKnightChanceStep = step;
+        mKnightChanceMax = max;
+    }
+
+    public void setMaxAttackers(int start, int step) {
+        mMaxAttackersStart = start;
+        mMaxAttackersStep = step;
+    }
+
+    public void setRoundTime(float start, float step) {
+        mRoundTimeStart = start;
+        mRoundTimeStep = step;
+    }
+
+    /**
+     * @param minStart: The fewest ticks between spawns, before round 1's step is taken off
+     * @param maxStart: The most ticks between spawns, before round 1's step is taken off
+     * @param step: Round n takes n times this many ticks off the previous round's spawn times
+     * @param floor: The fewest ticks the spawn times go down to
+     */
+    public void setSpawnTime(int minStart, int maxStart, int step, int floor) {
+        mSpawnTimeMinStart = minStart;
+        mSpawnTimeMaxStart = maxStart;
+        mSpawnTimeStep = step;
+        mSpawnTimeFloor = floor;
+    }
+
+    public float getKnightChanceStart() {
+        return mKnightChanceStart;
+    }
+
+    public float getKnightChanceStep() {
+        return mKnightChanceStep;
+    }
+
+    public float getKnightChanceMax() {
+        return mKnightChanceMax;
+    }
+
+    public int getMaxAttackersStart() {
+        return mMaxAttackersStart;
+    }
+
+    public int getMaxAttackersStep() {
+        return mMaxAttackersStep;
+    }
+
+    public float getRoundTimeStart() {
+        return mRoundTimeStart;
+    }
+
+    public float getRoundTimeStep() {
+        return mRoundTimeStep;
+    }
+
+    public int getSpawnTimeMinStart() {
+        return mSpawnTimeMinStart;
+    }
+
+    public int getSpawnTimeMaxStart() {
+        return mSpawnTimeMaxStart;
+    }
+
+    public int getSpawnTimeStep() {
+        return mSpawnTimeStep;
+    }
+
+    public int getSpawnTimeFloor() {
+        return mSpawnTimeFloor;
+    }
+}
@@ -0,0 +1,188 @@
+package com.hamsterhuey.defender;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * SaveStore that keeps the saved game in one file, written on a background thread so saving never costs a tick
+ *
+ * Each save is written to a temporary file next to the real one, forced to the disk, then renamed over it.
+ * The rename either happens or it doesn't, so a crash or a dead battery mid-write leaves the previous save
+ * intact instead of half a file. Loading reads the whole file with a single channel read
+ *
+ * Checkpoints go into a SaveJournal kept next to the file, which starts over with every snapshot saved. Loading
+ * merges the newest checkpoint the snapshot doesn't have yet into it, so a game killed mid-round continues with
+ * the round and castle it had, not the ones of the last snapshot. The journal is read when the store is made
+ */
+public class FileSaveStore implements SaveStore {
+    private static final long SHUTDOWN_WAIT_SECONDS = 2L;
+
+    private final File mFile;
+    private final File mTempFile;
+    private final ArchetypeRegistry mArchetypes; // What a checkpoint is merged into a snapshot with
+    private final ExecutorService mWriter;
+    private SaveJournal mJournal; // Null if the journal couldn't be opened, saving still works without it
+    private volatile byte[] mLatest; // The newest snapshot saved this session, which may not be on disk yet
+    private volatile IOException mFailure;
+
+    /**
+     * Constructor for a store, opens the journal but doesn't read the snapshot until the first load
+     *
+     * @param file: The file to keep the saved game in, its directory is made if needed
+     * @param archetypes: The archetypes the game is played with
+     */
+    public FileSaveStore(File file, ArchetypeRegistry archetypes) {
+        mFile = file;
+        mTempFile = new File(file.getPath() + ".tmp");
+        mArchetypes = archetypes;
+        try {
+            mJournal = new SaveJournal(new File(file.getPath() + ".journal"));
+        } catch (IOException e) {
+            mFailure = e;
+        }
+        mWriter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Save");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override
+    public void save(final byte[] snapshot) {
+        mLatest = snapshot;
+        if(mJournal != null)
+            mJournal.compact(checksum(snapshot));
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                // A newer save queued behind this one makes writing this one pointless
+                if(mLatest != snapshot)
+                    return;
+                try {
+                    write(snapshot);
+                } catch (IOException e) {
+                    mFailure = e;
+                }
+            }
+        });
+    }
+
+    @Override
+    public byte[] load() {
+        byte[] snapshot = mLatest;
+        if(snapshot == null) {
+            try {
+                snapshot = read();
+            } catch (IOException e) {
+                mFailure = e;
+            }
+        }
+        if(mJournal == null)
+            return snapshot;
+
+        // A lost game has nothing newer worth continuing, the snapshot is the last good point
+        int record = mJournal.findRecovery(snapshot != null ? checksum(snapshot) : 0);
+        if(record < 0 || mJournal.getEvent(record) == CHECKPOINT_GAME_OVER)
+            return snapshot;
+        return DefenderSimulation.continueFrom(snapshot, mArchetypes, mJournal.getRoundNumber(record),
+                mJournal.getCastleHealth(record), mJournal.getTotalScore(record));
+    }
+
+    @Override
+    public boolean checkpoint(int event, int roundNumber, float castleHealth, float totalScore) {
+        return mJournal != null && mJournal.append(event, roundNumber, castleHealth, totalScore);
+    }
+
+    /**
+     * Method to push the journal to the disk, called as the app goes to the background
+     */
+    public void flush() {
+        if(mJournal != null)
+            mJournal.flush();
+    }
+
+    /**
+     * Method to finish any write in progress and stop the writer thread, called as the game is disposed
+     */
+    public void shutdown() {
+        mWriter.shutdown();
+        try {
+            mWriter.awaitTermination(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return failure: The last error saving or loading, or null if there was none
+     */
+    public IOException getFailure() {
+        return mFailure;
+    }
+
+    // Runs on the writer thread
+    private void write(byte[] snapshot) throws IOException {
+        File directory = mFile.getAbsoluteFile().getParentFile();
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Couldn't make " + directory);
+
+        FileOutputStream out = new FileOutputStream(mTempFile);
+        try {
+            FileChannel channel = out.getChannel();
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        } finally {
+            out.close();
+        }
+
+        // Renaming over an existing file fails on Windows, there the old save has to go first
+        if(!mTempFile.renameTo(mFile) && !(mFile.delete() && mTempFile.renameTo(mFile)))
+            throw new IOException("Couldn't rename " + mTempFile + " to " + mFile);
+    }
+
+    private static int checksum(byte[] snapshot) {
+        CRC32 crc = new CRC32();
+        crc.update(snapshot, 0, snapshot.length);
+        return (int) crc.getValue();
+    }
+
+    private byte[] read() throws IOException {
+        FileInputStream in;
+        try {
+            in = new FileInputStream(mFile);
+        } catch (FileNotFoundException e) {
+            return null; // Nothing was ever saved
+        }
+        try {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE)
+                throw new IOException(mFile + " is too large to be a saved game");
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            // One read gets a regular file whole, the loop only guards against a short read
+            while(buffer.hasRemaining()) {
+                if(channel.read(buffer) < 0)
+                    throw new IOException(mFile + " ended early");
+            }
+            return buffer.array();
+        } finally {
+            in.close();
+        }
+    }
+}
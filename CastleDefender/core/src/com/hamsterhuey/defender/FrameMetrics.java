@@ -0,0 +1,181 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Registry of per-phase frame timings, one TimingHistogram per phase of update and render
+ *
+ * Callers time a phase with begin / end around it. Both are a nanoTime call and a histogram increment,
+ * so instrumenting every frame costs next to nothing and never allocates.
+ * Each histogram is only ever recorded into and reset from one thread, and read from the render thread without locks.
+ * At worst a reader sees one sample half recorded - fine for numbers that are only displayed. The simulation thread's
+ * histograms are never zeroed under it: reset only asks for them to be, and that thread does it between two ticks
+ * Whole frames are also checked against the 60 fps budget, counting the ones that ran over
+ */
+public class FrameMetrics {
+    // Public constants for the timed phases, in the order they happen in a frame
+    // The first five and the tap handoff are timed on the simulation thread, the rest on the render thread
+    public static final int PHASE_INPUT = 0;      // Turning a tap into a kill
+    public static final int PHASE_SPAWN = 1;      // Spawn timer and monster house revives
+    public static final int PHASE_ATTACKERS = 2;  // Walking every attacker and adding up castle damage
+    public static final int PHASE_CASTLE = 3;     // Recomputing the castle damage stage
+    public static final int PHASE_TICK = 4;       // A whole simulation tick, including the phases above and the snapshot
+    public static final int PHASE_UPDATE = 5;     // All of DefenderGame.update - queueing taps and reading the newest snapshot
+    public static final int PHASE_RENDER = 6;     // Drawing, from clearing the screen to ending the batch
+    public static final int PHASE_FRAME = 7;      // Time between the starts of two frames
+    public static final int PHASE_TAP_HANDOFF = 8;      // From a tap being queued to a tick picking it up
+    public static final int PHASE_SNAPSHOT_HANDOFF = 9; // From a snapshot being published to a frame drawing it
+    public static final int PHASE_COUNT = 10;
+
+    public static final String[] PHASE_NAMES = { "input", "spawn", "attackers", "castle", "tick", "update", "render",
+            "frame", "tap handoff", "snapshot handoff" };
+
+    public static final long FRAME_BUDGET_NANOS = 16666667L; // One frame at 60 fps
+
+    private final TimingHistogram[] mPhases;
+    private final TimingHistogram mRenderCalls;     // Not timings - counts per frame, exact up to 8 like any histogram value
+    private final TimingHistogram mTextureSwitches;
+    private long mFramesOverBudget;
+    private long mLastFrameStart;
+    private volatile boolean mSimulationResetPending; // Set by reset, cleared by the simulation thread once it has reset its phases
+
+    public FrameMetrics() {
+        mPhases = new TimingHistogram[PHASE_COUNT];
+        for(int i = 0; i < PHASE_COUNT; i++) {
+            mPhases[i] = new TimingHistogram();
+        }
+        mRenderCalls = new TimingHistogram();
+        mTextureSwitches = new TimingHistogram();
+        mFramesOverBudget = 0L;
+        mLastFrameStart = -1L;
+        mSimulationResetPending = false;
+    }
+
+    /**
+     * Method to start timing a phase
+     *
+     * @return start: The time the phase started, to hand back to end
+     */
+    public long begin() {
+        return TimeUtils.nanoTime();
+    }
+
+    /**
+     * Method to stop timing a phase and record how long it took
+     *
+     * @param phase: One of the PHASE_ constants
+     * @param start: The time returned by begin when the phase started
+     */
+    public void end(int phase, long start) {
+        mPhases[phase].record(TimeUtils.nanoTime() - start);
+    }
+
+    /**
+     * Method to call at the start of every frame, records the time since the previous frame started
+     * and counts it against the frame budget
+     */
+    public void startFrame() {
+        long now = TimeUtils.nanoTime();
+        if(mLastFrameStart >= 0L) {
+            long frameTime = now - mLastFrameStart;
+            mPhases[PHASE_FRAME].record(frameTime);
+            if(frameTime > FRAME_BUDGET_NANOS)
+                mFramesOverBudget++;
+        }
+        mLastFrameStart = now;
+    }
+
+    /**
+     * Method to record how much work a frame's draw pass handed to the GPU
+     *
+     * @param renderCalls: The number of times the batch flushed to the GPU
+     * @param textureSwitches: The number of times the texture changed between draws
+     */
+    public void recordDraws(int renderCalls, int textureSwitches) {
+        mRenderCalls.record(renderCalls);
+        mTextureSwitches.record(textureSwitches);
+    }
+
+    /**
+     * Method for the render thread to empty every histogram and the over-budget count
+     * The render thread's phases are emptied right away and the next frame's time is measured from the next startFrame.
+     * The simulation thread's phases are emptied when it next calls applyPendingReset, before its next tick
+     */
+    public void reset() {
+        for(int i = 0; i < PHASE_COUNT; i++) {
+            if(!isSimulationPhase(i))
+                mPhases[i].reset();
+        }
+        mRenderCalls.reset();
+        mTextureSwitches.reset();
+        mFramesOverBudget = 0L;
+        mLastFrameStart = -1L;
+        mSimulationResetPending = true;
+    }
+
+    /**
+     * Method for the simulation thread to call between ticks, empties its phases if reset was called since the last call
+     */
+    public void applyPendingReset() {
+        if(!mSimulationResetPending)
+            return;
+        mSimulationResetPending = false;
+        for(int i = 0; i < PHASE_COUNT; i++) {
+            if(isSimulationPhase(i))
+                mPhases[i].reset();
+        }
+    }
+
+    /**
+     * @return simulation: True if the phase is recorded on the simulation thread, false if on the render thread
+     */
+    public static boolean isSimulationPhase(int phase) {
+        return phase <= PHASE_TICK || phase == PHASE_TAP_HANDOFF;
+    }
+
+    /**
+     * Method to write every phase's summary as CSV, one row per phase, times in microseconds
+     *
+     * @param out: The builder to append the CSV to
+     */
+    public void appendCsv(StringBuilder out) {
+        out.append("phase,count,mean_us,p50_us,p90_us,p99_us,max_us,frames_over_budget\n");
+        for(int i = 0; i < PHASE_COUNT; i++) {
+            TimingHistogram histogram = mPhases[i];
+            out.append(PHASE_NAMES[i]).append(',').append(histogram.getCount());
+            appendMicros(out.append(','), histogram.getMean());
+            appendMicros(out.append(','), histogram.getPercentile(50.0));
+            appendMicros(out.append(','), histogram.getPercentile(90.0));
+            appendMicros(out.append(','), histogram.getPercentile(99.0));
+            appendMicros(out.append(','), histogram.getMax());
+            out.append(',');
+            if(i == PHASE_FRAME)
+                out.append(mFramesOverBudget);
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Method to write nanoseconds as microseconds with one decimal place, without going through a float
+     */
+    public static void appendMicros(StringBuilder out, long nanos) {
+        long tenths = (nanos + 50L) / 100L;
+        out.append(tenths / 10L).append('.').append((char) ('0' + tenths % 10L));
+    }
+
+    public TimingHistogram getPhase(int phase) {
+        return mPhases[phase];
+    }
+
+    public TimingHistogram getRenderCalls() {
+        return mRenderCalls;
+    }
+
+    public TimingHistogram getTextureSwitches() {
+        return mTextureSwitches;
+    }
+
+    public long getFramesOverBudget() {
+        return mFramesOverBudget;
+    }
+}
@@ -0,0 +1,117 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+import com.badlogic.gdx.utils.StringBuilder;
+
+/**
+ * A single line of HUD text, optionally bound to a number ("Castle Strength: " + health)
+ *
+ * The text is only rebuilt when the bound value actually changes. Numbers are written straight into a
+ * reusable char buffer and the glyphs are laid out once into a BitmapFontCache, so drawing an unchanged
+ * label every frame allocates nothing and skips the font layout entirely
+ */
+public class HudLabel {
+    private BitmapFontCache mCache;
+    private StringBuilder mText;
+    private String mPrefix;
+    private String mSuffix;
+    private float mX;
+    private float mY;
+
+    // Dirty tracking for the bound value
+    private boolean mHasValue;
+    private boolean mDecimal;
+    private long mValue;
+
+    /**
+     * Constructor for a label showing a prefix, a bound number, then a suffix
+     *
+     * @param font: The font to lay the label out with
+     * @param prefix: The text before the number
+     * @param suffix: The text after the number
+     * @param x: The x coordinate of the label
+     * @param y: The y coordinate of the label's top line, same as BitmapFont.draw
+     */
+    public HudLabel(BitmapFont font, String prefix, String suffix, float x, float y) {
+        mCache = new BitmapFontCache(font, font.usesIntegerPositions());
+        mText = new StringBuilder(prefix.length() + suffix.length() + 16);
+        mPrefix = prefix;
+        mSuffix = suffix;
+        mX = x;
+        mY = y;
+        mHasValue = false;
+    }
+
+    /**
+     * Constructor for a label whose text never changes, laid out once right away
+     *
+     * @param font: The font to lay the label out with
+     * @param text: The text of the label
+     * @param x: The x coordinate of the label
+     * @param y: The y coordinate of the label's top line, same as BitmapFont.draw
+     */
+    public HudLabel(BitmapFont font, String text, float x, float y) {
+        this(font, text, "", x, y);
+        mText.append(text);
+        mCache.setText(mText, mX, mY);
+    }
+
+    /**
+     * Method to bind a whole number to the label, which is only reformatted if it changed
+     *
+     * @param value: The number to show
+     */
+    public void setValue(int value) {
+        if(mHasValue && !mDecimal && mValue == value)
+            return;
+        mHasValue = true;
+        mDecimal = false;
+        mValue = value;
+
+        mText.setLength(0);
+        mText.append(mPrefix);
+        mText.append(value);
+        mText.append(mSuffix);
+        mCache.setText(mText, mX, mY);
+    }
+
+    /**
+     * Method to bind a number to the label, shown with one decimal place ("1000.0") and only reformatted if it changed
+     *
+     * @param value: The number to show
+     */
+    public void setValue(float value) {
+        long tenths = Math.round(value * 10.0);
+        if(mHasValue && mDecimal && mValue == tenths)
+            return;
+        mHasValue = true;
+        mDecimal = true;
+        mValue = tenths;
+
+        mText.setLength(0);
+        mText.append(mPrefix);
+        if(tenths < 0) {
+            mText.append('-');
+            tenths = -tenths;
+        }
+        mText.append(tenths / 10);
+        mText.append('.');
+        mText.append((char) ('0' + tenths % 10));
+        mText.append(mSuffix);
+        mCache.setText(mText, mX, mY);
+    }
+
+    /**
+     * Method to queue the cached glyphs on the text layer, no layout work is done here
+     *
+     * @param queue: The frame's render queue
+     */
+    public void draw(RenderQueue queue) {
+        queue.add(RenderQueue.LAYER_TEXT, mCache);
+    }
+
+    public CharSequence getText() {
+        return mText;
+    }
+}
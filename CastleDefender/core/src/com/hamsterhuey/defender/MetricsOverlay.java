@@ -0,0 +1,80 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+
+/**
+ * On-screen table of the p50 / p99 time of every phase in a FrameMetrics, plus the frames over budget
+ * and the render queue's render calls and texture switches in the last frame
+ *
+ * The table is only laid out again every REFRESH_SECONDS, so reading it doesn't cost a font layout every frame
+ * and the numbers stay still long enough to be read
+ */
+public class MetricsOverlay {
+    private static final float REFRESH_SECONDS = 0.5f;
+
+    private FrameMetrics mMetrics;
+    private RenderQueue mQueue;
+    private BitmapFontCache mCache;
+    private StringBuilder mText;
+    private float mX;
+    private float mY;
+    private float mSinceRefresh;
+
+    /**
+     * Constructor for an overlay showing a metrics registry
+     *
+     * @param metrics: The registry to show
+     * @param queue: The render queue whose draw counts are shown
+     * @param font: The font to lay the table out with
+     * @param x: The x coordinate of the table
+     * @param y: The y coordinate of the table's top line, same as BitmapFont.draw
+     */
+    public MetricsOverlay(FrameMetrics metrics, RenderQueue queue, BitmapFont font, float x, float y) {
+        mMetrics = metrics;
+        mQueue = queue;
+        mCache = new BitmapFontCache(font, font.usesIntegerPositions());
+        mText = new StringBuilder(512);
+        mX = x;
+        mY = y;
+        mSinceRefresh = REFRESH_SECONDS; // Lay the table out on the first update
+    }
+
+    /**
+     * Method to refresh the table if it is due
+     *
+     * @param deltaTime: The time since the last update
+     */
+    public void update(float deltaTime) {
+        mSinceRefresh += deltaTime;
+        if(mSinceRefresh < REFRESH_SECONDS)
+            return;
+        mSinceRefresh = 0f;
+
+        mText.setLength(0);
+        mText.append("phase: p50 / p99 us\n");
+        for(int i = 0; i < FrameMetrics.PHASE_COUNT; i++) {
+            TimingHistogram histogram = mMetrics.getPhase(i);
+            mText.append(FrameMetrics.PHASE_NAMES[i]).append(": ");
+            FrameMetrics.appendMicros(mText, histogram.getPercentile(50.0));
+            mText.append(" / ");
+            FrameMetrics.appendMicros(mText, histogram.getPercentile(99.0));
+            mText.append('\n');
+        }
+        mText.append("over budget: ").append(mMetrics.getFramesOverBudget())
+                .append(" of ").append(mMetrics.getPhase(FrameMetrics.PHASE_FRAME).getCount()).append('\n');
+        mText.append("render calls: ").append(mQueue.getRenderCalls())
+                .append(", texture switches: ").append(mQueue.getTextureSwitches())
+                .append(mQueue.isSorting() ? " (sorted)" : " (unsorted)");
+        mCache.setText(mText, mX, mY);
+    }
+
+    /**
+     * Method to queue the table as it was last laid out, above everything else
+     *
+     * @param queue: The frame's render queue
+     */
+    public void draw(RenderQueue queue) {
+        queue.add(RenderQueue.LAYER_OVERLAY, mCache);
+    }
+}
@@ -0,0 +1,118 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+
+import java.util.Arrays;
+
+/**
+ * Regions laid out once into SpriteBatch's own vertex format, the image counterpart of a BitmapFontCache
+ *
+ * Every quad is kept as the 20 floats the batch would have built for it, so drawing the whole cache is a single
+ * copy of the array into the batch however many quads it holds. All the regions have to be on one texture,
+ * which the game's atlas already guarantees for anything drawn together
+ */
+public class QuadCache {
+    private static final int QUAD_SIZE = 20; // 4 corners of x, y, color, u, v
+
+    private float[] mVertices;
+    private int mLength;
+    private Texture mTexture;
+    private float mColor;
+
+    /**
+     * Constructor for an empty cache
+     *
+     * @param capacity: The number of quads to make room for up front, it grows if more are added
+     */
+    public QuadCache(int capacity) {
+        mVertices = new float[Math.max(capacity, 1) * QUAD_SIZE];
+        mLength = 0;
+        mTexture = null;
+        mColor = Color.WHITE.toFloatBits();
+    }
+
+    /**
+     * Method to drop every quad, the array is kept for the next layout
+     */
+    public void clear() {
+        mLength = 0;
+        mTexture = null;
+    }
+
+    /**
+     * Method to lay out a region stretched to a size, the same as SpriteBatch.draw with a white batch color
+     *
+     * @param region: The region, on the same texture as every other region in the cache
+     * @param x: The x coordinate of the region's bottom left corner
+     * @param y: The y coordinate of the region's bottom left corner
+     * @param width: The width to draw the region at
+     * @param height: The height to draw the region at
+     */
+    public void add(TextureRegion region, float x, float y, float width, float height) {
+        if(mTexture == null)
+            mTexture = region.getTexture();
+        else if(mTexture != region.getTexture())
+            throw new IllegalArgumentException("Every region in a QuadCache has to be on the same texture");
+        if(mLength + QUAD_SIZE > mVertices.length)
+            mVertices = Arrays.copyOf(mVertices, mVertices.length * 2);
+
+        float x2 = x + width;
+        float y2 = y + height;
+        float u = region.getU();
+        float v = region.getV2();
+        float u2 = region.getU2();
+        float v2 = region.getV();
+
+        // Corners in SpriteBatch's order: bottom left, top left, top right, bottom right
+        float[] vertices = mVertices;
+        int i = mLength;
+        vertices[i++] = x;
+        vertices[i++] = y;
+        vertices[i++] = mColor;
+        vertices[i++] = u;
+        vertices[i++] = v;
+
+        vertices[i++] = x;
+        vertices[i++] = y2;
+        vertices[i++] = mColor;
+        vertices[i++] = u;
+        vertices[i++] = v2;
+
+        vertices[i++] = x2;
+        vertices[i++] = y2;
+        vertices[i++] = mColor;
+        vertices[i++] = u2;
+        vertices[i++] = v2;
+
+        vertices[i++] = x2;
+        vertices[i++] = y;
+        vertices[i++] = mColor;
+        vertices[i++] = u2;
+        vertices[i++] = v;
+        mLength = i;
+    }
+
+    /**
+     * Method to draw every quad, the batch must have been begun
+     *
+     * @param batch: The batch to draw with
+     */
+    public void draw(Batch batch) {
+        if(mLength > 0)
+            batch.draw(mTexture, mVertices, 0, mLength);
+    }
+
+    /**
+     * @return texture: The texture of the regions in the cache, or null if it is empty
+     */
+    public Texture getTexture() {
+        return mTexture;
+    }
+
+    public int getQuadCount() {
+        return mLength / QUAD_SIZE;
+    }
+}
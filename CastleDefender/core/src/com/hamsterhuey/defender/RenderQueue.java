@@ -0,0 +1,286 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.BitmapFontCache;
+import com.badlogic.gdx.graphics.g2d.SpriteBatch;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+import java.util.Arrays;
+
+/**
+ * Collects a frame's draws and submits them to a SpriteBatch in one pass, ordered by layer, then texture, then depth
+ *
+ * The batch flushes whenever the texture changes, so drawing in code order pays a flush for every switch between
+ * sheets and the font. Sorting puts everything on one texture next to each other within a layer instead.
+ * Each command's sort key and its index are packed into a single long, so a frame is sorted with one primitive
+ * Arrays.sort and nothing is allocated once the arrays have grown to the busiest frame
+ */
+public class RenderQueue {
+    // Public constants for the layers, drawn in this order regardless of texture
+    public static final int LAYER_BACKGROUND = 0;
+    public static final int LAYER_ATTACKERS = 1;
+    public static final int LAYER_BUTTONS = 2;
+    public static final int LAYER_TEXT = 3;     // Labels and button text, above every button image
+    public static final int LAYER_OVERLAY = 4;
+
+    public static final int MAX_DEPTH = (1 << 20) - 1;
+
+    // Kinds of command
+    private static final int KIND_REGION = 0;
+    private static final int KIND_CACHE = 1;
+    private static final int KIND_TEXT = 2;
+    private static final int KIND_QUADS = 3;
+
+    // Key layout, high to low: 8 bits layer, 12 bits texture id, 20 bits depth, 24 bits command index
+    private static final int INDEX_BITS = 24;
+    private static final int DEPTH_SHIFT = INDEX_BITS;
+    private static final int TEXTURE_SHIFT = DEPTH_SHIFT + 20;
+    private static final int LAYER_SHIFT = TEXTURE_SHIFT + 12;
+    private static final int MAX_TEXTURE_ID = (1 << 12) - 1;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1L;
+
+    private long[] mKeys;
+    private int[] mKinds;
+    private Object[] mObjects;        // The region, font cache, font or quad cache of each command
+    private CharSequence[] mTexts;
+    private float[] mX;
+    private float[] mY;
+    private float[] mWidth;
+    private float[] mHeight;
+    private int mCount;
+
+    private ObjectIntMap<Texture> mTextureIds; // Small ids handed out in the order textures are first seen
+    private boolean mSorting;
+
+    // Counts from the last submit
+    private int mTextureSwitches;
+    private int mRenderCalls;
+
+    /**
+     * Constructor for a queue sized for a typical frame, it grows if a frame draws more
+     *
+     * @param capacity: The number of commands to make room for up front
+     */
+    public RenderQueue(int capacity) {
+        capacity = Math.max(capacity, 16);
+        mKeys = new long[capacity];
+        mKinds = new int[capacity];
+        mObjects = new Object[capacity];
+        mTexts = new CharSequence[capacity];
+        mX = new float[capacity];
+        mY = new float[capacity];
+        mWidth = new float[capacity];
+        mHeight = new float[capacity];
+        mCount = 0;
+        mTextureIds = new ObjectIntMap<Texture>();
+        mSorting = true;
+    }
+
+    /**
+     * Method to queue a region at its own size
+     *
+     * @param layer: One of the LAYER_ constants
+     * @param depth: Order within the layer and texture, smaller depths are drawn first, clamped to [0, MAX_DEPTH]
+     * @param region: The region to draw
+     * @param x: The x coordinate of the region's bottom left corner
+     * @param y: The y coordinate of the region's bottom left corner
+     */
+    public void add(int layer, int depth, TextureRegion region, float x, float y) {
+        add(layer, depth, region, x, y, region.getRegionWidth(), region.getRegionHeight());
+    }
+
+    /**
+     * Method to queue a region stretched to a size
+     *
+     * @param width: The width to draw the region at
+     * @param height: The height to draw the region at
+     */
+    public void add(int layer, int depth, TextureRegion region, float x, float y, float width, float height) {
+        int i = push(KIND_REGION, layer, depth, region.getTexture(), region);
+        mX[i] = x;
+        mY[i] = y;
+        mWidth[i] = width;
+        mHeight[i] = height;
+    }
+
+    /**
+     * Method to queue text that was already laid out into a font cache
+     *
+     * @param layer: One of the LAYER_ constants
+     * @param cache: The cache to draw
+     */
+    public void add(int layer, BitmapFontCache cache) {
+        push(KIND_CACHE, layer, 0, cache.getFont().getRegion().getTexture(), cache);
+    }
+
+    /**
+     * Method to queue regions that were already laid out into a quad cache, an empty cache is skipped
+     *
+     * @param layer: One of the LAYER_ constants
+     * @param cache: The cache to draw
+     */
+    public void add(int layer, QuadCache cache) {
+        if(cache.getQuadCount() > 0)
+            push(KIND_QUADS, layer, 0, cache.getTexture(), cache);
+    }
+
+    /**
+     * Method to queue text that is laid out when it is drawn
+     *
+     * @param layer: One of the LAYER_ constants
+     * @param font: The font to draw with
+     * @param text: The text, which must not change before the queue is submitted
+     * @param x: The x coordinate of the text
+     * @param y: The y coordinate of the text's top line, same as BitmapFont.draw
+     */
+    public void add(int layer, BitmapFont font, CharSequence text, float x, float y) {
+        int i = push(KIND_TEXT, layer, 0, font.getRegion().getTexture(), font);
+        mTexts[i] = text;
+        mX[i] = x;
+        mY[i] = y;
+    }
+
+    /**
+     * Method to put the queued commands in draw order
+     * Since the command index is the lowest part of the key, commands with equal keys keep the order they were added in
+     */
+    public void sort() {
+        if(mSorting)
+            Arrays.sort(mKeys, 0, mCount);
+    }
+
+    /**
+     * Method to draw every queued command in one begin / end pass and empty the queue
+     * The batch's projection matrix must already be set
+     *
+     * @param batch: The batch to draw with, which must not have been begun
+     */
+    public void submit(SpriteBatch batch) {
+        sort();
+
+        Texture lastTexture = null;
+        mTextureSwitches = 0;
+        batch.begin();
+        for(int k = 0; k < mCount; k++) {
+            int i = (int) (mKeys[k] & INDEX_MASK);
+            Object object = mObjects[i];
+            Texture texture;
+            switch(mKinds[i]) {
+                case KIND_REGION:
+                    TextureRegion region = (TextureRegion) object;
+                    texture = region.getTexture();
+                    batch.draw(region, mX[i], mY[i], mWidth[i], mHeight[i]);
+                    break;
+                case KIND_CACHE:
+                    BitmapFontCache cache = (BitmapFontCache) object;
+                    texture = cache.getFont().getRegion().getTexture();
+                    cache.draw(batch);
+                    break;
+                case KIND_QUADS:
+                    QuadCache quads = (QuadCache) object;
+                    texture = quads.getTexture();
+                    quads.draw(batch);
+                    break;
+                default:
+                    BitmapFont font = (BitmapFont) object;
+                    texture = font.getRegion().getTexture();
+                    font.draw(batch, mTexts[i], mX[i], mY[i]);
+                    break;
+            }
+            if(texture != lastTexture) {
+                if(lastTexture != null)
+                    mTextureSwitches++;
+                lastTexture = texture;
+            }
+        }
+        batch.end();
+        mRenderCalls = batch.renderCalls;
+
+        clear();
+    }
+
+    /**
+     * Method to drop every queued command without drawing it
+     */
+    public void clear() {
+        // Let go of the references so the queue doesn't keep anything alive between frames
+        Arrays.fill(mObjects, 0, mCount, null);
+        Arrays.fill(mTexts, 0, mCount, null);
+        mCount = 0;
+    }
+
+    // Adds a command's key and kind, growing the arrays if needed, and returns its index
+    private int push(int kind, int layer, int depth, Texture texture, Object object) {
+        if(mCount == mKeys.length)
+            grow();
+        int i = mCount++;
+
+        if(depth < 0)
+            depth = 0;
+        else if(depth > MAX_DEPTH)
+            depth = MAX_DEPTH;
+
+        mKeys[i] = ((long) layer << LAYER_SHIFT) | ((long) textureId(texture) << TEXTURE_SHIFT)
+                | ((long) depth << DEPTH_SHIFT) | i;
+        mKinds[i] = kind;
+        mObjects[i] = object;
+        return i;
+    }
+
+    // Textures past the id range share the last id, which only costs sorting quality, never correctness
+    private int textureId(Texture texture) {
+        if(texture == null)
+            return 0;
+        int id = mTextureIds.get(texture, -1);
+        if(id < 0) {
+            id = Math.min(mTextureIds.size + 1, MAX_TEXTURE_ID);
+            mTextureIds.put(texture, id);
+        }
+        return id;
+    }
+
+    private void grow() {
+        int capacity = mKeys.length * 2;
+        if(capacity > INDEX_MASK + 1L)
+            throw new IllegalStateException("Render queue is limited to " + (INDEX_MASK + 1L) + " commands per frame");
+        mKeys = Arrays.copyOf(mKeys, capacity);
+        mKinds = Arrays.copyOf(mKinds, capacity);
+        mObjects = Arrays.copyOf(mObjects, capacity);
+        mTexts = Arrays.copyOf(mTexts, capacity);
+        mX = Arrays.copyOf(mX, capacity);
+        mY = Arrays.copyOf(mY, capacity);
+        mWidth = Arrays.copyOf(mWidth, capacity);
+        mHeight = Arrays.copyOf(mHeight, capacity);
+    }
+
+    /**
+     * Method to turn sorting off, so commands are drawn in the order they were added - for measuring what sorting saves
+     */
+    public void setSorting(boolean sorting) {
+        mSorting = sorting;
+    }
+
+    public boolean isSorting() {
+        return mSorting;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return switches: The number of times the texture changed between commands during the last submit
+     */
+    public int getTextureSwitches() {
+        return mTextureSwitches;
+    }
+
+    /**
+     * @return calls: The batch's render calls (one per flush) during the last submit
+     */
+    public int getRenderCalls() {
+        return mRenderCalls;
+    }
+}
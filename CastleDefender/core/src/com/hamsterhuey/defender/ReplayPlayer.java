@@ -0,0 +1,204 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.SerializationException;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Runs a session written by ReplayRecorder again, as fast as the CPU allows, and checks it ended in the same state
+ *
+ * The simulation is rebuilt from the recorded seed and archetypes, and every recorded event is handed to it before the tick it
+ * happened before. Loaded games come from the recording instead of the device's save, so nothing outside the
+ * file can change the outcome. The file is read as a stream, events are never all held in memory
+ */
+public class ReplayPlayer implements SaveStore {
+    private InputStream mIn;
+    private DefenderSimulation mSimulation;
+    private long mTick;
+    private boolean mComplete;
+    private long mExpectedHash;
+
+    // A restore read from the recording, waiting for the simulation to ask for it
+    private boolean mRestorePending;
+    private byte[] mRestoreSnapshot; // Null if nothing was saved when the game was recorded
+
+    /**
+     * Constructor for a player, reads the header and builds the simulation right away
+     *
+     * @param in: The recording, closed once played
+     * @throws IOException: If the header can't be read or isn't a recording
+     */
+    public ReplayPlayer(InputStream in) throws IOException {
+        mIn = new BufferedInputStream(in);
+        if(readInt() != ReplayRecorder.MAGIC)
+            throw new IOException("Not a replay file");
+        long version = readVarint();
+        if(version != ReplayRecorder.VERSION)
+            throw new IOException("Unsupported replay version " + version);
+        long seed = readLong();
+        byte[] archetypes = readBytes();
+        if(archetypes == null)
+            throw new IOException("Replay has no archetypes");
+        try {
+            mSimulation = new DefenderSimulation(this, seed, ArchetypeRegistry.parse(new String(archetypes, "UTF-8")));
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Replay has archetypes the game can't use: " + e.getMessage());
+        } catch (SerializationException e) {
+            throw new IOException("Replay has archetypes the game can't read: " + e.getMessage());
+        }
+        mTick = 0L;
+        mComplete = false;
+    }
+
+    /**
+     * Method that plays the whole recording
+     * A recording cut short (the app was killed) plays up to its last event and is left incomplete
+     *
+     * @throws IOException: If the recording is corrupt
+     */
+    public void play() throws IOException {
+        try {
+            while(true) {
+                long header;
+                try {
+                    header = readVarint();
+                } catch (EOFException e) {
+                    return; // No end event, there is no hash to check against
+                }
+                long eventTick = mTick + (header >>> ReplayRecorder.EVENT_BITS);
+                while(mTick < eventTick) {
+                    mSimulation.step(DefenderSimulation.TICK_SECONDS);
+                    mTick++;
+                }
+
+                switch ((int) (header & ((1 << ReplayRecorder.EVENT_BITS) - 1))) {
+                    case ReplayRecorder.EVENT_TAP:
+                        float x = Float.intBitsToFloat(readInt());
+                        float y = Float.intBitsToFloat(readInt());
+                        mSimulation.tap(x, y);
+                        break;
+                    case ReplayRecorder.EVENT_PAUSE:
+                        mSimulation.pause();
+                        break;
+                    case ReplayRecorder.EVENT_RESUME:
+                        mSimulation.resume();
+                        break;
+                    case ReplayRecorder.EVENT_RESTORE:
+                        mRestoreSnapshot = readBytes();
+                        mRestorePending = true;
+                        break;
+                    case ReplayRecorder.EVENT_ENDLESS_HORDE:
+                        mSimulation.setEndlessHorde(read() != 0);
+                        break;
+                    case ReplayRecorder.EVENT_WAVE_SCRIPT:
+                        byte[] source = readBytes();
+                        mSimulation.setWaveScript(source != null ? WaveScript.parse(new String(source, "UTF-8"),
+                                mSimulation.getArchetypeRegistry()) : null);
+                        break;
+                    case ReplayRecorder.EVENT_END:
+                        mExpectedHash = readLong();
+                        mComplete = true;
+                        return;
+                    default:
+                        throw new IOException("Unknown replay event at tick " + mTick);
+                }
+            }
+        } finally {
+            mIn.close();
+        }
+    }
+
+    /**
+     * @return verified: True if the recording was complete and the replayed state matches the recorded hash
+     */
+    public boolean isVerified() {
+        return mComplete && mExpectedHash == mSimulation.getStateHash();
+    }
+
+    public boolean isComplete() {
+        return mComplete;
+    }
+
+    public long getExpectedHash() {
+        return mExpectedHash;
+    }
+
+    public long getTick() {
+        return mTick;
+    }
+
+    public DefenderSimulation getSimulation() {
+        return mSimulation;
+    }
+
+    // Saving does nothing during a replay, the recording already holds what happened next
+    @Override
+    public void save(byte[] snapshot) {
+    }
+
+    // Checkpoints were merged into the snapshot the recording holds already
+    @Override
+    public boolean checkpoint(int event, int roundNumber, float castleHealth, float totalScore) {
+        return false;
+    }
+
+    @Override
+    public byte[] load() {
+        if(!mRestorePending)
+            throw new IllegalStateException("Replay loaded a game at tick " + mTick + " that was never recorded");
+        mRestorePending = false;
+        byte[] snapshot = mRestoreSnapshot;
+        mRestoreSnapshot = null;
+        return snapshot;
+    }
+
+    // A length then that many bytes, as a snapshot or script is written - null for a length of 0
+    private byte[] readBytes() throws IOException {
+        long length = readVarint();
+        if(length == 0L)
+            return null;
+        if(length > Integer.MAX_VALUE)
+            throw new IOException("Malformed length at tick " + mTick);
+        byte[] snapshot = new byte[(int) length];
+        int read = 0;
+        while(read < snapshot.length) {
+            int n = mIn.read(snapshot, read, snapshot.length - read);
+            if(n < 0)
+                throw new EOFException();
+            read += n;
+        }
+        return snapshot;
+    }
+
+    private long readVarint() throws IOException {
+        long value = 0L;
+        int shift = 0;
+        int b;
+        do {
+            if(shift > 63)
+                throw new IOException("Malformed varint at tick " + mTick);
+            b = read();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while((b & 0x80) != 0);
+        return value;
+    }
+
+    private int readInt() throws IOException {
+        return (read() << 24) | (read() << 16) | (read() << 8) | read();
+    }
+
+    private long readLong() throws IOException {
+        return ((long) readInt() << 32) | (readInt() & 0xFFFFFFFFL);
+    }
+
+    private int read() throws IOException {
+        int b = mIn.read();
+        if(b < 0)
+            throw new EOFException();
+        return b;
+    }
+}
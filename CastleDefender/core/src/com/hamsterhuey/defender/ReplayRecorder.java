@@ -0,0 +1,224 @@
+package com.hamsterhuey.defender;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes everything from outside the simulation that changes how a session plays out, so ReplayPlayer can run it again
+ *
+ * With a seeded simulation the only such things are taps, the app being paused or resumed, a game loaded
+ * from a SaveStore, the endless horde switch and the wave script. Each is written as it happens, tagged with the tick it happened
+ * before, so the file is streamed through a small buffer and never held in memory.
+ *
+ * File layout, all numbers big-endian:
+ *   "CDRP", version (varint), seed (8 bytes), the archetypes' UTF-8 length (varint), their UTF-8 bytes
+ *   events: varint((ticks since the previous event << EVENT_BITS) | event type), then the event's payload
+ *     EVENT_TAP:     x, y (4 byte floats)
+ *     EVENT_PAUSE / EVENT_RESUME: nothing
+ *     EVENT_RESTORE: snapshot length (varint, 0 if nothing was saved), the snapshot's bytes
+ *     EVENT_ENDLESS_HORDE: 1 or 0 (1 byte)
+ *     EVENT_WAVE_SCRIPT: the script's UTF-8 length (varint, 0 for no script), its UTF-8 bytes
+ *     EVENT_END:     state hash (8 bytes), the tick count is the sum of the deltas
+ */
+public class ReplayRecorder {
+    public static final int MAGIC = 0x43445250; // "CDRP"
+    public static final int VERSION = 8; // 8: spawns past the per-tick cap wait in the ready list, which shifts spawn timing
+
+    // Event types, in the low EVENT_BITS of each event's header
+    public static final int EVENT_TAP = 0;
+    public static final int EVENT_PAUSE = 1;
+    public static final int EVENT_RESUME = 2;
+    public static final int EVENT_RESTORE = 3;
+    public static final int EVENT_END = 4;
+    public static final int EVENT_ENDLESS_HORDE = 5;
+    public static final int EVENT_WAVE_SCRIPT = 6;
+    public static final int EVENT_BITS = 3;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private OutputStream mOut;
+    private long mLastTick;
+    private long mBytesWritten;
+    private IOException mFailure; // Recording stops at the first failure, the game carries on
+
+    /**
+     * Constructor for a recorder, writes the header right away
+     *
+     * @param out: The stream to write to, closed by finish
+     * @param seed: The seed the simulation's random numbers were made from
+     * @param archetypes: The text of the simulation's ArchetypeRegistry, the whole of it as the asset may change later
+     */
+    public ReplayRecorder(OutputStream out, long seed, String archetypes) {
+        mOut = new BufferedOutputStream(out, BUFFER_SIZE);
+        mLastTick = 0L;
+        mBytesWritten = 0L;
+        try {
+            writeInt(MAGIC);
+            writeVarint(VERSION);
+            writeLong(seed);
+            writeString(archetypes);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void recordTap(long tick, float x, float y) {
+        try {
+            writeEvent(tick, EVENT_TAP);
+            writeInt(Float.floatToIntBits(x));
+            writeInt(Float.floatToIntBits(y));
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the app going to the background, and flushes - the app may be killed before it comes back
+     */
+    public void recordPause(long tick) {
+        try {
+            writeEvent(tick, EVENT_PAUSE);
+            if(mOut != null)
+                mOut.flush();
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void recordResume(long tick) {
+        try {
+            writeEvent(tick, EVENT_RESUME);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records a saved game being loaded, the whole snapshot goes into the recording as the save may change later
+     *
+     * @param snapshot: The snapshot the SaveStore handed back, or null if there was none
+     */
+    public void recordRestore(long tick, byte[] snapshot) {
+        try {
+            writeEvent(tick, EVENT_RESTORE);
+            if(snapshot == null) {
+                writeVarint(0);
+            } else {
+                writeVarint(snapshot.length);
+                if(mOut != null)
+                    mOut.write(snapshot);
+                mBytesWritten += snapshot.length;
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    public void recordEndlessHorde(long tick, boolean endless) {
+        try {
+            writeEvent(tick, EVENT_ENDLESS_HORDE);
+            write(endless ? 1 : 0);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Records the wave script being set, the whole script goes into the recording as the asset may change later
+     *
+     * @param source: The script's text, or null if the waves were taken away
+     */
+    public void recordWaveScript(long tick, String source) {
+        try {
+            writeEvent(tick, EVENT_WAVE_SCRIPT);
+            writeString(source);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Method that ends the recording with the tick count and state hash to verify against, and closes the stream
+     *
+     * @param tick: The number of ticks the simulation ran
+     * @param stateHash: DefenderSimulation.getStateHash after the last tick
+     */
+    public void finish(long tick, long stateHash) {
+        try {
+            writeEvent(tick, EVENT_END);
+            writeLong(stateHash);
+            if(mOut != null)
+                mOut.close();
+        } catch (IOException e) {
+            fail(e);
+        }
+        mOut = null;
+    }
+
+    /**
+     * @return failure: The error that stopped the recording, or null if it is fine so far
+     */
+    public IOException getFailure() {
+        return mFailure;
+    }
+
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    private void writeEvent(long tick, int type) throws IOException {
+        long delta = tick - mLastTick;
+        mLastTick = tick;
+        writeVarint((delta << EVENT_BITS) | type);
+    }
+
+    // The UTF-8 length then the UTF-8 bytes, a length of 0 for null
+    private void writeString(String text) throws IOException {
+        byte[] bytes = text != null ? text.getBytes("UTF-8") : new byte[0];
+        writeVarint(bytes.length);
+        if(mOut != null)
+            mOut.write(bytes);
+        mBytesWritten += bytes.length;
+    }
+
+    // Unsigned LEB128: seven bits per byte, low bits first, the high bit set on every byte but the last
+    private void writeVarint(long value) throws IOException {
+        while((value & ~0x7FL) != 0L) {
+            write((int) (value & 0x7FL) | 0x80);
+            value >>>= 7;
+        }
+        write((int) value);
+    }
+
+    private void writeInt(int value) throws IOException {
+        write(value >>> 24);
+        write(value >>> 16);
+        write(value >>> 8);
+        write(value);
+    }
+
+    private void writeLong(long value) throws IOException {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void write(int b) throws IOException {
+        if(mOut == null)
+            return;
+        mOut.write(b);
+        mBytesWritten++;
+    }
+
+    private void fail(IOException e) {
+        if(mFailure == null)
+            mFailure = e;
+        try {
+            if(mOut != null)
+                mOut.close();
+        } catch (IOException ignored) {
+            // Already failing, the first error is the one worth reporting
+        }
+        mOut = null;
+    }
+}
@@ -0,0 +1,222 @@
+package com.hamsterhuey.defender;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of the game's progress between saved snapshots, so a killed app loses seconds rather than rounds
+ *
+ * The journal is a file of a fixed size mapped into memory, split into two halves. Appending a record is a copy into
+ * the mapping - no system call, so it is cheap enough to do on the simulation thread - and the pages belong to the
+ * OS, so the record survives the process being killed the moment after. Every record carries the progress as it
+ * stands (not a difference), so the last valid record is all recovery needs.
+ *
+ * Each half starts with a header naming the snapshot it follows (by checksum) and a generation number. When a
+ * snapshot is saved the journal starts over in the other half - that is the compaction - and the older half is
+ * kept until the next one, in case the new snapshot never reaches the disk.
+ *
+ * Half layout, all numbers big-endian:
+ *   header: "CDJN", version, generation (8 bytes), snapshot checksum, CRC32 of the header so far
+ *   records: payload length, payload, CRC32 of the payload - a length of 0 (a never written record) ends the half
+ *   payload: event, round, castle health, total score
+ */
+public class SaveJournal {
+    private static final int MAGIC = 0x43444A4E; // "CDJN"
+    private static final int VERSION = 1;
+    private static final int HALF_SIZE = 4096;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 4 + 4;
+    private static final int PAYLOAD_SIZE = 1 + 4 + 4 + 4;
+    private static final int RECORD_SIZE = 4 + PAYLOAD_SIZE + 4;
+    private static final int COMPACT_SIZE = HALF_SIZE * 3 / 4; // Past this the journal asks for a snapshot
+
+    private final MappedByteBuffer mMap;
+    private final CRC32 mCrc = new CRC32();
+
+    // Per-half state, indexed by half, found by the scan when opened and kept up to date by every append
+    private final long[] mGeneration = new long[2];
+    private final int[] mBaseChecksum = new int[2];
+    private final boolean[] mValid = new boolean[2];
+    private final int[] mEnd = new int[2];         // Offset of the next record within the half
+    private final int[] mLastRecord = new int[2];  // Offset of the last valid record within the half, or -1
+    private int mActive;
+
+    /**
+     * Constructor for a journal, makes the file if it doesn't exist and finds the last valid record in it
+     *
+     * @param file: The file to keep the journal in
+     * @throws IOException: If the file can't be made or mapped
+     */
+    public SaveJournal(File file) throws IOException {
+        File directory = file.getAbsoluteFile().getParentFile();
+        if(directory != null && !directory.isDirectory() && !directory.mkdirs())
+            throw new IOException("Couldn't make " + directory);
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            // The whole file is allocated up front, a new file reads as zeros - two halves with no valid header
+            if(raf.length() != 2 * HALF_SIZE)
+                raf.setLength(2 * HALF_SIZE);
+            mMap = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, 2 * HALF_SIZE);
+        } finally {
+            raf.close(); // The mapping stays valid after the file is closed
+        }
+
+        scan(0);
+        scan(1);
+        if(!mValid[0] && !mValid[1]) {
+            startHalf(0, 1L, 0);
+        } else {
+            mActive = (!mValid[1] || (mValid[0] && mGeneration[0] > mGeneration[1])) ? 0 : 1;
+        }
+    }
+
+    /**
+     * Method to add a record of the progress to the journal
+     *
+     * @param event: What happened, one of SaveStore's CHECKPOINT constants
+     * @param roundNumber: The round the game is on
+     * @param castleHealth: The castle's health
+     * @param totalScore: The total score
+     * @return compact: True once the journal is filling up and wants a snapshot saved, so it can start over
+     */
+    public boolean append(int event, int roundNumber, float castleHealth, float totalScore) {
+        int half = mActive;
+        int offset = mEnd[half];
+        // Never fills up - a snapshot is asked for long before, this only drops records if none ever comes
+        if(offset + RECORD_SIZE + 4 > HALF_SIZE)
+            return true;
+
+        int position = half * HALF_SIZE + offset;
+        mMap.position(position + 4);
+        mMap.put((byte) event);
+        mMap.putInt(roundNumber);
+        mMap.putFloat(castleHealth);
+        mMap.putFloat(totalScore);
+        mMap.putInt(payloadChecksum(position + 4));
+        // The next record's length is cleared before this one's is set, so the end of the half is always marked
+        mMap.putInt(position + RECORD_SIZE, 0);
+        mMap.putInt(position, PAYLOAD_SIZE);
+
+        mLastRecord[half] = offset;
+        mEnd[half] = offset + RECORD_SIZE;
+        return mEnd[half] > COMPACT_SIZE;
+    }
+
+    /**
+     * Method to start the journal over in the other half, called as a snapshot is saved
+     * The half being left is kept as it is, in case the snapshot is lost before it reaches the disk
+     *
+     * @param snapshotChecksum: The checksum of the snapshot the new half follows
+     */
+    public void compact(int snapshotChecksum) {
+        int half = 1 - mActive;
+        startHalf(half, mGeneration[mActive] + 1L, snapshotChecksum);
+        // Rare, and the header is what recovery depends on most, so it is worth making sure it reaches the disk
+        mMap.force();
+    }
+
+    /**
+     * Method to find the newest record that isn't already part of a snapshot
+     * If the snapshot the current half follows never made it to the disk, the older half's records count as well
+     *
+     * @param snapshotChecksum: The checksum of the snapshot on disk, or 0 if there is none
+     * @return offset: The record's position in the file, for the getters below, or -1 if the snapshot is up to date
+     */
+    public int findRecovery(int snapshotChecksum) {
+        int half = mActive;
+        if(mLastRecord[half] >= 0)
+            return half * HALF_SIZE + mLastRecord[half];
+        int older = 1 - half;
+        if(mBaseChecksum[half] != snapshotChecksum && mValid[older] && mLastRecord[older] >= 0)
+            return older * HALF_SIZE + mLastRecord[older];
+        return -1;
+    }
+
+    // Getters for a record found by findRecovery
+    public int getEvent(int record) {
+        return mMap.get(record + 4);
+    }
+
+    public int getRoundNumber(int record) {
+        return mMap.getInt(record + 5);
+    }
+
+    public float getCastleHealth(int record) {
+        return mMap.getFloat(record + 9);
+    }
+
+    public float getTotalScore(int record) {
+        return mMap.getFloat(record + 13);
+    }
+
+    /**
+     * Method to push everything appended so far to the disk, only needed to survive the device losing power
+     */
+    public void flush() {
+        mMap.force();
+    }
+
+    /**
+     * Method that checks a half's header and walks its records up to the first one that isn't intact
+     * A record torn by a crash fails its checksum, the next append writes over it
+     */
+    private void scan(int half) {
+        int base = half * HALF_SIZE;
+        mValid[half] = false;
+        mEnd[half] = HEADER_SIZE;
+        mLastRecord[half] = -1;
+        if(mMap.getInt(base) != MAGIC || mMap.getInt(base + 4) != VERSION
+                || mMap.getInt(base + HEADER_SIZE - 4) != checksum(base, HEADER_SIZE - 4))
+            return;
+        mValid[half] = true;
+        mGeneration[half] = mMap.getLong(base + 8);
+        mBaseChecksum[half] = mMap.getInt(base + 16);
+
+        int offset = HEADER_SIZE;
+        while(offset + RECORD_SIZE + 4 <= HALF_SIZE) {
+            int position = base + offset;
+            if(mMap.getInt(position) != PAYLOAD_SIZE
+                    || mMap.getInt(position + 4 + PAYLOAD_SIZE) != payloadChecksum(position + 4))
+                break;
+            mLastRecord[half] = offset;
+            offset += RECORD_SIZE;
+        }
+        mEnd[half] = offset;
+    }
+
+    // Writes a fresh header with no records after it and makes the half the one appended to
+    private void startHalf(int half, long generation, int snapshotChecksum) {
+        int base = half * HALF_SIZE;
+        // Invalidate the header first, a crash halfway leaves a half that is ignored rather than misread
+        mMap.putInt(base, 0);
+        mMap.putInt(base + HEADER_SIZE, 0);
+        mMap.putInt(base + 4, VERSION);
+        mMap.putLong(base + 8, generation);
+        mMap.putInt(base + 16, snapshotChecksum);
+        mMap.putInt(base, MAGIC);
+        mMap.putInt(base + HEADER_SIZE - 4, checksum(base, HEADER_SIZE - 4));
+
+        mValid[half] = true;
+        mGeneration[half] = generation;
+        mBaseChecksum[half] = snapshotChecksum;
+        mEnd[half] = HEADER_SIZE;
+        mLastRecord[half] = -1;
+        mActive = half;
+    }
+
+    private int payloadChecksum(int position) {
+        return checksum(position, PAYLOAD_SIZE);
+    }
+
+    private int checksum(int position, int length) {
+        mCrc.reset();
+        for(int i = 0; i < length; i++) {
+            mCrc.update(mMap.get(position + i));
+        }
+        return (int) mCrc.getValue();
+    }
+}
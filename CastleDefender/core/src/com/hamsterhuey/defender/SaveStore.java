@@ -0,0 +1,46 @@
+package com.hamsterhuey.defender;
+
+/**
+ * Interface for wherever the simulation keeps a saved game between sessions
+ *
+ * The simulation itself never touches Gdx.app or the file system, so the actual storage (a file on a device,
+ * nothing at all in a headless run) is handed to it through this interface. A saved game is a snapshot made by
+ * DefenderSimulation.createSnapshot, the store only ever moves its bytes around
+ *
+ * Between snapshots the simulation reports its progress as checkpoints, which a store may journal so that a game
+ * cut short can be continued from the last one (DefenderSimulation.continueFrom merges the two)
+ */
+public interface SaveStore {
+    // Constants for what a checkpoint was made for
+    int CHECKPOINT_ROUND_START = 0;
+    int CHECKPOINT_ROUND_OVER = 1;
+    int CHECKPOINT_REPAIR = 2;
+    int CHECKPOINT_CASTLE_HEALTH = 3; // Made at a bounded rate while a round is played
+    int CHECKPOINT_GAME_OVER = 4;
+
+    /**
+     * Method to persist a snapshot of the current game
+     * Called on the simulation's thread, so implementations should hand slow writes off rather than block a tick
+     *
+     * @param snapshot: The snapshot, owned by the store from here on
+     */
+    void save(byte[] snapshot);
+
+    /**
+     * Method to get the newest saved snapshot back, including one still being written
+     *
+     * @return snapshot: The snapshot, or null if nothing was saved
+     */
+    byte[] load();
+
+    /**
+     * Method to note the progress of the game since the last snapshot, called on the simulation's thread
+     *
+     * @param event: What the checkpoint was made for, one of the CHECKPOINT constants
+     * @param roundNumber: The round the game is on
+     * @param castleHealth: The castle's health
+     * @param totalScore: The total score, without the score of a round in progress
+     * @return compact: True if the store wants a new snapshot saved, so it can drop the checkpoints it holds
+     */
+    boolean checkpoint(int event, int roundNumber, float castleHealth, float totalScore);
+}
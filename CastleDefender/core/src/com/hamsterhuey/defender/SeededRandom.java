@@ -0,0 +1,65 @@
+package com.hamsterhuey.defender;
+
+import java.util.Random;
+
+/**
+ * java.util.Random whose 48 bit state can be read and put back, so a saved game carries on with the same numbers
+ *
+ * Random keeps its state private, but every number it hands out comes from next, so overriding next with the same
+ * linear congruential generator (the one Random's documentation specifies) gives exactly the numbers a plain
+ * Random with the same seed would, on any JVM or Android version
+ */
+public class SeededRandom extends Random {
+    private static final long serialVersionUID = 1L;
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // No initializer - Random's constructor calls setSeed before this class's fields would be initialized
+    private long mState;
+
+    public SeededRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public synchronized void setSeed(long seed) {
+        mState = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        mState = (mState * MULTIPLIER + ADDEND) & MASK;
+        return (int) (mState >>> (48 - bits));
+    }
+
+    /**
+     * @return state: The generator's state, which setState takes back to continue from this point
+     */
+    public long getState() {
+        return mState;
+    }
+
+    public void setState(long state) {
+        mState = state & MASK;
+    }
+
+    /**
+     * Method to split one seed into as many independent ones as needed, for running many games side by side
+     *
+     * Seeds next to each other give generators whose first numbers are close too, so each stream's seed is its
+     * position along a Weyl sequence put through the SplitMix64 finalizer, the way java.util.SplittableRandom
+     * makes its splits. The same seed and stream always give the same result, whichever thread asks and when
+     *
+     * @param seed: The seed shared by every stream
+     * @param stream: The number of the stream, from 0
+     * @return seed: The stream's own seed, for a SeededRandom or a DefenderSimulation
+     */
+    public static long streamSeed(long seed, long stream) {
+        long z = seed + (stream + 1) * GOLDEN_GAMMA;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
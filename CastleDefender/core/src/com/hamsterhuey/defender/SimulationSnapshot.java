@@ -0,0 +1,180 @@
+package com.hamsterhuey.defender;
+
+/**
+ * Copy of everything the renderer needs from one simulation tick - HUD values, button visibility and
+ * the position and animation of every living attacker
+ *
+ * The simulation thread fills a snapshot after each tick and the render thread draws from it, so the renderer
+ * never reads the simulation while it is changing. Snapshots are reused through a SnapshotBuffer: the arrays
+ * only grow with the horde, nothing is allocated once they are big enough
+ */
+public class SimulationSnapshot {
+    // Tick this snapshot was taken after, and when it was published
+    private long mTick;
+    private long mPublishNanos;
+
+    // HUD values
+    private int mGameState;
+    private int mRoundNumber;
+    private int mCastleDamageStage;
+    private float mCastleHealth;
+    private float mRoundScore;
+    private float mTotalScore;
+    private boolean mPaused;
+    private boolean mRoundSaved;
+    private int mVisibleButtons; // Bit i is set if button i is visible
+
+    // Living attackers, packed into the first mAttackerCount entries
+    private int mAttackerCount;
+    private boolean mAttackersMoved; // Whether the tick walked the attackers, so there is anything to blend
+    private int[] mArchetype;
+    private int[] mAnimation;
+    private float[] mStateTime;
+    private float[] mPreviousX;
+    private float[] mX;
+    private float[] mY;
+
+    public SimulationSnapshot() {
+        mTick = -1L;
+        allocate(64);
+    }
+
+    /**
+     * Method that copies the simulation's current state into this snapshot
+     * Must be called on the thread that steps the simulation
+     *
+     * @param simulation: The simulation to copy from
+     * @param tick: The number of ticks run so far
+     */
+    public void capture(DefenderSimulation simulation, long tick) {
+        mTick = tick;
+        mGameState = simulation.getGameState();
+        mRoundNumber = simulation.getRoundNumber();
+        mCastleDamageStage = simulation.getCastleDamageStage();
+        mCastleHealth = simulation.getCastleHealth();
+        mRoundScore = simulation.getRoundScore();
+        mTotalScore = simulation.getTotalScore();
+        mPaused = simulation.isPaused();
+        mRoundSaved = simulation.isRoundSaved();
+
+        DefenderButtons[] buttons = simulation.getButtons();
+        mVisibleButtons = 0;
+        for(int i = 0; i < buttons.length; i++) {
+            if(buttons[i].isVisible())
+                mVisibleButtons |= 1 << i;
+        }
+
+        AttackerStore attackers = simulation.getAttackers();
+        int count = attackers.getLiveCount();
+        if(count > mX.length)
+            allocate(Math.max(count, mX.length * 2));
+        mAttackerCount = count;
+        mAttackersMoved = simulation.hasAttackersMoved();
+        for(int k = 0; k < count; k++) {
+            int i = attackers.getLive(k);
+            mArchetype[k] = attackers.getArchetype(i);
+            mAnimation[k] = attackers.getAnimation(i);
+            mStateTime[k] = attackers.getStateTime(i);
+            mPreviousX[k] = attackers.getPreviousX(i);
+            mX[k] = attackers.getX(i);
+            mY[k] = attackers.getY(i);
+        }
+    }
+
+    private void allocate(int capacity) {
+        mArchetype = new int[capacity];
+        mAnimation = new int[capacity];
+        mStateTime = new float[capacity];
+        mPreviousX = new float[capacity];
+        mX = new float[capacity];
+        mY = new float[capacity];
+    }
+
+    /**
+     * Method to find where to draw an attacker some time after this snapshot's tick
+     *
+     * @param k: The attacker's position in the snapshot, below getAttackerCount()
+     * @param alpha: How far from this tick towards the next one, between 0 and 1
+     * @return x: The x coordinate blended between before and after the tick
+     */
+    public float getRenderX(int k, float alpha) {
+        if(!mAttackersMoved)
+            return mX[k];
+        return mPreviousX[k] + (mX[k] - mPreviousX[k]) * alpha;
+    }
+
+    public void setPublishNanos(long publishNanos) {
+        mPublishNanos = publishNanos;
+    }
+
+    public long getPublishNanos() {
+        return mPublishNanos;
+    }
+
+    public long getTick() {
+        return mTick;
+    }
+
+    public int getGameState() {
+        return mGameState;
+    }
+
+    public int getRoundNumber() {
+        return mRoundNumber;
+    }
+
+    public int getCastleDamageStage() {
+        return mCastleDamageStage;
+    }
+
+    public float getCastleHealth() {
+        return mCastleHealth;
+    }
+
+    public float getRoundScore() {
+        return mRoundScore;
+    }
+
+    public float getTotalScore() {
+        return mTotalScore;
+    }
+
+    public boolean isPaused() {
+        return mPaused;
+    }
+
+    public boolean isRoundSaved() {
+        return mRoundSaved;
+    }
+
+    /**
+     * @return visibleButtons: Bit i is set if button i is visible
+     */
+    public int getVisibleButtons() {
+        return mVisibleButtons;
+    }
+
+    public boolean isButtonVisible(int i) {
+        return (mVisibleButtons & (1 << i)) != 0;
+    }
+
+    public int getAttackerCount() {
+        return mAttackerCount;
+    }
+
+    public int getArchetype(int k) {
+        return mArchetype[k];
+    }
+
+    public int getAnimation(int k) {
+        return mAnimation[k];
+    }
+
+    public float getStateTime(int k) {
+        return mStateTime[k];
+    }
+
+    public float getY(int k) {
+        return mY[k];
+    }
+}
@@ -0,0 +1,175 @@
+package com.hamsterhuey.defender;
+
+/**
+ * Runs a DefenderSimulation on its own thread, one tick every TICK_SECONDS, so a slow tick never holds up a frame
+ *
+ * The render thread only talks to the simulation through two lock-free channels: taps go in through a TapQueue,
+ * and a SimulationSnapshot of every tick comes out through a SnapshotBuffer. The only lock is for the app's
+ * lifecycle - the thread sleeps on it while the app is in the background
+ */
+public class SimulationThread implements Runnable {
+    private static final long TICK_NANOS = (long) (DefenderSimulation.TICK_SECONDS * 1e9);
+    private static final long MAX_LAG_NANOS = (long) (DefenderSimulation.MAX_FRAME_SECONDS * 1e9);
+    private static final int TAP_CAPACITY = 64;
+
+    private final DefenderSimulation mSimulation;
+    private final TapQueue mTaps;
+    private final SnapshotBuffer mSnapshots;
+    private final FrameMetrics mMetrics;
+    private final Object mLifecycleLock = new Object();
+    private Thread mThread;
+    private long mTick;
+
+    // Lifecycle requests from the render thread, applied on the simulation thread
+    private volatile boolean mRunning;
+    private volatile boolean mPauseRequested;
+
+    /**
+     * Constructor for a thread driving a simulation, which must not be touched by anything else once started
+     *
+     * @param simulation: The simulation to step
+     * @param metrics: The registry to time ticks and hand-offs into
+     */
+    public SimulationThread(DefenderSimulation simulation, FrameMetrics metrics) {
+        mSimulation = simulation;
+        mMetrics = metrics;
+        mTaps = new TapQueue(TAP_CAPACITY);
+        mSnapshots = new SnapshotBuffer();
+        mTick = 0L;
+
+        // Publish the starting state, so the renderer has something to draw before the first tick
+        mSnapshots.getBack().capture(simulation, mTick);
+        mSnapshots.getBack().setPublishNanos(System.nanoTime());
+        mSnapshots.publish();
+    }
+
+    public void start() {
+        mRunning = true;
+        mThread = new Thread(this, "Simulation");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * Method to stop the thread and wait for it to finish its tick
+     */
+    public void stop() {
+        mRunning = false;
+        synchronized(mLifecycleLock) {
+            mLifecycleLock.notifyAll();
+        }
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Method to pause the game and stop ticking, called when the app goes to the background
+     */
+    public void pause() {
+        mPauseRequested = true;
+    }
+
+    /**
+     * Method to resume the game and the ticks, called when the app comes back
+     */
+    public void resume() {
+        synchronized(mLifecycleLock) {
+            mPauseRequested = false;
+            mLifecycleLock.notifyAll();
+        }
+    }
+
+    /**
+     * Method for the render thread to hand a tap to the simulation, picked up with any others by the next tick
+     *
+     * @param x: The x coordinate of the tap, in world coordinates
+     * @param y: The y coordinate of the tap, in world coordinates
+     */
+    public void tap(float x, float y) {
+        mTaps.offer(x, y, System.nanoTime());
+    }
+
+    /**
+     * Method for the render thread to get the newest tick's state
+     *
+     * @return snapshot: The newest snapshot, only valid until the next call
+     */
+    public SimulationSnapshot acquireSnapshot() {
+        return mSnapshots.acquire();
+    }
+
+    /**
+     * @return simulation: The simulation this thread steps, only safe to touch once the thread has been stopped
+     */
+    public DefenderSimulation getSimulation() {
+        return mSimulation;
+    }
+
+    @Override
+    public void run() {
+        long nextTick = System.nanoTime();
+        while(mRunning) {
+            if(mPauseRequested)
+                sleepWhilePaused();
+
+            // A reset asked for by the render thread is done here, never in the middle of recording a tick
+            mMetrics.applyPendingReset();
+            long tickStart = System.nanoTime();
+            tick(tickStart);
+            mMetrics.end(FrameMetrics.PHASE_TICK, tickStart);
+
+            // Sleep until the next tick is due. If ticks fall behind by more than a long frame, the lost time
+            // is dropped rather than run back to back, same as DefenderSimulation.update
+            nextTick += TICK_NANOS;
+            long now = System.nanoTime();
+            if(now - nextTick > MAX_LAG_NANOS)
+                nextTick = now;
+            long wait = nextTick - now;
+            if(wait > 0L) {
+                try {
+                    Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // One tick: hand over every waiting tap, step, then publish what the tick left behind
+    private void tick(long now) {
+        while(mTaps.poll()) {
+            mMetrics.getPhase(FrameMetrics.PHASE_TAP_HANDOFF).record(now - mTaps.getPolledOfferNanos());
+            mSimulation.tap(mTaps.getPolledX(), mTaps.getPolledY());
+        }
+        mSimulation.step(DefenderSimulation.TICK_SECONDS);
+        mTick++;
+
+        SimulationSnapshot snapshot = mSnapshots.getBack();
+        snapshot.capture(mSimulation, mTick);
+        snapshot.setPublishNanos(System.nanoTime());
+        mSnapshots.publish();
+    }
+
+    // Pauses the game and publishes that, waits until resumed or stopped, then unpauses the game on waking
+    private void sleepWhilePaused() {
+        mSimulation.pause();
+        SimulationSnapshot snapshot = mSnapshots.getBack();
+        snapshot.capture(mSimulation, mTick);
+        snapshot.setPublishNanos(System.nanoTime());
+        mSnapshots.publish();
+
+        synchronized(mLifecycleLock) {
+            while(mPauseRequested && mRunning) {
+                try {
+                    mLifecycleLock.wait();
+                } catch (InterruptedException e) {
+                    mRunning = false;
+                }
+            }
+        }
+        mSimulation.resume();
+    }
+}
@@ -0,0 +1,56 @@
+package com.hamsterhuey.defender;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lock-free hand-off of SimulationSnapshots from the simulation thread to the render thread
+ *
+ * Three snapshots rotate between a writer's back buffer, a shared middle buffer and a reader's front buffer.
+ * Publishing swaps the back buffer with the middle one and marks it fresh, acquiring swaps the middle one
+ * with the front buffer if it is fresh. Both swaps are a single atomic getAndSet, so neither thread ever waits
+ * on the other: the writer never touches what the reader is drawing, and the reader always gets the newest tick
+ */
+public class SnapshotBuffer {
+    private static final int INDEX_MASK = 3;
+    private static final int FRESH = 4; // Set while the middle buffer holds a snapshot the reader hasn't taken
+
+    private final SimulationSnapshot[] mSnapshots;
+    private final AtomicInteger mMiddle;  // Index of the shared buffer, plus the FRESH bit
+    private int mBack;                    // Only touched by the writer
+    private int mFront;                   // Only touched by the reader
+
+    public SnapshotBuffer() {
+        mSnapshots = new SimulationSnapshot[] { new SimulationSnapshot(), new SimulationSnapshot(), new SimulationSnapshot() };
+        mBack = 0;
+        mMiddle = new AtomicInteger(1);
+        mFront = 2;
+    }
+
+    /**
+     * Method for the writer to get the snapshot to fill next
+     *
+     * @return snapshot: The back buffer, which the reader can't see until it is published
+     */
+    public SimulationSnapshot getBack() {
+        return mSnapshots[mBack];
+    }
+
+    /**
+     * Method for the writer to hand over the back buffer, which becomes the newest snapshot
+     * If the reader hasn't taken the previous one yet, that one is dropped and becomes the new back buffer
+     */
+    public void publish() {
+        mBack = mMiddle.getAndSet(mBack | FRESH) & INDEX_MASK;
+    }
+
+    /**
+     * Method for the reader to get the newest published snapshot
+     *
+     * @return snapshot: The newest snapshot, or the same one as last time if nothing was published since
+     */
+    public SimulationSnapshot acquire() {
+        if((mMiddle.get() & FRESH) != 0)
+            mFront = mMiddle.getAndSet(mFront) & INDEX_MASK;
+        return mSnapshots[mFront];
+    }
+}
@@ -0,0 +1,285 @@
+package com.hamsterhuey.defender;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Hierarchical timing wheel of spawns waiting for their tick, counted from the start of the round
+ *
+ * Three wheels of 64 slots each cover 1, 64 and 4096 ticks per slot, so anything up to 262144 ticks (over an hour)
+ * ahead is held without ever being looked at before it is nearly due. Scheduling drops an entry straight into the
+ * slot of its tick, and a tick only empties one slot of the first wheel - once every 64 ticks a slot of the second
+ * wheel is spread out over the first, and once every 4096 one of the third. Each entry moves down at most twice,
+ * so a tick costs O(1) plus the entries that are actually due, however many are waiting.
+ *
+ * Entries live in parallel arrays and are linked into their slot by index, same as AttackerStore's free lists,
+ * so nothing is allocated once the arrays have grown to the busiest round. Every list keeps the order its
+ * entries were added in, and a snapshot puts each entry back in the same place, so a loaded game spawns in
+ * exactly the order the saved one would have
+ */
+public class SpawnScheduler {
+    // Public constants for the flags an entry carries for whoever spawns it
+    public static final int FLAG_NONE = 0;
+    public static final int FLAG_TRICKLE = 1; // The steady random spawn, which schedules the next one when it comes due
+
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int WHEELS = 3;
+    public static final int HORIZON = 1 << (WHEEL_BITS * WHEELS); // Entries must be due less than this many ticks ahead
+
+    private static final int READY = WHEELS * WHEEL_SIZE; // The list of entries due now, after every wheel slot
+    private static final int LISTS = READY + 1;
+    private static final int NONE = -1;
+    private static final int ENTRY_SNAPSHOT_SIZE = 2 + 4 + 3; // List, due tick, archetype, lane, flags
+
+    private int mTick;
+    private final int[] mHead; // First and last entry of every slot and the ready list
+    private final int[] mTail;
+
+    // Entries
+    private int[] mDue;
+    private byte[] mArchetype;
+    private byte[] mLane;
+    private byte[] mFlags;
+    private int[] mNext; // The next entry in the same list, or in the free list
+    private int mFreeHead;
+    private int mPending;
+
+    /**
+     * Constructor for an empty scheduler at tick 0
+     *
+     * @param capacity: The number of entries to make room for up front, it grows if more are waiting
+     */
+    public SpawnScheduler(int capacity) {
+        mHead = new int[LISTS];
+        mTail = new int[LISTS];
+        allocate(Math.max(capacity, 16));
+        clear();
+    }
+
+    /**
+     * Method to drop every waiting entry and go back to tick 0, for the start of a round
+     */
+    public void clear() {
+        Arrays.fill(mHead, NONE);
+        Arrays.fill(mTail, NONE);
+        mFreeHead = NONE;
+        for(int i = mDue.length - 1; i >= 0; i--) {
+            mNext[i] = mFreeHead;
+            mFreeHead = i;
+        }
+        mTick = 0;
+        mPending = 0;
+    }
+
+    /**
+     * Method to have something spawn some ticks from now
+     *
+     * @param delay: Ticks from now, 0 is due this tick and comes out of the current poll loop
+     * @param archetype: The archetype to spawn, or -1 for whoever spawns it to choose
+     * @param lane: The lane to spawn in, or -1 for the attacker's own
+     * @param flags: FLAG_ constants for whoever spawns it
+     */
+    public void schedule(int delay, int archetype, int lane, int flags) {
+        if(delay < 0 || delay >= HORIZON)
+            throw new IllegalArgumentException("Spawns can only be scheduled from 0 to " + (HORIZON - 1) + " ticks ahead, not " + delay);
+        if(mFreeHead == NONE)
+            allocate(mDue.length * 2);
+        int i = mFreeHead;
+        mFreeHead = mNext[i];
+
+        mDue[i] = mTick + delay;
+        mArchetype[i] = (byte) archetype;
+        mLane[i] = (byte) lane;
+        mFlags[i] = (byte) flags;
+        append(listFor(mDue[i]), i);
+        mPending++;
+    }
+
+    /**
+     * Method that moves on to the next tick, after which poll hands out everything due in it
+     * Entries still in the ready list from the last tick stay in front of the new ones
+     */
+    public void advance() {
+        mTick++;
+        int tick = mTick;
+        // Spread the upper wheels' slots over the lower ones as the lower ones come round, the top one first
+        if((tick & WHEEL_MASK) == 0) {
+            if(((tick >>> WHEEL_BITS) & WHEEL_MASK) == 0)
+                cascade(2 * WHEEL_SIZE + ((tick >>> (2 * WHEEL_BITS)) & WHEEL_MASK));
+            cascade(WHEEL_SIZE + ((tick >>> WHEEL_BITS) & WHEEL_MASK));
+        }
+        // Everything in the first wheel's slot is due now
+        int slot = tick & WHEEL_MASK;
+        if(mHead[slot] != NONE) {
+            if(mHead[READY] == NONE)
+                mHead[READY] = mHead[slot];
+            else
+                mNext[mTail[READY]] = mHead[slot];
+            mTail[READY] = mTail[slot];
+            mHead[slot] = NONE;
+            mTail[slot] = NONE;
+        }
+    }
+
+    /**
+     * Method to take the next entry due, its values can be read until the next call to schedule
+     *
+     * @return entry: The entry, or -1 if nothing else is due this tick
+     */
+    public int poll() {
+        int i = mHead[READY];
+        if(i == NONE)
+            return NONE;
+        mHead[READY] = mNext[i];
+        if(mHead[READY] == NONE)
+            mTail[READY] = NONE;
+        mNext[i] = mFreeHead;
+        mFreeHead = i;
+        mPending--;
+        return i;
+    }
+
+    // Re-files every entry of an upper wheel's slot by how far off it is now
+    private void cascade(int list) {
+        int i = mHead[list];
+        mHead[list] = NONE;
+        mTail[list] = NONE;
+        while(i != NONE) {
+            int next = mNext[i];
+            append(listFor(mDue[i]), i);
+            i = next;
+        }
+    }
+
+    // The wheel slot for an entry due at a tick, seen from the current tick
+    private int listFor(int due) {
+        int delta = due - mTick;
+        if(delta <= 0)
+            return READY;
+        if(delta < WHEEL_SIZE)
+            return due & WHEEL_MASK;
+        if(delta < WHEEL_SIZE * WHEEL_SIZE)
+            return WHEEL_SIZE + ((due >>> WHEEL_BITS) & WHEEL_MASK);
+        return 2 * WHEEL_SIZE + ((due >>> (2 * WHEEL_BITS)) & WHEEL_MASK);
+    }
+
+    private void append(int list, int i) {
+        mNext[i] = NONE;
+        if(mHead[list] == NONE)
+            mHead[list] = i;
+        else
+            mNext[mTail[list]] = i;
+        mTail[list] = i;
+    }
+
+    private void allocate(int capacity) {
+        int old = mDue == null ? 0 : mDue.length;
+        if(mDue == null) {
+            mDue = new int[capacity];
+            mArchetype = new byte[capacity];
+            mLane = new byte[capacity];
+            mFlags = new byte[capacity];
+            mNext = new int[capacity];
+            return;
+        }
+        mDue = Arrays.copyOf(mDue, capacity);
+        mArchetype = Arrays.copyOf(mArchetype, capacity);
+        mLane = Arrays.copyOf(mLane, capacity);
+        mFlags = Arrays.copyOf(mFlags, capacity);
+        mNext = Arrays.copyOf(mNext, capacity);
+        for(int i = capacity - 1; i >= old; i--) {
+            mNext[i] = mFreeHead;
+            mFreeHead = i;
+        }
+    }
+
+    /**
+     * @return size: The number of bytes writeSnapshot will write
+     */
+    public int getSnapshotSize() {
+        return 4 + 4 + mPending * ENTRY_SNAPSHOT_SIZE;
+    }
+
+    /**
+     * Method that writes the tick and every waiting entry, list by list in order
+     *
+     * @param out: The buffer to write to, with getSnapshotSize bytes left
+     */
+    public void writeSnapshot(ByteBuffer out) {
+        out.putInt(mTick);
+        out.putInt(mPending);
+        for(int list = 0; list < LISTS; list++) {
+            for(int i = mHead[list]; i != NONE; i = mNext[i]) {
+                out.putShort((short) list);
+                out.putInt(mDue[i]);
+                out.put(mArchetype[i]);
+                out.put(mLane[i]);
+                out.put(mFlags[i]);
+            }
+        }
+    }
+
+    /**
+     * Method that puts back the state writeSnapshot wrote, every entry in the list and place it was in
+     *
+     * @param in: The buffer to read from
+     */
+    public void readSnapshot(ByteBuffer in) {
+        clear();
+        mTick = in.getInt();
+        int count = in.getInt();
+        if(count < 0)
+            throw new IllegalArgumentException("Malformed spawn schedule");
+        for(int n = 0; n < count; n++) {
+            int list = in.getShort();
+            if(list < 0 || list >= LISTS)
+                throw new IllegalArgumentException("Malformed spawn schedule");
+            if(mFreeHead == NONE)
+                allocate(mDue.length * 2);
+            int i = mFreeHead;
+            mFreeHead = mNext[i];
+            mDue[i] = in.getInt();
+            mArchetype[i] = in.get();
+            mLane[i] = in.get();
+            mFlags[i] = in.get();
+            append(list, i);
+            mPending++;
+        }
+    }
+
+    // Getters for a polled entry below
+    public int getArchetype(int i) {
+        return mArchetype[i];
+    }
+
+    public int getLane(int i) {
+        return mLane[i];
+    }
+
+    public int getFlags(int i) {
+        return mFlags[i];
+    }
+
+    /**
+     * @return tick: The ticks advanced since the scheduler was last cleared
+     */
+    public int getTick() {
+        return mTick;
+    }
+
+    /**
+     * @return pending: The entries waiting, due ones not yet polled included
+     */
+    public int getPendingCount() {
+        return mPending;
+    }
+
+    /**
+     * @return overdue: Whether entries due by now are still waiting in the ready list to be polled
+     */
+    public boolean hasOverdue() {
+        return mHead[READY] != NONE;
+    }
+}
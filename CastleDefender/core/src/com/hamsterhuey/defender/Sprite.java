@@ -1,24 +1,20 @@
 package com.hamsterhuey.defender;
 
-import com.badlogic.gdx.graphics.g2d.Animation;
 import com.badlogic.gdx.graphics.g2d.TextureRegion;
 import com.badlogic.gdx.math.Rectangle;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Map;
-import java.util.Set;
-
 /**
  * Class definition of a single animated "actor" in a game
  * Written requiring the libGDX game engine for android development
  *
  * This implementation assumes a sprite has a fixed width and height
+ * Animations come from an AnimationSet shared by every sprite of the same kind, so a sprite's own
+ * animation state is only the handle of what it is playing and how long it has been playing it
  */
 public class Sprite {
-    // Member variables related to location
-    private int mX;
-    private int mY;
+    // Member variables related to location, kept as floats so slow movement at high frame rates still adds up
+    private float mX;
+    private float mY;
 
     // Member variables related to size
     private float mWidth;
@@ -29,11 +25,8 @@ public class Sprite {
     private boolean mAnimating;
     private boolean mLooping;
     private float mStateTime;
-    private String mCurrentAnimation;
-    private TextureRegion mCurrentFrame;
-    private Map<String, Animation> mAnimations;
-    private ArrayList<String> mAnimNames;
-    private ArrayList<Animation> mAnimList;
+    private int mCurrentAnimation;
+    private AnimationSet mAnimations;
 
     /**
      * Constructor for a new sprite object
@@ -42,8 +35,9 @@ public class Sprite {
      * @param y: The starting y coordinate on the GDX projection
      * @param width: The width of the Rectangle of the sprite
      * @param height: The height of the Rectangle of the sprite
+     * @param animations: The shared set of animations this sprite can play
      */
-    public Sprite(int x, int y, float width, float height) {
+    public Sprite(float x, float y, float width, float height, AnimationSet animations) {
         mX = x;
         mY = y;
         mWidth = width;
@@ -54,19 +48,14 @@ public class Sprite {
         mBoundingBox.setWidth(mWidth);
         mBoundingBox.setHeight(mHeight);
         mStateTime = 0f;
-        mCurrentFrame = null;
         mAnimating = false;
-        mCurrentAnimation = "";
+        mCurrentAnimation = AnimationSet.NO_ANIMATION;
         mLooping = false;
-        // Animations are saved as key-value pairs so they can be switched between by name
-        // The list of names is mapped to the list of actual animations as pairs
-        mAnimNames = new ArrayList<String>();
-        mAnimList = new ArrayList<Animation>();
-        defineMap();
+        mAnimations = animations;
     }
 
     /**
-     * Method that updates the sprite's current frame, based on a time delta passed as a parameter
+     * Method that advances the sprite's animation, based on a time delta passed as a parameter
      * Does nothing if the sprite isn't animating
      *
      * @param deltaTime: The time delta between this frame and the previous
@@ -77,8 +66,8 @@ public class Sprite {
         if(!mAnimating) {
             return;
         }
+        // The frame itself is only looked up when it is drawn
         mStateTime += deltaTime;
-        mCurrentFrame = mAnimations.get(mCurrentAnimation).getKeyFrame(mStateTime, mLooping);
         mX += deltaX * deltaTime;
         mY += deltaY * deltaTime;
         setPosition(mX, mY);
@@ -96,15 +85,15 @@ public class Sprite {
     /**
      * Method to play an animation, additionally specifying whether looping is enabled
      *
-     * @param animationName: String that retrieves the animation from the map
+     * @param handle: The animation's handle in the sprite's AnimationSet
      * @param looping: If true, the animation will repeat until otherwise specified
      */
-    public void play(String animationName, boolean looping) {
-        if(!mAnimations.containsKey(animationName) || animationName.equals(mCurrentAnimation))
+    public void play(int handle, boolean looping) {
+        if(!mAnimations.contains(handle) || handle == mCurrentAnimation)
             return;
 
         // Code here only runs if the desired animation exists on this sprite
-        mCurrentAnimation = animationName;
+        mCurrentAnimation = handle;
         mAnimating = true;
         mLooping = looping;
         mStateTime = 0f;
@@ -114,7 +103,7 @@ public class Sprite {
      * Method that restarts animation from the beginning, with looping assumed true
      */
     public void restart() {
-        if(!mCurrentAnimation.equals("")){
+        if(mCurrentAnimation != AnimationSet.NO_ANIMATION){
             mAnimating = true;
             mLooping = true;
             mStateTime = 0f;
@@ -125,11 +114,11 @@ public class Sprite {
 
     /**
      * Overload method to play an animation without specifying any particular animation
-     * Defaults to the first animation in the list and assumes looping is true
+     * Defaults to the first animation in the set and assumes looping is true
      */
     public void play() {
-        if(!mAnimations.isEmpty())
-            play(mAnimNames.get(0), true);
+        if(mAnimations.size() > 0)
+            play(0, true);
     }
 
     /**
@@ -141,107 +130,6 @@ public class Sprite {
         mStateTime = 0f;
     }
 
-    /**
-     * Method to add an animation with a string name
-     *
-     * @param animation: The animation to add to the sprite's map
-     * @param name: The string to save as the key in the key value pair
-     */
-    public void addAnimation(Animation animation, String name) {
-        if(!mAnimations.containsKey(name)) {
-            // Add the animation to the map
-            mAnimations.put(name, animation);
-        }
-    }
-
-    // Moved the definition of the mAnimations map to a separate method for cleanliness
-    private void defineMap() {
-        mAnimations = new Map<String, Animation>() {
-            @Override
-            public int size() {
-                return mAnimList.size();
-            }
-
-            @Override
-            public boolean isEmpty() {
-                return mAnimList.isEmpty();
-            }
-
-            @Override
-            public boolean containsKey(Object key) {
-                String sKey = (String) key;
-                return mAnimNames.contains(sKey);
-            }
-
-            @Override
-            public boolean containsValue(Object value) {
-                Animation aValue = (Animation) value;
-                return mAnimList.contains(aValue);
-            }
-
-            @Override
-            public Animation get(Object key) {
-                String sKey = (String) key;
-                if(mAnimNames.contains(sKey)) {
-                    return mAnimList.get(mAnimNames.indexOf(sKey));
-                }
-                else
-                    return null;
-            }
-
-            @Override
-            public Animation put(String key, Animation value) {
-                // Don't allow duplicate strings
-                if (!mAnimNames.contains(key)) {
-                    // The key is unique - add the value and key to their array lists
-                    mAnimList.add(value);
-                    mAnimNames.add(key);
-                    return value;
-                }
-                else
-                    return null;
-            }
-
-            @Override
-            public Animation remove(Object key) {
-                String sKey = (String) key;
-                if (mAnimNames.contains(sKey)) {
-                    return mAnimList.remove(mAnimNames.indexOf(sKey));
-                }
-                else
-                    return null;
-            }
-
-            @Override
-            public void putAll(Map<? extends String, ? extends Animation> m) {
-
-            }
-
-            @Override
-            public void clear() {
-                mAnimNames.clear();
-                mAnimList.clear();
-            }
-
-            @Override
-            public Set<String> keySet() {
-                // Don't call this method, please. Just don't.
-                return null;
-            }
-
-            @Override
-            public Collection<Animation> values() {
-                return mAnimList;
-            }
-
-            @Override
-            public Set<Entry<String, Animation>> entrySet() {
-                // Yeah don't call this either
-                return null;
-            }
-        };
-    }
-
     /**
      * Method to set the sprite's position to a specified coordinate location, updating it's bounding box
      *
@@ -250,13 +138,31 @@ public class Sprite {
      */
     public void setPosition(float x, float y) {
         mBoundingBox.setPosition(x, y);
-        mX = (int)x;
-        mY = (int)y;
+        mX = x;
+        mY = y;
     }
 
-    // Generated Getters and Setters below
+    /**
+     * Method to grab the frame of the current animation
+     * @return frame: The frame to draw, or null if the sprite has never played an animation
+     */
     public TextureRegion getCurrentFrame() {
-        return mCurrentFrame;
+        if(mCurrentAnimation == AnimationSet.NO_ANIMATION)
+            return null;
+        return mAnimations.getKeyFrame(mCurrentAnimation, mStateTime, mLooping);
+    }
+
+    // Generated Getters and Setters below
+    public AnimationSet getAnimations() {
+        return mAnimations;
+    }
+
+    public int getCurrentAnimation() {
+        return mCurrentAnimation;
+    }
+
+    public float getStateTime() {
+        return mStateTime;
     }
 
     public boolean isAnimating() {
@@ -267,11 +173,11 @@ public class Sprite {
         return mBoundingBox;
     }
 
-    public int getX() {
+    public float getX() {
         return mX;
     }
 
-    public int getY() {
+    public float getY() {
         return mY;
     }
 }
@@ -0,0 +1,41 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.utils.TimeUtils;
+
+/**
+ * Logs how long after launch each step of starting the game was reached, so cold-start regressions show up in logcat
+ *
+ * The clock starts when the log is constructed - DefenderGame creates its log as the launcher builds the game,
+ * before the GL surface or any asset exists
+ */
+public class StartupLog {
+    private static final String TAG = "Startup";
+
+    private final long mStartTime;
+    private long mLastTime;
+    private String mLastMilestone;
+
+    public StartupLog() {
+        mStartTime = TimeUtils.nanoTime();
+        mLastTime = mStartTime;
+        mLastMilestone = "launch";
+    }
+
+    /**
+     * Method to log a milestone, with the time since launch and since the previous milestone
+     *
+     * @param milestone: The name of the step that was just reached
+     */
+    public void mark(String milestone) {
+        long now = TimeUtils.nanoTime();
+        Gdx.app.log(TAG, milestone + " at " + millis(now - mStartTime) + " ms ("
+                + millis(now - mLastTime) + " ms after " + mLastMilestone + ")");
+        mLastTime = now;
+        mLastMilestone = milestone;
+    }
+
+    private static long millis(long nanos) {
+        return nanos / 1000000L;
+    }
+}
@@ -0,0 +1,86 @@
+package com.hamsterhuey.defender;
+
+/**
+ * Lock-free queue of taps from the render thread to the simulation thread
+ *
+ * A fixed ring with exactly one producer and one consumer: each side only writes its own index, and the
+ * indices are volatile, so writing a tap's fields before moving the tail publishes them to the consumer.
+ * Every tap carries the time it was offered, so the consumer can measure how long the hand-off took
+ */
+public class TapQueue {
+    private final float[] mX;
+    private final float[] mY;
+    private final long[] mOfferNanos;
+    private final int mMask;
+    private volatile int mHead; // Next tap to poll, only written by the consumer
+    private volatile int mTail; // Next free slot, only written by the producer
+
+    // The tap returned by the last successful poll, only read by the consumer
+    private float mPolledX;
+    private float mPolledY;
+    private long mPolledOfferNanos;
+
+    /**
+     * Constructor for an empty queue
+     *
+     * @param capacity: The number of taps the queue can hold, rounded up to a power of two
+     */
+    public TapQueue(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mX = new float[size];
+        mY = new float[size];
+        mOfferNanos = new long[size];
+        mMask = size - 1;
+        mHead = 0;
+        mTail = 0;
+    }
+
+    /**
+     * Method for the producer to add a tap
+     *
+     * @param x: The x coordinate of the tap, in world coordinates
+     * @param y: The y coordinate of the tap, in world coordinates
+     * @param offerNanos: The time the tap happened
+     * @return added: False if the queue was full and the tap was dropped
+     */
+    public boolean offer(float x, float y, long offerNanos) {
+        int tail = mTail;
+        if(tail - mHead > mMask)
+            return false;
+        int slot = tail & mMask;
+        mX[slot] = x;
+        mY[slot] = y;
+        mOfferNanos[slot] = offerNanos;
+        mTail = tail + 1; // The volatile write publishes the slot
+        return true;
+    }
+
+    /**
+     * Method for the consumer to take the oldest tap, read back through getPolledX, getPolledY and getPolledOfferNanos
+     *
+     * @return polled: False if the queue was empty
+     */
+    public boolean poll() {
+        int head = mHead;
+        if(head == mTail)
+            return false;
+        int slot = head & mMask;
+        mPolledX = mX[slot];
+        mPolledY = mY[slot];
+        mPolledOfferNanos = mOfferNanos[slot];
+        mHead = head + 1; // Only now may the producer reuse the slot
+        return true;
+    }
+
+    public float getPolledX() {
+        return mPolledX;
+    }
+
+    public float getPolledY() {
+        return mPolledY;
+    }
+
+    public long getPolledOfferNanos() {
+        return mPolledOfferNanos;
+    }
+}
@@ -0,0 +1,107 @@
+package com.hamsterhuey.defender;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size histogram of nanosecond timings, precise to within 1/8th (12.5%) of any value
+ *
+ * Values are bucketed by their highest set bit, and each power of two is split into SUB_BUCKETS linear buckets,
+ * so the buckets cover anything from 1 ns to minutes in a single small array.
+ * Recording a sample is a few bit operations and an increment - nothing is allocated after construction
+ */
+public class TimingHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_BIT = 40; // 2^40 ns is about 18 minutes, anything longer shares the last bucket
+    private static final int BUCKET_COUNT = (MAX_BIT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final long[] mCounts;
+    private long mCount;
+    private long mTotal;
+    private long mMax;
+
+    public TimingHistogram() {
+        mCounts = new long[BUCKET_COUNT];
+        reset();
+    }
+
+    /**
+     * Method to add one timing to the histogram
+     *
+     * @param nanos: The timing in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos) {
+        if(nanos < 0L)
+            nanos = 0L;
+        mCounts[bucketOf(nanos)]++;
+        mCount++;
+        mTotal += nanos;
+        if(nanos > mMax)
+            mMax = nanos;
+    }
+
+    /**
+     * Method to estimate a percentile from the recorded timings
+     *
+     * @param percentile: The percentile wanted, between 0 and 100
+     * @return nanos: The upper bound of the bucket holding the percentile, capped at the largest timing, or 0 if empty
+     */
+    public long getPercentile(double percentile) {
+        if(mCount == 0L)
+            return 0L;
+        long rank = (long) Math.ceil(percentile / 100.0 * mCount);
+        if(rank < 1L)
+            rank = 1L;
+
+        long seen = 0L;
+        for(int b = 0; b < BUCKET_COUNT; b++) {
+            seen += mCounts[b];
+            if(seen >= rank)
+                return Math.min(upperBoundOf(b), mMax);
+        }
+        return mMax;
+    }
+
+    /**
+     * Empties the histogram
+     */
+    public void reset() {
+        Arrays.fill(mCounts, 0L);
+        mCount = 0L;
+        mTotal = 0L;
+        mMax = 0L;
+    }
+
+    public long getCount() {
+        return mCount;
+    }
+
+    public long getMax() {
+        return mMax;
+    }
+
+    public long getMean() {
+        return mCount == 0L ? 0L : mTotal / mCount;
+    }
+
+    // Values below SUB_BUCKETS get a bucket each, above that each power of two is split into SUB_BUCKETS buckets
+    private static int bucketOf(long nanos) {
+        if(nanos < SUB_BUCKETS)
+            return (int) nanos;
+        int bit = 63 - Long.numberOfLeadingZeros(nanos);
+        if(bit > MAX_BIT)
+            return BUCKET_COUNT - 1;
+        int sub = (int) (nanos >>> (bit - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (bit - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    // The largest value that falls in a bucket
+    private static long upperBoundOf(int bucket) {
+        if(bucket < SUB_BUCKETS)
+            return bucket;
+        int bit = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long lowest = (long) (SUB_BUCKETS + sub) << (bit - SUB_BUCKET_BITS);
+        return lowest + (1L << (bit - SUB_BUCKET_BITS)) - 1L;
+    }
+}
@@ -0,0 +1,39 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.InputAdapter;
+import com.badlogic.gdx.graphics.Camera;
+import com.badlogic.gdx.math.Vector3;
+
+/**
+ * InputProcessor that turns every finger touching down into a tap for the simulation
+ *
+ * libGDX queues the touch events of a frame and delivers them one by one right before render, one per pointer,
+ * so taps from several fingers in the same frame all reach the simulation instead of only the first.
+ * Each touch is unprojected once into a reused vector and goes straight into the SimulationThread's TapQueue,
+ * where the state's buttons and then the attackers get it - no event allocates anything
+ */
+public class TouchInput extends InputAdapter {
+    private final Camera mCamera;
+    private final SimulationThread mSimulationThread;
+    private final Vector3 mTouch;
+
+    /**
+     * Constructor for the input, which still has to be set with Gdx.input.setInputProcessor
+     *
+     * @param camera: The camera the game world is drawn with, to turn screen coordinates into world coordinates
+     * @param simulationThread: The thread to hand the taps to
+     */
+    public TouchInput(Camera camera, SimulationThread simulationThread) {
+        mCamera = camera;
+        mSimulationThread = simulationThread;
+        mTouch = new Vector3();
+    }
+
+    @Override
+    public boolean touchDown(int screenX, int screenY, int pointer, int button) {
+        mTouch.set(screenX, screenY, 0f);
+        mCamera.unproject(mTouch); // Translates to game world coordinates
+        mSimulationThread.tap(mTouch.x, mTouch.y);
+        return true;
+    }
+}
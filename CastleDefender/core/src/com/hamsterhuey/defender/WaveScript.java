@@ -0,0 +1,116 @@
+package com.hamsterhuey.defender;
+
+import com.badlogic.gdx.utils.JsonReader;
+import com.badlogic.gdx.utils.JsonValue;
+
+/**
+ * Scripted waves of attackers, read once from a data file (waves.json in the assets) and handed to the simulation
+ *
+ * Each wave sends count attackers of one archetype down one lane, the first time seconds into the round and
+ * the rest stagger seconds apart, in every round from fromRound to toRound. At the start of a round the waves
+ * for it are put into the SpawnScheduler all at once, so nothing about them is looked at again until they come due.
+ * The script only holds plain numbers once parsed and is never changed, so one script can be shared by any number
+ * of simulations on any threads
+ *
+ * File layout:
+ *   { "waves": [ { "fromRound": 2, "toRound": 0, "time": 20, "archetype": "knight", "count": 4, "lane": 1, "stagger": 0.5 } ] }
+ *   fromRound defaults to 1, toRound to 0 (no last round), archetype to "random" (by the round's knight chance,
+ *   otherwise a name from the ArchetypeRegistry the script is read with),
+ *   count to 1, lane to -1 (the attacker's own lane) and stagger to 0 - which still spreads them over ticks,
+ *   as the simulation only spawns so many a tick
+ */
+public class WaveScript {
+    private final String mSource;
+    private final int mCount;
+    private final int[] mFromRound;
+    private final int[] mToRound;
+    private final int[] mTime;     // Ticks into the round
+    private final int[] mArchetype;
+    private final int[] mSpawns;
+    private final int[] mLane;
+    private final int[] mStagger;  // Ticks between two spawns of the wave
+
+    /**
+     * Method to read a script
+     *
+     * @param json: The script's text
+     * @param archetypes: The archetypes of the simulation the script is for, which waves name theirs from
+     * @return script: The parsed script
+     * @throws IllegalArgumentException: If a wave has a value the game can't use
+     */
+    public static WaveScript parse(String json, ArchetypeRegistry archetypes) {
+        return new WaveScript(json, new JsonReader().parse(json), archetypes);
+    }
+
+    private WaveScript(String source, JsonValue root, ArchetypeRegistry archetypes) {
+        mSource = source;
+        JsonValue waves = root.get("waves");
+        mCount = waves == null ? 0 : waves.size;
+        mFromRound = new int[mCount];
+        mToRound = new int[mCount];
+        mTime = new int[mCount];
+        mArchetype = new int[mCount];
+        mSpawns = new int[mCount];
+        mLane = new int[mCount];
+        mStagger = new int[mCount];
+
+        int w = 0;
+        for(JsonValue wave = waves == null ? null : waves.child; wave != null; wave = wave.next, w++) {
+            mFromRound[w] = wave.getInt("fromRound", 1);
+            mToRound[w] = wave.getInt("toRound", 0);
+            mTime[w] = toTicks(wave.getFloat("time", 0f));
+            mArchetype[w] = findArchetype(archetypes, wave.getString("archetype", ArchetypeRegistry.RANDOM), w);
+            mSpawns[w] = wave.getInt("count", 1);
+            mLane[w] = wave.getInt("lane", -1);
+            mStagger[w] = toTicks(wave.getFloat("stagger", 0f));
+
+            if(mFromRound[w] < 1 || mTime[w] < 0 || mSpawns[w] < 0 || mStagger[w] < 0)
+                throw new IllegalArgumentException("Wave " + w + " has a negative time, count or stagger, or starts before round 1");
+            if(mLane[w] < -1 || mLane[w] >= DefenderSimulation.LANE_COUNT)
+                throw new IllegalArgumentException("Wave " + w + " is in lane " + mLane[w] + ", lanes go from 0 to "
+                        + (DefenderSimulation.LANE_COUNT - 1) + " or -1 for any");
+            if((long) mTime[w] + (long) Math.max(mSpawns[w] - 1, 0) * mStagger[w] >= SpawnScheduler.HORIZON)
+                throw new IllegalArgumentException("Wave " + w + " ends too far into the round");
+        }
+    }
+
+    private static int toTicks(float seconds) {
+        return Math.round(seconds / DefenderSimulation.TICK_SECONDS);
+    }
+
+    private static int findArchetype(ArchetypeRegistry archetypes, String name, int wave) {
+        if(name.equals(ArchetypeRegistry.RANDOM))
+            return -1;
+        int archetype = archetypes.find(name);
+        if(archetype == ArchetypeRegistry.NONE)
+            throw new IllegalArgumentException("Wave " + wave + " has an unknown archetype " + name);
+        return archetype;
+    }
+
+    /**
+     * Method to put every spawn of a round's waves into a scheduler that was just cleared for the round
+     *
+     * @param scheduler: The scheduler, at the round's first tick
+     * @param round: The round starting
+     */
+    public void scheduleRound(SpawnScheduler scheduler, int round) {
+        for(int w = 0; w < mCount; w++) {
+            if(round < mFromRound[w] || (mToRound[w] > 0 && round > mToRound[w]))
+                continue;
+            for(int k = 0; k < mSpawns[w]; k++) {
+                scheduler.schedule(mTime[w] + k * mStagger[w], mArchetype[w], mLane[w], SpawnScheduler.FLAG_NONE);
+            }
+        }
+    }
+
+    /**
+     * @return source: The text the script was parsed from, which is what a replay records
+     */
+    public String getSource() {
+        return mSource;
+    }
+
+    public int getWaveCount() {
+        return mCount;
+    }
+}
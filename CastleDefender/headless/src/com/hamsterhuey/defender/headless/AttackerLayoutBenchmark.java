@@ -0,0 +1,159 @@
+package com.hamsterhuey.defender.headless;
+
+import com.badlogic.gdx.graphics.g2d.Animation;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.hamsterhuey.defender.AnimationSet;
+import com.hamsterhuey.defender.ArchetypeRegistry;
+import com.hamsterhuey.defender.Attacker;
+import com.hamsterhuey.defender.AttackerStore;
+
+import java.util.Random;
+
+/**
+ * Compares the per-tick cost of the attacker loop for the old Attacker[] object layout
+ * against the structure-of-arrays AttackerStore, at several horde sizes
+ *
+ * Both layouts do the same work each tick: walk every living attacker, stop the ones past the castle wall,
+ * switch knights to their attack animation and add up the damage dealt.
+ * Every attacker starts somewhere between the spawn point and the wall and the horde is revived every
+ * RESET_TICKS ticks, so each run mixes walking and attacking attackers
+ */
+public class AttackerLayoutBenchmark {
+    private static final int[] HORDE_SIZES = { 50, 5000, 100000 };
+    private static final float FRAME_TIME = 1f / 60f;
+    private static final float MIN_STOP_X = 585f;
+    private static final int RESET_TICKS = 120;
+    private static final int MIN_RUNS = 30;
+    private static final long UPDATES_PER_PHASE = 50000000L; // Attacker updates done while warming up, and again while measuring
+
+    // Handles shared by both animation sets - normal attackers simply don't have ATTACK
+    private static final int WALK = 0;
+    private static final int ATTACK = 1;
+
+    // Kept so the JIT can't throw the damage totals away
+    private static float sBlackhole;
+
+    public static void main(String[] args) {
+        System.out.println(String.format("%10s %18s %18s %10s", "attackers", "Attacker[] ns/tick", "store ns/tick", "speedup"));
+        for(int size : HORDE_SIZES) {
+            Attacker[] objects = createObjects(size);
+            AttackerStore store = createStore(size);
+            // Small hordes need many more runs before the JIT has compiled the loops
+            int runs = (int) Math.max(MIN_RUNS, UPDATES_PER_PHASE / ((long) size * RESET_TICKS));
+
+            // Alternate between the layouts while warming up so neither gets a head start
+            for(int run = 0; run < runs; run++) {
+                runObjects(objects);
+                runStore(store);
+            }
+            long objectTime = 0;
+            long storeTime = 0;
+            for(int run = 0; run < runs; run++) {
+                objectTime += runObjects(objects);
+                storeTime += runStore(store);
+            }
+
+            double ticks = (double) runs * RESET_TICKS;
+            double objectPerTick = objectTime / ticks;
+            double storePerTick = storeTime / ticks;
+            System.out.println(String.format("%10d %18.0f %18.0f %9.1fx", size, objectPerTick, storePerTick,
+                    objectPerTick / storePerTick));
+        }
+        System.out.println("(blackhole " + sBlackhole + ")");
+    }
+
+    private static long runObjects(Attacker[] attackers) {
+        for(Attacker a : attackers) {
+            a.kill();
+            a.revive();
+            a.play(WALK, true);
+        }
+
+        long start = System.nanoTime();
+        float damage = 0f;
+        for(int tick = 0; tick < RESET_TICKS; tick++) {
+            for(int i = 0; i < attackers.length; i++) {
+                Attacker a = attackers[i];
+                a.update(FRAME_TIME);
+                if(a.getX() > MIN_STOP_X) {
+                    a.play(ATTACK, true);
+                    a.setPosition(MIN_STOP_X, a.getY());
+                    damage += a.getHitDamage();
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        sBlackhole += damage;
+        return elapsed;
+    }
+
+    private static long runStore(AttackerStore store) {
+        store.killAll();
+        for(int archetype = 0; archetype < store.getArchetypeCount(); archetype++) {
+            while(store.obtain(archetype) >= 0) {
+                // Revive the whole horde
+            }
+        }
+
+        long start = System.nanoTime();
+        float damage = 0f;
+        for(int tick = 0; tick < RESET_TICKS; tick++) {
+            float dealt = store.advance(FRAME_TIME, MIN_STOP_X);
+            if(dealt > 0f) {
+                damage += dealt;
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        sBlackhole += damage;
+        return elapsed;
+    }
+
+    private static Attacker[] createObjects(int size) {
+        AnimationSet standard = new AnimationSet(new String[] { "walk" },
+                new Animation[] { blankAnimation(0.055f, 16) });
+        AnimationSet knight = new AnimationSet(new String[] { "walk", "attack" },
+                new Animation[] { blankAnimation(0.125f, 8), blankAnimation(0.25f, 4) });
+
+        Random random = new Random(size);
+        Attacker[] attackers = new Attacker[size];
+        for(int i = 0; i < size; i++) {
+            float walkSpeed = 150f + random.nextFloat() * 120f;
+            float startX = -100f + random.nextFloat() * 600f;
+            float y = 65f + random.nextFloat() * 30f;
+            if(i % 2 == 0) {
+                attackers[i] = new Attacker(1f, walkSpeed, startX, y, 64f, 64f, "normal", standard);
+            } else {
+                attackers[i] = new Attacker(2f, walkSpeed * 0.75f, startX, y, 64f, 128f, "knight", knight);
+            }
+        }
+        return attackers;
+    }
+
+    private static AttackerStore createStore(int size) {
+        // Same seed as createObjects, so both layouts get identical attackers
+        Random random = new Random(size);
+        ArchetypeRegistry archetypes = ArchetypeRegistry.getDefault();
+        int normal = archetypes.find("normal");
+        int knight = archetypes.find("knight");
+        AttackerStore store = new AttackerStore(archetypes, size);
+        for(int i = 0; i < size; i++) {
+            float walkSpeed = 150f + random.nextFloat() * 120f;
+            float startX = -100f + random.nextFloat() * 600f;
+            float y = 65f + random.nextFloat() * 30f;
+            if(i % 2 == 0) {
+                store.add(normal, 1f, walkSpeed, startX, y);
+            } else {
+                store.add(knight, 2f, walkSpeed * 0.75f, startX, y);
+            }
+        }
+        return store;
+    }
+
+    private static Animation blankAnimation(float frameDuration, int frameCount) {
+        TextureRegion[] frames = new TextureRegion[frameCount];
+        for(int i = 0; i < frameCount; i++) {
+            frames[i] = new TextureRegion();
+        }
+        return new Animation(frameDuration, frames);
+    }
+}
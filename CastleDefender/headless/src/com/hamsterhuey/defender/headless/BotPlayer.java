@@ -0,0 +1,18 @@
+package com.hamsterhuey.defender.headless;
+
+import com.hamsterhuey.defender.DefenderSimulation;
+
+/**
+ * Interface for anything that plays the game in place of a person, called once before every step
+ *
+ * A bot only gets to do what a player can: read the state the game shows and tap it through
+ * DefenderSimulation.tap, so every tap goes through the same buttons and attacker hit tests as a real one
+ */
+public interface BotPlayer {
+    /**
+     * Method to look at the game and queue whatever taps the bot wants handled on the next step
+     *
+     * @param simulation: The game being played, between two steps
+     */
+    void act(DefenderSimulation simulation);
+}
@@ -0,0 +1,376 @@
+package com.hamsterhuey.defender.headless;
+
+import com.hamsterhuey.defender.ArchetypeRegistry;
+import com.hamsterhuey.defender.DefenderSimulation;
+import com.hamsterhuey.defender.DifficultyCurve;
+import com.hamsterhuey.defender.SeededRandom;
+import com.hamsterhuey.defender.WaveScript;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Plays thousands of games with a TappingBot for each of a set of DifficultyCurve tunings, on every core,
+ * and prints how many rounds the bot survived and what it scored for each tuning
+ *
+ * Any curve parameter can be given a comma separated list of values, and every combination of them is run.
+ * Game g gets its own seeds from SeededRandom.streamSeed(seed, g), the same game for every tuning, so two
+ * tunings are compared on the same attackers and the same bot rather than on luck. Games are handed to the
+ * threads one at a time off a shared counter, and the results only depend on the seed, never the thread count.
+ * Tunings whose curve goes invalid before the round cap (see DifficultyCurve.findInvalidRound) are reported
+ * and skipped instead of played
+ *
+ * Usage: DifficultySweep [name=value[,value...]] ... with the names
+ *   games, rounds (cap), accuracy, reaction (ticks), seed, threads, csv (file for one line per game),
+ *   waves (a wave script file like the game's waves.json, played in every game)
+ *   knightStart, knightStep, knightMax, attackersStart, attackersStep, timeStart, timeStep,
+ *   spawnMin, spawnMax, spawnStep, spawnFloor
+ * For example: DifficultySweep games=2000 spawnStep=3,5 spawnFloor=10,20
+ */
+public class DifficultySweep {
+    private static final float FRAME_TIME = DefenderSimulation.TICK_SECONDS;
+
+    // The curve parameters, in the order they are printed
+    private static final String[] PARAMETERS = { "knightStart", "knightStep", "knightMax", "attackersStart",
+            "attackersStep", "timeStart", "timeStep", "spawnMin", "spawnMax", "spawnStep", "spawnFloor" };
+    private static final int KNIGHT_START = 0;
+    private static final int KNIGHT_STEP = 1;
+    private static final int KNIGHT_MAX = 2;
+    private static final int ATTACKERS_START = 3;
+    private static final int ATTACKERS_STEP = 4;
+    private static final int TIME_START = 5;
+    private static final int TIME_STEP = 6;
+    private static final int SPAWN_MIN = 7;
+    private static final int SPAWN_MAX = 8;
+    private static final int SPAWN_STEP = 9;
+    private static final int SPAWN_FLOOR = 10;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int games = 1000;
+        int roundCap = 30;
+        float accuracy = 0.8f;
+        int reactionTicks = 15;
+        long seed = 1L;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String csvPath = null;
+        WaveScript waveScript = null;
+
+        // Every parameter starts with the game's own tuning as its only value
+        DifficultyCurve defaults = new DifficultyCurve();
+        String[][] values = new String[PARAMETERS.length][];
+        float[] defaultValues = toValues(defaults);
+        for(int p = 0; p < PARAMETERS.length; p++) {
+            values[p] = new String[] { format(defaultValues[p]) };
+        }
+
+        for(String arg : args) {
+            int equals = arg.indexOf('=');
+            if(equals < 0)
+                usage("Expected name=value, got " + arg);
+            String name = arg.substring(0, equals);
+            String value = arg.substring(equals + 1);
+            if(name.equals("games"))
+                games = Integer.parseInt(value);
+            else if(name.equals("rounds"))
+                roundCap = Integer.parseInt(value);
+            else if(name.equals("accuracy"))
+                accuracy = Float.parseFloat(value);
+            else if(name.equals("reaction"))
+                reactionTicks = Integer.parseInt(value);
+            else if(name.equals("seed"))
+                seed = Long.parseLong(value);
+            else if(name.equals("threads"))
+                threads = Integer.parseInt(value);
+            else if(name.equals("csv"))
+                csvPath = value;
+            else if(name.equals("waves"))
+                waveScript = SoakRunner.loadWaveScript(value, ArchetypeRegistry.getDefault());
+            else {
+                int p = Arrays.asList(PARAMETERS).indexOf(name);
+                if(p < 0)
+                    usage("Unknown parameter " + name);
+                values[p] = value.split(",");
+            }
+        }
+
+        // Every combination of the values given, invalid ones reported up front
+        List<float[]> tunings = new ArrayList<float[]>();
+        combine(values, 0, new float[PARAMETERS.length], tunings);
+        List<DifficultyCurve> curves = new ArrayList<DifficultyCurve>();
+        List<float[]> runTunings = new ArrayList<float[]>();
+        for(float[] tuning : tunings) {
+            DifficultyCurve curve = toCurve(tuning);
+            int invalidRound = curve.findInvalidRound(roundCap);
+            if(invalidRound > 0) {
+                System.out.println("INVALID from round " + invalidRound + ": " + describe(tuning));
+                continue;
+            }
+            curves.add(curve);
+            runTunings.add(tuning);
+        }
+        System.out.println("Playing " + games + " games of up to " + roundCap + " rounds for each of " + curves.size()
+                + " tunings on " + threads + " threads (accuracy " + accuracy + ", reaction " + reactionTicks
+                + " ticks, seed " + seed + ")");
+
+        int[][] survival = new int[curves.size()][games];
+        float[][] scores = new float[curves.size()][games];
+        int[][] violations = new int[curves.size()][games];
+        long start = System.nanoTime();
+        long ticks = play(curves, waveScript, games, roundCap, accuracy, reactionTicks, seed, threads, survival, scores,
+                violations);
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(String.format("%d games, %d ticks in %.1f s (%.0f ticks/s)", curves.size() * games, ticks,
+                wallSeconds, ticks / wallSeconds));
+
+        for(int t = 0; t < curves.size(); t++) {
+            System.out.println();
+            System.out.println(describe(runTunings.get(t)));
+            report(survival[t], scores[t], violations[t], roundCap);
+        }
+        if(csvPath != null)
+            writeCsv(csvPath, runTunings, seed, survival, scores, violations);
+    }
+
+    // Plays every game of every curve on a pool of threads and returns the ticks stepped in all
+    private static long play(final List<DifficultyCurve> curves, final WaveScript waveScript, final int games,
+                             final int roundCap, final float accuracy, final int reactionTicks, final long seed,
+                             int threads, final int[][] survival, final float[][] scores, final int[][] violations)
+            throws InterruptedException {
+        final int jobs = curves.size() * games;
+        final AtomicInteger nextJob = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        final long[] threadTicks = new long[threads];
+        final CountDownLatch done = new CountDownLatch(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int mCount = 0;
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Sweep-" + mCount++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for(int w = 0; w < threads; w++) {
+            final int worker = w;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        int job;
+                        while((job = nextJob.getAndIncrement()) < jobs) {
+                            int t = job / games;
+                            int g = job % games;
+                            threadTicks[worker] += playGame(curves.get(t), waveScript, roundCap, accuracy, reactionTicks,
+                                    SeededRandom.streamSeed(seed, 2L * g), SeededRandom.streamSeed(seed, 2L * g + 1L),
+                                    survival[t], scores[t], violations[t], g);
+                            int count = finished.incrementAndGet();
+                            if(count % Math.max(jobs / 10, 1) == 0)
+                                System.out.println("  " + count + " / " + jobs + " games");
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        executor.shutdown();
+
+        long ticks = 0;
+        for(long count : threadTicks) {
+            ticks += count;
+        }
+        return ticks;
+    }
+
+    // Plays one game to its end or the round cap, writes its results at index g and returns the ticks it took
+    private static long playGame(DifficultyCurve curve, WaveScript waveScript, int roundCap, float accuracy,
+                                 int reactionTicks, long gameSeed, long botSeed, int[] survival, float[] scores,
+                                 int[] violations, int g) {
+        DefenderSimulation simulation = new DefenderSimulation(null, gameSeed);
+        simulation.setDifficultyCurve(curve);
+        simulation.setWaveScript(waveScript);
+        TappingBot bot = new TappingBot(accuracy, reactionTicks, botSeed);
+        int broken = 0;
+        long ticks = 0;
+        boolean started = false;
+        while(true) {
+            bot.act(simulation);
+            simulation.step(FRAME_TIME);
+            ticks++;
+            broken |= simulation.checkInvariants();
+
+            int gameState = simulation.getGameState();
+            if(gameState != DefenderSimulation.STATE_PRE_GAME)
+                started = true;
+            if(started && gameState == DefenderSimulation.STATE_GAME_OVER) {
+                // The round the castle fell in, its score counts for the spread even though the game doesn't add it
+                survival[g] = simulation.getRoundNumber();
+                scores[g] = simulation.getTotalScore() + simulation.getRoundScore();
+                break;
+            }
+            if(gameState == DefenderSimulation.STATE_ROUND_OVER && simulation.getRoundNumber() > roundCap) {
+                survival[g] = roundCap + 1; // Outlived the cap
+                scores[g] = simulation.getTotalScore();
+                break;
+            }
+        }
+        violations[g] = broken;
+        return ticks;
+    }
+
+    private static void report(int[] survival, float[] scores, int[] violations, int roundCap) {
+        int games = survival.length;
+        int[] sortedSurvival = Arrays.copyOf(survival, games);
+        float[] sortedScores = Arrays.copyOf(scores, games);
+        Arrays.sort(sortedSurvival);
+        Arrays.sort(sortedScores);
+
+        long survivalTotal = 0;
+        double scoreTotal = 0.0;
+        int capped = 0;
+        int brokenGames = 0;
+        int brokenMask = 0;
+        for(int g = 0; g < games; g++) {
+            survivalTotal += survival[g];
+            scoreTotal += scores[g];
+            if(survival[g] > roundCap)
+                capped++;
+            if(violations[g] != 0) {
+                brokenGames++;
+                brokenMask |= violations[g];
+            }
+        }
+
+        System.out.println(String.format("  Round lost in:  mean %.2f, p10 %d, p50 %d, p90 %d, max %d, %.1f%% outlived the cap",
+                (double) survivalTotal / games, sortedSurvival[percentile(games, 10)],
+                sortedSurvival[percentile(games, 50)], sortedSurvival[percentile(games, 90)],
+                sortedSurvival[games - 1], 100.0 * capped / games));
+        System.out.println(String.format("  Score:          mean %.0f, p10 %.0f, p50 %.0f, p90 %.0f, max %.0f",
+                scoreTotal / games, sortedScores[percentile(games, 10)], sortedScores[percentile(games, 50)],
+                sortedScores[percentile(games, 90)], sortedScores[games - 1]));
+
+        // One bar per round, scaled to the most common one
+        int[] histogram = new int[roundCap + 2];
+        int most = 0;
+        for(int g = 0; g < games; g++) {
+            most = Math.max(most, ++histogram[survival[g]]);
+        }
+        for(int round = 1; round < histogram.length; round++) {
+            if(histogram[round] == 0)
+                continue;
+            StringBuilder bar = new StringBuilder();
+            for(int i = 0; i < histogram[round] * 40 / most; i++) {
+                bar.append('#');
+            }
+            System.out.println(String.format("    %5s %6d %s", round > roundCap ? ">" + roundCap : String.valueOf(round),
+                    histogram[round], bar));
+        }
+
+        if(brokenGames > 0) {
+            StringBuilder names = new StringBuilder();
+            for(int k = 0; k < DefenderSimulation.INVARIANT_COUNT; k++) {
+                if((brokenMask & (1 << k)) != 0)
+                    names.append(names.length() > 0 ? ", " : "").append(DefenderSimulation.INVARIANT_NAMES[k]);
+            }
+            System.out.println("  VIOLATED in " + brokenGames + " games: " + names);
+        }
+    }
+
+    private static int percentile(int count, int percent) {
+        return Math.min((int) ((long) count * percent / 100), count - 1);
+    }
+
+    private static void writeCsv(String path, List<float[]> tunings, long seed, int[][] survival, float[][] scores,
+                                 int[][] violations) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(path));
+        try {
+            StringBuilder header = new StringBuilder();
+            for(String parameter : PARAMETERS) {
+                header.append(parameter).append(',');
+            }
+            out.println(header + "game,seed,round_lost,score,violations");
+            for(int t = 0; t < tunings.size(); t++) {
+                StringBuilder tuning = new StringBuilder();
+                for(float value : tunings.get(t)) {
+                    tuning.append(format(value)).append(',');
+                }
+                for(int g = 0; g < survival[t].length; g++) {
+                    out.println(tuning.toString() + g + ',' + SeededRandom.streamSeed(seed, 2L * g) + ','
+                            + survival[t][g] + ',' + scores[t][g] + ',' + violations[t][g]);
+                }
+            }
+        } finally {
+            out.close();
+        }
+        System.out.println();
+        System.out.println("Games written to " + path);
+    }
+
+    // Fills every combination of values, one parameter per level of recursion
+    private static void combine(String[][] values, int p, float[] tuning, List<float[]> tunings) {
+        if(p == values.length) {
+            tunings.add(Arrays.copyOf(tuning, tuning.length));
+            return;
+        }
+        for(String value : values[p]) {
+            tuning[p] = Float.parseFloat(value);
+            combine(values, p + 1, tuning, tunings);
+        }
+    }
+
+    private static float[] toValues(DifficultyCurve curve) {
+        float[] tuning = new float[PARAMETERS.length];
+        tuning[KNIGHT_START] = curve.getKnightChanceStart();
+        tuning[KNIGHT_STEP] = curve.getKnightChanceStep();
+        tuning[KNIGHT_MAX] = curve.getKnightChanceMax();
+        tuning[ATTACKERS_START] = curve.getMaxAttackersStart();
+        tuning[ATTACKERS_STEP] = curve.getMaxAttackersStep();
+        tuning[TIME_START] = curve.getRoundTimeStart();
+        tuning[TIME_STEP] = curve.getRoundTimeStep();
+        tuning[SPAWN_MIN] = curve.getSpawnTimeMinStart();
+        tuning[SPAWN_MAX] = curve.getSpawnTimeMaxStart();
+        tuning[SPAWN_STEP] = curve.getSpawnTimeStep();
+        tuning[SPAWN_FLOOR] = curve.getSpawnTimeFloor();
+        return tuning;
+    }
+
+    private static DifficultyCurve toCurve(float[] tuning) {
+        DifficultyCurve curve = new DifficultyCurve();
+        curve.setKnightChance(tuning[KNIGHT_START], tuning[KNIGHT_STEP], tuning[KNIGHT_MAX]);
+        curve.setMaxAttackers((int) tuning[ATTACKERS_START], (int) tuning[ATTACKERS_STEP]);
+        curve.setRoundTime(tuning[TIME_START], tuning[TIME_STEP]);
+        curve.setSpawnTime((int) tuning[SPAWN_MIN], (int) tuning[SPAWN_MAX], (int) tuning[SPAWN_STEP],
+                (int) tuning[SPAWN_FLOOR]);
+        return curve;
+    }
+
+    private static String describe(float[] tuning) {
+        StringBuilder text = new StringBuilder();
+        for(int p = 0; p < PARAMETERS.length; p++) {
+            text.append(p > 0 ? " " : "").append(PARAMETERS[p]).append('=').append(format(tuning[p]));
+        }
+        return text.toString();
+    }
+
+    // Whole numbers without the ".0", so integer parameters read the way they were typed
+    private static String format(float value) {
+        return value == (int) value ? String.valueOf((int) value) : String.valueOf(value);
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: DifficultySweep [name=value[,value...]] ...");
+        System.exit(2);
+    }
+}
@@ -0,0 +1,105 @@
+package com.hamsterhuey.defender.headless;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.hamsterhuey.defender.AttackerStore;
+import com.hamsterhuey.defender.DefenderButtons;
+import com.hamsterhuey.defender.DefenderSimulation;
+import com.hamsterhuey.defender.ReplayRecorder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Runs the defender simulation on a plain JVM, with no window, GL context or assets
+ *
+ * Steps the game at a fixed 60 frames per second of game time as fast as the CPU allows,
+ * pressing through the menus and tapping an attacker every few frames so rounds keep going.
+ * Useful for soak tests and for attaching a profiler to the game rules alone
+ *
+ * Usage: HeadlessRunner [frames] [endless] [replay file] - "endless" lifts the cap on living attackers, so the horde
+ * keeps growing (pass anything else to keep the cap), and a replay file records the session for ReplayRunner
+ */
+public class HeadlessRunner {
+    private static final float FRAME_TIME = DefenderSimulation.TICK_SECONDS;
+    private static final int TAP_INTERVAL = 20; // Frames between taps at an attacker
+
+    public static void main(String[] args) throws IOException {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        boolean endless = args.length > 1 && args[1].equals("endless");
+        String replayPath = args.length > 2 ? args[2] : null;
+
+        DefenderSimulation simulation = createSimulation();
+        ReplayRecorder recorder = null;
+        if(replayPath != null) {
+            recorder = new ReplayRecorder(new FileOutputStream(replayPath), simulation.getSeed(),
+                    simulation.getArchetypeRegistry().getSource());
+            simulation.setRecorder(recorder);
+        }
+        simulation.setEndlessHorde(endless);
+        int gamesPlayed = 0;
+        int highestRound = 1;
+        int largestHorde = 0;
+
+        long start = System.nanoTime();
+        for(int frame = 0; frame < frames; frame++) {
+            switch (simulation.getGameState()) {
+                case DefenderSimulation.STATE_PRE_GAME:
+                case DefenderSimulation.STATE_GAME_OVER:
+                    gamesPlayed++;
+                    tapButton(simulation, DefenderButtons.TYPE_NEW_GAME);
+                    break;
+                case DefenderSimulation.STATE_ROUND_OVER:
+                    tapButton(simulation, DefenderButtons.TYPE_CONTINUE_NEXT_ROUND);
+                    break;
+                case DefenderSimulation.STATE_ROUND_PLAY:
+                    if(frame % TAP_INTERVAL == 0) {
+                        tapFirstLivingAttacker(simulation);
+                    }
+                    break;
+            }
+            simulation.step(FRAME_TIME);
+            highestRound = Math.max(highestRound, simulation.getRoundNumber());
+            largestHorde = Math.max(largestHorde, simulation.getAttackers().getLiveCount());
+        }
+        long elapsed = System.nanoTime() - start;
+        if(recorder != null) {
+            recorder.finish(simulation.getTickCount(), simulation.getStateHash());
+            if(recorder.getFailure() != null)
+                throw recorder.getFailure();
+            System.out.println("Replay written:  " + replayPath + " (" + recorder.getBytesWritten() + " bytes, hash "
+                    + Long.toHexString(simulation.getStateHash()) + ")");
+        }
+
+        double wallSeconds = elapsed / 1e9;
+        double gameSeconds = frames * FRAME_TIME;
+        System.out.println("Frames stepped:  " + frames);
+        System.out.println("Games started:   " + gamesPlayed);
+        System.out.println("Highest round:   " + highestRound);
+        System.out.println("Largest horde:   " + largestHorde + " (pool of " + simulation.getAttackers().size() + ")");
+        System.out.println("Wall time:       " + String.format("%.3f s", wallSeconds));
+        System.out.println("Game time:       " + String.format("%.1f s", gameSeconds));
+        System.out.println("Speed:           " + String.format("%.0fx real time (%.0f ns/frame)",
+                gameSeconds / wallSeconds, (double) elapsed / frames));
+    }
+
+    /**
+     * Builds a simulation with nothing attached to it
+     * @return simulation: A simulation in the pre-game state with saving disabled
+     */
+    public static DefenderSimulation createSimulation() {
+        return new DefenderSimulation(null);
+    }
+
+    private static void tapButton(DefenderSimulation simulation, int type) {
+        Rectangle rect = simulation.getButtons()[type].getRect();
+        simulation.tap(rect.x + rect.width / 2f, rect.y + rect.height / 2f);
+    }
+
+    private static void tapFirstLivingAttacker(DefenderSimulation simulation) {
+        AttackerStore attackers = simulation.getAttackers();
+        if(attackers.getLiveCount() > 0) {
+            int i = attackers.getLive(0);
+            simulation.tap(attackers.getX(i) + attackers.getWidth(i) / 2f, attackers.getY(i) + attackers.getHeight(i) / 2f);
+        }
+    }
+}
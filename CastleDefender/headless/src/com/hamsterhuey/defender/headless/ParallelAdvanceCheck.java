@@ -0,0 +1,137 @@
+package com.hamsterhuey.defender.headless;
+
+import com.hamsterhuey.defender.AdvancePool;
+import com.hamsterhuey.defender.ArchetypeRegistry;
+import com.hamsterhuey.defender.AttackerStore;
+
+import java.util.Random;
+
+/**
+ * Checks that advancing a horde on an AdvancePool gives bit-identical results to advancing it on one thread
+ *
+ * Two stores are filled with the same attackers and put through the same ticks, kills and revives - one always
+ * advances alone, the other shares every advance out between the pool's threads. After every tick the damage
+ * dealt must match to the bit, and every CHECK_TICKS ticks every attacker is compared: whether it is alive, its
+ * x before and after the tick, its state time and animation, and which attacker findFirstAt returns at points
+ * spread over the walkway. Any difference is a broken ordered reduction, so it is reported and the run fails
+ *
+ * Usage: ParallelAdvanceCheck [horde size] [ticks] [helper threads] [seed] - exits with status 1 if the modes differ
+ */
+public class ParallelAdvanceCheck {
+    private static final float FRAME_TIME = 1f / 60f;
+    private static final float MIN_STOP_X = 585f; // Same as DefenderSimulation
+    private static final int CHECK_TICKS = 10;    // Ticks between full comparisons
+    private static final int CHURN = 64;          // Attackers killed and revived each tick, so the live list keeps reordering
+    private static final int PROBES = 256;        // findFirstAt points per full comparison
+    private static final int MAX_REPORTED = 10;   // Differences printed before the rest are only counted
+
+    private static long sDifferences;
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 600;
+        int helperThreads = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+
+        AttackerStore sequential = createStore(size, seed);
+        AttackerStore parallel = createStore(size, seed);
+        AdvancePool pool = new AdvancePool(helperThreads);
+        parallel.setAdvancePool(pool, 0); // Every advance goes through the pool, however small the horde gets
+        reviveAll(sequential);
+        reviveAll(parallel);
+        System.out.println("Checking " + size + " attackers for " + ticks + " ticks, " + helperThreads
+                + " helper threads, seed " + seed);
+
+        Random churn = new Random(seed ^ 0x5DEECE66DL);
+        Random probes = new Random(seed + 1L);
+        try {
+            for(int tick = 1; tick <= ticks; tick++) {
+                // The same attackers die and come back in both stores, so both live lists get the same order
+                for(int k = 0; k < CHURN; k++) {
+                    int i = churn.nextInt(size);
+                    if(sequential.isAlive(i)) {
+                        sequential.kill(i);
+                        parallel.kill(i);
+                    } else {
+                        int archetype = sequential.getArchetype(i);
+                        sequential.obtain(archetype);
+                        parallel.obtain(archetype);
+                    }
+                }
+
+                float sequentialDamage = sequential.advance(FRAME_TIME, MIN_STOP_X);
+                float parallelDamage = parallel.advance(FRAME_TIME, MIN_STOP_X);
+                if(Float.floatToIntBits(sequentialDamage) != Float.floatToIntBits(parallelDamage))
+                    report(tick, "damage " + sequentialDamage + " vs " + parallelDamage);
+                if(tick % CHECK_TICKS == 0 || tick == ticks)
+                    compare(tick, sequential, parallel, probes);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        if(sDifferences > 0L) {
+            System.out.println(sDifferences + " differences between sequential and parallel advance");
+            System.exit(1);
+        }
+        System.out.println("Sequential and parallel advance identical");
+    }
+
+    // Every attacker, alive or dead, then findFirstAt at random points over the walkway
+    private static void compare(int tick, AttackerStore sequential, AttackerStore parallel, Random probes) {
+        if(sequential.getLiveCount() != parallel.getLiveCount())
+            report(tick, "live count " + sequential.getLiveCount() + " vs " + parallel.getLiveCount());
+        for(int i = 0; i < sequential.size(); i++) {
+            if(sequential.isAlive(i) != parallel.isAlive(i))
+                report(tick, "attacker " + i + " alive " + sequential.isAlive(i) + " vs " + parallel.isAlive(i));
+            compareFloat(tick, i, "x", sequential.getX(i), parallel.getX(i));
+            compareFloat(tick, i, "previous x", sequential.getPreviousX(i), parallel.getPreviousX(i));
+            compareFloat(tick, i, "state time", sequential.getStateTime(i), parallel.getStateTime(i));
+            if(sequential.getAnimation(i) != parallel.getAnimation(i))
+                report(tick, "attacker " + i + " animation " + sequential.getAnimation(i) + " vs " + parallel.getAnimation(i));
+        }
+        for(int p = 0; p < PROBES; p++) {
+            float x = -100f + probes.nextFloat() * (MIN_STOP_X + 164f);
+            float y = 65f + probes.nextFloat() * 158f;
+            int first = sequential.findFirstAt(x, y);
+            if(first != parallel.findFirstAt(x, y))
+                report(tick, "findFirstAt(" + x + ", " + y + ") " + first + " vs " + parallel.findFirstAt(x, y));
+        }
+    }
+
+    private static void compareFloat(int tick, int i, String name, float sequential, float parallel) {
+        if(Float.floatToIntBits(sequential) != Float.floatToIntBits(parallel))
+            report(tick, "attacker " + i + " " + name + " " + sequential + " vs " + parallel);
+    }
+
+    private static void report(int tick, String difference) {
+        if(sDifferences < MAX_REPORTED)
+            System.out.println("Tick " + tick + ": " + difference);
+        sDifferences++;
+    }
+
+    // Half normal and half knights, with the game's speeds and lanes, spread between the spawn point and the wall
+    private static AttackerStore createStore(int size, long seed) {
+        ArchetypeRegistry archetypes = ArchetypeRegistry.getDefault();
+        int normal = archetypes.find("normal");
+        int knight = archetypes.find("knight");
+        Random random = new Random(seed);
+        AttackerStore store = new AttackerStore(archetypes, size);
+        for(int i = 0; i < size; i++) {
+            int archetype = i % 2 == 0 ? normal : knight;
+            float walkSpeed = archetypes.getMinSpeed(archetype) + random.nextFloat() * archetypes.getSpeedVariance(archetype);
+            float startX = -100f + random.nextFloat() * (MIN_STOP_X + 100f);
+            float y = 65f + random.nextFloat() * 30f;
+            store.add(archetype, archetypes.getHitDamage(archetype), walkSpeed, startX, y);
+        }
+        return store;
+    }
+
+    private static void reviveAll(AttackerStore store) {
+        for(int archetype = 0; archetype < store.getArchetypeCount(); archetype++) {
+            while(store.obtain(archetype) >= 0) {
+                // Keep popping the free list until it is empty
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.hamsterhuey.defender.headless;
+
+import com.hamsterhuey.defender.DefenderSimulation;
+import com.hamsterhuey.defender.ReplayPlayer;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+
+/**
+ * Plays a recorded session on a plain JVM as fast as the CPU allows, and checks it ends in the recorded state
+ *
+ * Recordings come from the game (replays/last.replay in the app's local storage) or from HeadlessRunner.
+ * Exits with status 1 if the replay doesn't match, so a script can bisect a change that broke determinism
+ *
+ * Usage: ReplayRunner <replay file>
+ */
+public class ReplayRunner {
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1) {
+            System.err.println("Usage: ReplayRunner <replay file>");
+            System.exit(2);
+        }
+
+        long start = System.nanoTime();
+        ReplayPlayer player = new ReplayPlayer(new FileInputStream(args[0]));
+        player.play();
+        long elapsed = System.nanoTime() - start;
+
+        DefenderSimulation simulation = player.getSimulation();
+        double wallSeconds = elapsed / 1e9;
+        double gameSeconds = player.getTick() * DefenderSimulation.TICK_SECONDS;
+        System.out.println("Ticks replayed:  " + player.getTick());
+        System.out.println("Final round:     " + simulation.getRoundNumber() + ", state " + simulation.getGameState());
+        System.out.println("Wall time:       " + String.format("%.3f s", wallSeconds));
+        System.out.println("Speed:           " + String.format("%.0fx real time", gameSeconds / wallSeconds));
+        if(!player.isComplete()) {
+            System.out.println("Recording ends without a state hash (the app was stopped), nothing to verify");
+            return;
+        }
+        System.out.println("State hash:      " + Long.toHexString(simulation.getStateHash()) + " (recorded "
+                + Long.toHexString(player.getExpectedHash()) + ")");
+        if(player.isVerified()) {
+            System.out.println("Replay verified");
+        } else {
+            System.out.println("Replay DIVERGED");
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.hamsterhuey.defender.headless;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.hamsterhuey.defender.ArchetypeRegistry;
+import com.hamsterhuey.defender.DefenderButtons;
+import com.hamsterhuey.defender.DefenderSimulation;
+import com.hamsterhuey.defender.FileSaveStore;
+import com.hamsterhuey.defender.SaveJournal;
+import com.hamsterhuey.defender.SaveStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Checks that a saved game survives the ways a session can end badly, each in a fresh temporary directory
+ *
+ * - Killed mid-round: a game is saved when paused, plays on until the castle has taken more damage, and is dropped
+ *   without the journal ever being flushed. A new store on the same file must continue with the round, castle
+ *   health and total score of the last checkpoint, not those of the snapshot
+ * - Torn last record: the newest record in the journal is corrupted, as a crash halfway through writing it would.
+ *   Reopened, the journal must fall back to the record before it
+ * - Lost compaction snapshot: the journal starts over for a snapshot that never reaches the disk. Its records from
+ *   before must still be found for the snapshot that is on disk, and none for the one that was lost
+ *
+ * Usage: SaveRecoveryCheck [seed] - exits with status 1 if any scenario doesn't recover what it should
+ */
+public class SaveRecoveryCheck {
+    private static final int MAX_TICKS = 60 * 60 * 5; // Ticks a scenario may wait for the checkpoint it needs
+    private static final int RECORDS = 5;             // Records journaled before one is torn
+
+    private static int sFailures;
+
+    public static void main(String[] args) throws IOException {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 1L;
+
+        checkKilledMidRound(seed);
+        checkTornRecord();
+        checkLostSnapshot();
+
+        if(sFailures > 0) {
+            System.out.println(sFailures + " recovery checks failed");
+            System.exit(1);
+        }
+        System.out.println("Saved games recovered");
+    }
+
+    private static void checkKilledMidRound(long seed) throws IOException {
+        File directory = createDirectory();
+        File file = new File(directory, "game.sav");
+        ArchetypeRegistry archetypes = ArchetypeRegistry.getDefault();
+
+        FileSaveStore killed = new FileSaveStore(file, archetypes);
+        CheckpointStore store = new CheckpointStore(killed);
+        DefenderSimulation simulation = new DefenderSimulation(store, seed, archetypes);
+        simulation.step(DefenderSimulation.TICK_SECONDS);
+        tapButton(simulation, DefenderButtons.TYPE_NEW_GAME);
+        if(!stepUntilHealthCheckpoint(simulation, store)) {
+            fail("killed mid-round", "the castle never took damage");
+            return;
+        }
+
+        // Pausing mid-round saves a snapshot, the castle keeps losing health after it only in the journal
+        simulation.pause();
+        float savedHealth = simulation.getCastleHealth();
+        simulation.resume();
+        if(!stepUntilHealthCheckpoint(simulation, store) || !(store.mHealth < savedHealth)) {
+            fail("killed mid-round", "the castle took no damage after the snapshot");
+            return;
+        }
+        // The snapshot write is let finish, nothing is flushed or closed - the process is gone from here
+        killed.shutdown();
+
+        FileSaveStore reopened = new FileSaveStore(file, archetypes);
+        DefenderSimulation recovered = new DefenderSimulation(reopened, seed + 1L, archetypes);
+        recovered.step(DefenderSimulation.TICK_SECONDS);
+        tapButton(recovered, DefenderButtons.TYPE_RESUME_SAVED_GAME);
+        if(recovered.getGameState() != DefenderSimulation.STATE_ROUND_START)
+            fail("killed mid-round", "resumed into state " + recovered.getGameState());
+        expect("killed mid-round", "round", store.mRoundNumber, recovered.getRoundNumber());
+        expect("killed mid-round", "castle health", store.mHealth, recovered.getCastleHealth());
+        expect("killed mid-round", "total score", store.mTotalScore, recovered.getTotalScore());
+        reopened.shutdown();
+        delete(directory);
+    }
+
+    private static void checkTornRecord() throws IOException {
+        File directory = createDirectory();
+        File file = new File(directory, "game.journal");
+
+        SaveJournal journal = new SaveJournal(file);
+        for(int i = 0; i < RECORDS; i++) {
+            journal.append(SaveStore.CHECKPOINT_CASTLE_HEALTH, 1, 900f - i, 0f);
+        }
+        // Flip a byte of the newest record's castle health, so its checksum no longer matches
+        int record = journal.findRecovery(0);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.seek(record + 9);
+            int value = raf.read();
+            raf.seek(record + 9);
+            raf.write(value ^ 0x7F);
+        } finally {
+            raf.close();
+        }
+
+        journal = new SaveJournal(file);
+        record = journal.findRecovery(0);
+        if(record < 0)
+            fail("torn record", "no record recovered");
+        else
+            expect("torn record", "castle health", 900f - (RECORDS - 2), journal.getCastleHealth(record));
+        delete(directory);
+    }
+
+    private static void checkLostSnapshot() throws IOException {
+        File directory = createDirectory();
+        File file = new File(directory, "game.journal");
+        int savedChecksum = 99;  // The snapshot on disk
+        int lostChecksum = 1234; // The snapshot the journal starts over for, which never lands
+
+        SaveJournal journal = new SaveJournal(file);
+        journal.compact(savedChecksum);
+        journal.append(SaveStore.CHECKPOINT_CASTLE_HEALTH, 2, 500f, 10f);
+        journal.compact(lostChecksum);
+
+        journal = new SaveJournal(file);
+        int record = journal.findRecovery(savedChecksum);
+        if(record < 0)
+            fail("lost snapshot", "the records before the lost snapshot are gone");
+        else
+            expect("lost snapshot", "castle health", 500f, journal.getCastleHealth(record));
+        if(journal.findRecovery(lostChecksum) >= 0)
+            fail("lost snapshot", "records recovered for a snapshot that already holds them");
+
+        // Once the new half has records of its own they are the newest, whichever snapshot is on disk
+        journal.append(SaveStore.CHECKPOINT_ROUND_OVER, 3, 700f, 20f);
+        journal = new SaveJournal(file);
+        record = journal.findRecovery(lostChecksum);
+        if(record < 0)
+            fail("lost snapshot", "the new half's record is gone");
+        else
+            expect("lost snapshot", "round", 3, journal.getRoundNumber(record));
+        delete(directory);
+    }
+
+    // Steps until the store sees a castle health checkpoint, false if none comes in MAX_TICKS
+    private static boolean stepUntilHealthCheckpoint(DefenderSimulation simulation, CheckpointStore store) {
+        store.mEvent = -1;
+        for(int tick = 0; tick < MAX_TICKS; tick++) {
+            simulation.step(DefenderSimulation.TICK_SECONDS);
+            if(store.mEvent == SaveStore.CHECKPOINT_CASTLE_HEALTH)
+                return true;
+            if(simulation.getGameState() != DefenderSimulation.STATE_ROUND_PLAY
+                    && simulation.getGameState() != DefenderSimulation.STATE_ROUND_START)
+                return false;
+        }
+        return false;
+    }
+
+    private static void tapButton(DefenderSimulation simulation, int type) {
+        Rectangle rect = simulation.getButtons()[type].getRect();
+        simulation.tap(rect.x + rect.width / 2f, rect.y + rect.height / 2f);
+        simulation.step(DefenderSimulation.TICK_SECONDS);
+    }
+
+    private static void expect(String scenario, String name, float expected, float actual) {
+        if(Float.floatToIntBits(expected) != Float.floatToIntBits(actual))
+            fail(scenario, name + " " + actual + ", expected " + expected);
+    }
+
+    private static void fail(String scenario, String failure) {
+        System.out.println(scenario + ": " + failure);
+        sFailures++;
+    }
+
+    private static File createDirectory() throws IOException {
+        File directory = File.createTempFile("recovery", "");
+        if(!directory.delete() || !directory.mkdir())
+            throw new IOException("Couldn't make " + directory);
+        return directory;
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * SaveStore that passes everything on, keeping the last checkpoint to compare a recovered game with
+     */
+    private static class CheckpointStore implements SaveStore {
+        private final SaveStore mStore;
+        private int mEvent;
+        private int mRoundNumber;
+        private float mHealth;
+        private float mTotalScore;
+
+        CheckpointStore(SaveStore store) {
+            mStore = store;
+        }
+
+        @Override
+        public void save(byte[] snapshot) {
+            mStore.save(snapshot);
+        }
+
+        @Override
+        public byte[] load() {
+            return mStore.load();
+        }
+
+        @Override
+        public boolean checkpoint(int event, int roundNumber, float castleHealth, float totalScore) {
+            mEvent = event;
+            mRoundNumber = roundNumber;
+            mHealth = castleHealth;
+            mTotalScore = totalScore;
+            return mStore.checkpoint(event, roundNumber, castleHealth, totalScore);
+        }
+    }
+}
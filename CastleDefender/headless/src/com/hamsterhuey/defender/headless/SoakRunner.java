@@ -0,0 +1,187 @@
+package com.hamsterhuey.defender.headless;
+
+import com.hamsterhuey.defender.ArchetypeRegistry;
+import com.hamsterhuey.defender.DefenderSimulation;
+import com.hamsterhuey.defender.WaveScript;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+/**
+ * Lets a TappingBot play the simulation for as many rounds as asked, as fast as the CPU allows, and watches it
+ *
+ * The game's invariants are checked after every step. Each broken one is counted and reported the first time
+ * it happens, with the tick and round, so a soak that runs for hours points straight at when things went wrong.
+ * Along the way it prints ticks per second and the heap now and then, and at the end how much the heap grew
+ * between two full collections and how many collections ran - a loop that allocates nothing shouldn't move either
+ *
+ * Usage: SoakRunner [rounds] [accuracy] [reaction ticks] [seed] [wave script] - exits with status 1 if an invariant broke,
+ * the wave script being a file like the game's waves.json
+ */
+public class SoakRunner {
+    private static final float FRAME_TIME = DefenderSimulation.TICK_SECONDS;
+    private static final long REPORT_NANOS = 5000000000L; // Wall time between progress lines
+    private static final int CLOCK_TICKS = 4096;          // Steps between looks at the clock, it isn't free either
+
+    public static void main(String[] args) throws IOException {
+        int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        float accuracy = args.length > 1 ? Float.parseFloat(args[1]) : 0.8f;
+        int reactionTicks = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        WaveScript waveScript = args.length > 4 ? loadWaveScript(args[4], ArchetypeRegistry.getDefault()) : null;
+
+        DefenderSimulation simulation = new DefenderSimulation(null, seed);
+        simulation.setWaveScript(waveScript);
+        TappingBot bot = new TappingBot(accuracy, reactionTicks, seed ^ 0x5DEECE66DL);
+        System.out.println("Soaking " + rounds + " rounds, accuracy " + accuracy + ", reaction " + reactionTicks
+                + " ticks, seed " + seed + (waveScript != null ? ", " + waveScript.getWaveCount() + " scripted waves" : ""));
+
+        long[] violationCounts = new long[DefenderSimulation.INVARIANT_COUNT];
+        int roundsPlayed = 0;
+        int gamesPlayed = 0;
+        int highestRound = 1;
+        int largestHorde = 0;
+        int lastGameState = simulation.getGameState();
+
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long heapBefore = settledHeap(memory);
+        long collectionsBefore = collectionCount(collectors);
+        long collectionTimeBefore = collectionTime(collectors);
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long lastReportTicks = 0;
+        long ticks = 0;
+        while(roundsPlayed < rounds) {
+            bot.act(simulation);
+            simulation.step(FRAME_TIME);
+            ticks++;
+
+            int violations = simulation.checkInvariants();
+            if(violations != 0)
+                recordViolations(simulation, violations, violationCounts);
+
+            int gameState = simulation.getGameState();
+            if(gameState != lastGameState) {
+                if(gameState == DefenderSimulation.STATE_ROUND_OVER)
+                    roundsPlayed++;
+                else if(gameState == DefenderSimulation.STATE_GAME_OVER) {
+                    roundsPlayed++;
+                    gamesPlayed++;
+                }
+                lastGameState = gameState;
+            }
+            highestRound = Math.max(highestRound, simulation.getRoundNumber());
+            largestHorde = Math.max(largestHorde, simulation.getAttackers().getLiveCount());
+
+            if(ticks % CLOCK_TICKS == 0) {
+                long now = System.nanoTime();
+                if(now - lastReport >= REPORT_NANOS) {
+                    System.out.println(String.format("  %d rounds, %d ticks, %.0f ticks/s, heap %d KB", roundsPlayed,
+                            ticks, (ticks - lastReportTicks) / ((now - lastReport) / 1e9),
+                            memory.getHeapMemoryUsage().getUsed() / 1024));
+                    lastReport = now;
+                    lastReportTicks = ticks;
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        long collections = collectionCount(collectors) - collectionsBefore;
+        long collectionTime = collectionTime(collectors) - collectionTimeBefore;
+        long heapAfter = settledHeap(memory);
+
+        double wallSeconds = elapsed / 1e9;
+        System.out.println("Rounds played:   " + roundsPlayed + " (" + gamesPlayed + " games lost, highest round "
+                + highestRound + ")");
+        System.out.println("Ticks stepped:   " + ticks + " (" + String.format("%.1f", ticks * FRAME_TIME / 3600.0)
+                + " hours of game time)");
+        System.out.println("Largest horde:   " + largestHorde + " (pool of " + simulation.getAttackers().size() + ")");
+        System.out.println("Bot taps:        " + bot.getTaps() + " (" + bot.getMisses() + " thrown off)");
+        System.out.println("Wall time:       " + String.format("%.3f s", wallSeconds));
+        System.out.println("Speed:           " + String.format("%.0f ticks/s (%.0f ns/tick)", ticks / wallSeconds,
+                (double) elapsed / ticks));
+        System.out.println("Heap growth:     " + String.format("%+d KB (%d KB to %d KB, after full collections)",
+                (heapAfter - heapBefore) / 1024, heapBefore / 1024, heapAfter / 1024));
+        System.out.println("Collections:     " + collections + " (" + collectionTime + " ms)");
+
+        boolean broken = false;
+        for(int k = 0; k < DefenderSimulation.INVARIANT_COUNT; k++) {
+            if(violationCounts[k] > 0) {
+                System.out.println("VIOLATED:        " + DefenderSimulation.INVARIANT_NAMES[k] + " after "
+                        + violationCounts[k] + " ticks");
+                broken = true;
+            }
+        }
+        if(broken)
+            System.exit(1);
+        System.out.println("Invariants held");
+    }
+
+    // Counts each broken invariant, and describes the state the first time one breaks
+    private static void recordViolations(DefenderSimulation simulation, int violations, long[] counts) {
+        for(int k = 0; k < DefenderSimulation.INVARIANT_COUNT; k++) {
+            if((violations & (1 << k)) == 0)
+                continue;
+            if(counts[k]++ == 0) {
+                System.out.println("  First " + DefenderSimulation.INVARIANT_NAMES[k] + " at tick "
+                        + simulation.getTickCount() + ", round " + simulation.getRoundNumber() + ", state "
+                        + simulation.getGameState() + " (living count " + simulation.getLivingAttackerCount()
+                        + ", alive " + simulation.getAttackers().getLiveCount() + ")");
+            }
+        }
+    }
+
+    /**
+     * Reads a wave script from a file, for the runners that play with the game's waves
+     *
+     * @param path: The script file
+     * @param archetypes: The archetypes of the simulations it is for
+     * @return script: The parsed script
+     */
+    public static WaveScript loadWaveScript(String path, ArchetypeRegistry archetypes) throws IOException {
+        InputStream in = new FileInputStream(path);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while((n = in.read(buffer)) > 0) {
+                bytes.write(buffer, 0, n);
+            }
+            return WaveScript.parse(bytes.toString("UTF-8"), archetypes);
+        } finally {
+            in.close();
+        }
+    }
+
+    // Heap in use once garbage is gone, asking twice as one request isn't guaranteed to collect everything
+    private static long settledHeap(MemoryMXBean memory) {
+        System.gc();
+        System.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static long collectionCount(List<GarbageCollectorMXBean> collectors) {
+        long count = 0;
+        for(GarbageCollectorMXBean collector : collectors) {
+            count += Math.max(collector.getCollectionCount(), 0L);
+        }
+        return count;
+    }
+
+    private static long collectionTime(List<GarbageCollectorMXBean> collectors) {
+        long time = 0;
+        for(GarbageCollectorMXBean collector : collectors) {
+            time += Math.max(collector.getCollectionTime(), 0L);
+        }
+        return time;
+    }
+}
@@ -0,0 +1,139 @@
+package com.hamsterhuey.defender.headless;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.hamsterhuey.defender.AttackerStore;
+import com.hamsterhuey.defender.DefenderButtons;
+import com.hamsterhuey.defender.DefenderSimulation;
+
+import java.util.Random;
+
+/**
+ * BotPlayer that plays whole games: new game, every round, then repair, save and on to the next round
+ *
+ * During a round it goes for the attacker closest to the castle. Spotting one takes the reaction time, after which
+ * the tap lands on wherever the attacker has walked to by then - or, for the taps the accuracy says miss, just
+ * beside it. Menu buttons take the reaction time too. The bot has its own Random, so it never moves the game's
+ * generator and a run is decided by the two seeds
+ */
+public class TappingBot implements BotPlayer {
+    private static final float REPAIR_BELOW = 0.5f; // Repairs are bought while the castle is below this fraction of its health
+
+    private final float mAccuracy;
+    private final int mReactionTicks;
+    private final Random mRandom;
+
+    private int mWait;      // Ticks left before the bot does anything
+    private int mTarget;    // The attacker being reacted to, or -1
+    private boolean mSaved; // Whether the current round over screen was saved already
+    private int mTaps;
+    private int mMisses;
+
+    /**
+     * Constructor for a bot
+     *
+     * @param accuracy: The chance a tap at an attacker lands on it, between 0 and 1
+     * @param reactionTicks: The ticks between deciding on something and tapping it
+     * @param seed: The seed of the bot's own random numbers
+     */
+    public TappingBot(float accuracy, int reactionTicks, long seed) {
+        mAccuracy = accuracy;
+        mReactionTicks = Math.max(reactionTicks, 0);
+        mRandom = new Random(seed);
+        mWait = mReactionTicks;
+        mTarget = -1;
+    }
+
+    @Override
+    public void act(DefenderSimulation simulation) {
+        int gameState = simulation.getGameState();
+        if(gameState != DefenderSimulation.STATE_ROUND_OVER)
+            mSaved = false;
+        if(gameState != DefenderSimulation.STATE_ROUND_PLAY)
+            mTarget = -1;
+        if(mWait > 0) {
+            mWait--;
+            return;
+        }
+
+        switch (gameState) {
+            case DefenderSimulation.STATE_PRE_GAME:
+            case DefenderSimulation.STATE_GAME_OVER:
+                tapButton(simulation, DefenderButtons.TYPE_NEW_GAME);
+                break;
+            case DefenderSimulation.STATE_ROUND_PLAY:
+                if(simulation.isPaused())
+                    tapButton(simulation, DefenderButtons.TYPE_RESUME_PAUSED_GAME);
+                else
+                    playRound(simulation);
+                break;
+            case DefenderSimulation.STATE_ROUND_OVER:
+                // Repairs one at a time while they are needed and affordable, then a save, then the next round
+                if(simulation.getCastleHealth() < simulation.getCastle().getMaxHealth() * REPAIR_BELOW
+                        && simulation.getTotalScore() > simulation.getRepairCost()) {
+                    tapButton(simulation, DefenderButtons.TYPE_REPAIR_CASTLE);
+                } else if(!mSaved) {
+                    mSaved = true;
+                    tapButton(simulation, DefenderButtons.TYPE_SAVE_GAME);
+                } else {
+                    tapButton(simulation, DefenderButtons.TYPE_CONTINUE_NEXT_ROUND);
+                }
+                break;
+        }
+    }
+
+    // Picks a target when there is none, and taps it once the reaction time has passed since picking it
+    private void playRound(DefenderSimulation simulation) {
+        AttackerStore attackers = simulation.getAttackers();
+        if(mTarget < 0 || !attackers.isAlive(mTarget)) {
+            mTarget = findClosestToCastle(attackers);
+            if(mTarget >= 0)
+                mWait = mReactionTicks;
+            return;
+        }
+
+        float x = attackers.getX(mTarget) + attackers.getWidth(mTarget) / 2f;
+        float y = attackers.getY(mTarget) + attackers.getHeight(mTarget) / 2f;
+        if(mRandom.nextFloat() >= mAccuracy) {
+            // A miss lands just past the attacker's edge, on whichever side, which can still hit a neighbour
+            x += (mRandom.nextBoolean() ? 1f : -1f) * attackers.getWidth(mTarget);
+            mMisses++;
+        }
+        simulation.tap(x, y);
+        mTaps++;
+        mTarget = -1;
+    }
+
+    private static int findClosestToCastle(AttackerStore attackers) {
+        int closest = -1;
+        float closestX = -Float.MAX_VALUE;
+        for(int k = 0; k < attackers.getLiveCount(); k++) {
+            int i = attackers.getLive(k);
+            if(attackers.getX(i) > closestX) {
+                closestX = attackers.getX(i);
+                closest = i;
+            }
+        }
+        return closest;
+    }
+
+    private void tapButton(DefenderSimulation simulation, int type) {
+        Rectangle rect = simulation.getButtons()[type].getRect();
+        simulation.tap(rect.x + rect.width / 2f, rect.y + rect.height / 2f);
+        mTaps++;
+        mWait = mReactionTicks;
+    }
+
+    /**
+     * @return taps: The taps made so far, at attackers and buttons
+     */
+    public int getTaps() {
+        return mTaps;
+    }
+
+    /**
+     * @return misses: The taps at attackers that were thrown off on purpose
+     */
+    public int getMisses() {
+        return mMisses;
+    }
+}